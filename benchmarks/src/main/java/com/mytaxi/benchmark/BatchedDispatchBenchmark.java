@@ -0,0 +1,96 @@
+package com.mytaxi.benchmark;
+
+import com.mytaxi.MytaxiServerApplicantTestApplication;
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.exception.ConstraintsViolationException;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.service.driver.DispatchBatcher;
+import com.mytaxi.service.driver.DispatchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time until a burst of {@code requests} ride requests is dispatched in {@code batched} mode, per window size.
+ * <p/>
+ * Every invocation submits the burst at once, waits until all of them are answered and completes the rides again, so
+ * {@code requests} divided by the score is the number of matches per second a window of that size sustains. The same fleet as
+ * in {@link DispatchBenchmark} is used; the latency and pickup distance of every request are published as
+ * {@code mytaxi.dispatch.*} metrics as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchedDispatchBenchmark {
+
+    @Param({"5000"})
+    public int drivers;
+
+    @Param({"100", "1000"})
+    public int requests;
+
+    @Param({"10", "100", "500"})
+    public long windowMs;
+
+    private ConfigurableApplicationContext context;
+
+    private DispatchService dispatchService;
+
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Setup
+    public void startApplication() throws ConstraintsViolationException {
+        context = new SpringApplicationBuilder(MytaxiServerApplicantTestApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN", "mytaxi.request-log.success-sample-rate=0",
+                        "mytaxi.dispatch.mode=" + DispatchBatcher.MODE_BATCHED, "mytaxi.dispatch.window-ms=" + windowMs,
+                        "mytaxi.dispatch.max-wait-ms=" + Math.max(windowMs, 1000))
+                .run();
+        dispatchService = context.getBean(DispatchService.class);
+
+        DispatchBenchmark.seedFleet(context, drivers);
+    }
+
+    @TearDown
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public int dispatchBurst() throws EntityNotFoundException {
+        List<CompletableFuture<Dispatch>> results = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            results.add(dispatchService.submit(new DispatchRequest(DispatchBenchmark.randomCoordinate(random), 5, null, null, null)));
+        }
+
+        int dispatched = 0;
+        for (CompletableFuture<Dispatch> result : results) {
+            Dispatch dispatch = result.exceptionally(e -> null).join();
+            if (dispatch != null) {
+                dispatchService.complete(dispatch.getDriverId());
+                dispatched++;
+            }
+        }
+        return dispatched;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mytaxi.benchmark;
+
+import com.mytaxi.MytaxiServerApplicantTestApplication;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainobject.DriverCarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.exception.CarAlreadyInUseException;
+import com.mytaxi.exception.ConstraintsViolationException;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.service.driver.CarDriverService;
+import com.mytaxi.service.driver.CarService;
+import com.mytaxi.service.driver.DriverService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selecting a car for a driver through the whole service stack against the in-memory H2 database of the application.
+ * <p/>
+ * The car is deselected again after every invocation, so each one inserts or updates the same driver car row like a driver
+ * switching cars back and forth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarDriverServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private CarDriverService carDriverService;
+
+    private Long driverId;
+
+    private Long carId;
+
+    @Setup
+    public void startApplication() throws ConstraintsViolationException, EntityNotFoundException {
+        context = new SpringApplicationBuilder(MytaxiServerApplicantTestApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN", "mytaxi.location-ingestion.mode=sync")
+                .run();
+        carDriverService = context.getBean(CarDriverService.class);
+
+        DriverService driverService = context.getBean(DriverService.class);
+        DriverDO driver = driverService.create(new DriverDO("benchmark-driver", "benchmark-password"));
+        driverService.goOnline(driver.getId());
+        driverId = driver.getId();
+
+        CarDO car = context.getBean(CarService.class).create(new CarDO("BENCH-1", false, 4.0f, "electric", "Benchmark"));
+        carId = car.getId();
+    }
+
+    @TearDown
+    public void stopApplication() {
+        context.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void deselectCar() throws CarAlreadyInUseException, ConstraintsViolationException, EntityNotFoundException {
+        carDriverService.deselectCarForDriver(driverId, carId);
+    }
+
+    @Benchmark
+    public DriverCarDO selectCarForDriver() throws CarAlreadyInUseException, ConstraintsViolationException, EntityNotFoundException {
+        return carDriverService.selectCarForDriver(driverId, carId);
+    }
+}
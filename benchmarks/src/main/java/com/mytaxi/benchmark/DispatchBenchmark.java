@@ -0,0 +1,135 @@
+package com.mytaxi.benchmark;
+
+import com.mytaxi.MytaxiServerApplicantTestApplication;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.exception.ConstraintsViolationException;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.NoDriverAvailableException;
+import com.mytaxi.service.driver.CarReservationRegistry;
+import com.mytaxi.service.driver.CarService;
+import com.mytaxi.service.driver.DispatchService;
+import com.mytaxi.service.driver.DriverLocationIndex;
+import com.mytaxi.service.driver.DriverPresenceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches per second of the dispatch engine: every invocation dispatches the nearest matching driver to a random pickup point
+ * in a city and completes the ride right away, so the fleet stays the same size.
+ * <p/>
+ * The drivers only exist in the in-memory indexes, their cars are real rows read through the car cache. Eight threads
+ * dispatch concurrently and compete for the same drivers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final long FIRST_DRIVER_ID = 1_000_000;
+
+    private static final double CENTER_LATITUDE = 52.52;
+
+    private static final double CENTER_LONGITUDE = 13.40;
+
+    private static final double SPREAD_DEGREES = 0.2;
+
+    @Param({"5000"})
+    public int drivers;
+
+    /**
+     * {@code any} accepts every car, {@code electric} only the electric cars with a rating of at least four, a quarter of the
+     * fleet.
+     */
+    @Param({"any", "electric"})
+    public String cars;
+
+    private ConfigurableApplicationContext context;
+
+    private DispatchService dispatchService;
+
+    @Setup
+    public void startApplication() throws ConstraintsViolationException {
+        context = new SpringApplicationBuilder(MytaxiServerApplicantTestApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN", "mytaxi.request-log.success-sample-rate=0")
+                .run();
+        dispatchService = context.getBean(DispatchService.class);
+
+        seedFleet(context, drivers);
+    }
+
+    @TearDown
+    public void stopApplication() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Passenger {
+
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public Dispatch dispatchAndComplete(Passenger passenger) throws EntityNotFoundException {
+        DispatchRequest request = "electric".equals(cars)
+                ? new DispatchRequest(randomCoordinate(passenger.random), 5, null, "electric", 4.0f)
+                : new DispatchRequest(randomCoordinate(passenger.random), 5, null, null, null);
+        Dispatch dispatch;
+        try {
+            dispatch = dispatchService.dispatch(request);
+        } catch (NoDriverAvailableException e) {
+            return null;
+        }
+        return dispatchService.complete(dispatch.getDriverId());
+    }
+
+    /**
+     * Puts online drivers at random positions in the city, every one with a selected car of its own. A quarter of the cars are
+     * electric with a rating above four.
+     */
+    static void seedFleet(ConfigurableApplicationContext context, int drivers) throws ConstraintsViolationException {
+        CarService carService = context.getBean(CarService.class);
+        DriverLocationIndex driverLocationIndex = context.getBean(DriverLocationIndex.class);
+        CarReservationRegistry carReservationRegistry = context.getBean(CarReservationRegistry.class);
+        DriverPresenceRegistry driverPresenceRegistry = context.getBean(DriverPresenceRegistry.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < drivers; i++) {
+            boolean electric = i % 4 == 0;
+            CarDO car = carService.create(new CarDO("DISPATCH-" + i, i % 2 == 0, electric ? 4.5f : 3.5f,
+                    electric ? "electric" : "gas", "Benchmark"));
+            long driverId = FIRST_DRIVER_ID + i;
+            driverPresenceRegistry.setStatus(driverId, OnlineStatus.ONLINE);
+            driverLocationIndex.update(driverId, randomCoordinate(random), true);
+            carReservationRegistry.reserve(car.getId(), driverId);
+        }
+    }
+
+    static GeoCoordinate randomCoordinate(SplittableRandom random) {
+        return new GeoCoordinate(CENTER_LATITUDE + (random.nextDouble() - 0.5) * SPREAD_DEGREES,
+                CENTER_LONGITUDE + (random.nextDouble() - 0.5) * SPREAD_DEGREES);
+    }
+}
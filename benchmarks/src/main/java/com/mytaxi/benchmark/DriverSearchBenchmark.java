@@ -0,0 +1,94 @@
+package com.mytaxi.benchmark;
+
+import com.mytaxi.MytaxiServerApplicantTestApplication;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import com.mytaxi.exception.CarAlreadyInUseException;
+import com.mytaxi.exception.ConstraintsViolationException;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.service.driver.CarDriverService;
+import com.mytaxi.service.driver.CarService;
+import com.mytaxi.service.driver.DriverService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A page of drivers filtered by car attributes, read from the database or from the in-memory fleet snapshot whose car
+ * attributes are matched by the column store.
+ * <p/>
+ * Every driver has a car selected of its own, an eighth of them electric cars with a rating of 4.5, which the filter asks for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DriverSearchBenchmark {
+
+    @Param({"5000"})
+    public int drivers;
+
+    @Param({"true", "false"})
+    public boolean snapshot;
+
+    private ConfigurableApplicationContext context;
+
+    private DriverService driverService;
+
+    private final DriverCarFilter filter = DriverCarFilter.parse(Collections.singletonMap("engineType", "electric"));
+
+    private final DriverCarFilter ratedFilter = DriverCarFilter.parse(Collections.singletonMap("rating", "4.5"));
+
+    @Setup
+    public void startApplication() throws ConstraintsViolationException, EntityNotFoundException, CarAlreadyInUseException {
+        context = new SpringApplicationBuilder(MytaxiServerApplicantTestApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN", "mytaxi.request-log.success-sample-rate=0",
+                        "mytaxi.location-ingestion.mode=sync", "mytaxi.fleet-snapshot.enabled=" + snapshot)
+                .run();
+        driverService = context.getBean(DriverService.class);
+        CarService carService = context.getBean(CarService.class);
+        CarDriverService carDriverService = context.getBean(CarDriverService.class);
+
+        for (int i = 0; i < drivers; i++) {
+            boolean electric = i % 8 == 0;
+            DriverDO driver = driverService.create(new DriverDO("search-driver-" + i, "password"));
+            CarDO car = carService.create(new CarDO("SEARCH-" + i, i % 2 == 0, electric ? 4.5f : 3.5f,
+                    electric ? "electric" : "gas", "Benchmark"));
+            carDriverService.selectCarForDriver(driver.getId(), car.getId());
+        }
+    }
+
+    @TearDown
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<DriverDO> electricDrivers() {
+        return driverService.getDrivers(filter, PageRequest.of(0, 20));
+    }
+
+    @Benchmark
+    public Page<DriverDO> ratedDriversLastPage() {
+        return driverService.getDrivers(ratedFilter, PageRequest.of(drivers / 8 / 20, 20));
+    }
+}
@@ -0,0 +1,57 @@
+package com.mytaxi.benchmark;
+
+import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.domainvalue.GeoHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of valid coordinates as done for every location ping, and the geohash encoding used by the location index.
+ * <p/>
+ * Run with {@code -prof gc} to see the allocations: a valid coordinate allocates only itself, 24 bytes per construction, the
+ * geohash round trip nothing at all once escape analysis removed the intermediate coordinate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoCoordinateBenchmark {
+
+    // fields instead of constants so the checks are not folded away
+    private double latitude = 52.520008;
+
+    private double longitude = 13.404954;
+
+    private long geohash = GeoHash.encode(latitude, longitude);
+
+    @Benchmark
+    public GeoCoordinate construct() {
+        return new GeoCoordinate(latitude, longitude);
+    }
+
+    @Benchmark
+    public boolean constructAndCompare() {
+        return new GeoCoordinate(latitude, longitude).equals(new GeoCoordinate(longitude, latitude));
+    }
+
+    @Benchmark
+    public long encodeGeohash() {
+        return GeoHash.encode(latitude, longitude);
+    }
+
+    @Benchmark
+    public double decodeGeohash() {
+        return GeoCoordinate.fromGeohash(geohash).getLatitude();
+    }
+}
@@ -0,0 +1,80 @@
+package com.mytaxi.benchmark;
+
+import com.mytaxi.controller.mapper.CarMapper;
+import com.mytaxi.controller.mapper.DriverMapper;
+import com.mytaxi.datatransferobject.CarDTO;
+import com.mytaxi.datatransferobject.DriverDTO;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of domain objects to the DTOs returned by the controllers, single objects and whole result lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private DriverDO driver;
+
+    private List<DriverDO> drivers;
+
+    private List<CarDO> cars;
+
+    @Setup
+    public void setUp() {
+        drivers = new ArrayList<>(size);
+        cars = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            DriverDO driverDO = new DriverDO("driver" + i, "password" + i);
+            driverDO.setId((long) i);
+            // every second driver has sent a position
+            if (i % 2 == 0) {
+                driverDO.setCoordinate(new GeoCoordinate(52.52 + i * 1e-4, 13.40));
+            }
+            drivers.add(driverDO);
+
+            CarDO carDO = new CarDO("B-MT-" + i, i % 3 == 0, 4.5f, "electric", "Manufacturer" + i % 10);
+            carDO.setId((long) i);
+            cars.add(carDO);
+        }
+        driver = drivers.get(0);
+    }
+
+    @Benchmark
+    public DriverDTO makeDriverDTO() {
+        return DriverMapper.makeDriverDTO(driver);
+    }
+
+    @Benchmark
+    public List<DriverDTO> makeDriverDTOList() {
+        return DriverMapper.makeDriverDTOList(drivers);
+    }
+
+    @Benchmark
+    public List<CarDTO> makeCarDTOList() {
+        return CarMapper.makeCarDTOList(cars);
+    }
+}
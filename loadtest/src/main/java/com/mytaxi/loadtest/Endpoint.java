@@ -0,0 +1,18 @@
+package com.mytaxi.loadtest;
+
+/**
+ * Endpoints exercised by the load test, reported one by one.
+ */
+enum Endpoint {
+    LOCATION_PING("PUT /v1/drivers/{driverId}"),
+    SELECT_CAR("PUT /v1/drivers/{driverId}/selected-cars/{carId}"),
+    DESELECT_CAR("PUT /v1/drivers/{driverId}/deselected-cars/{carId}"),
+    SEARCH("GET /v1/drivers/driver-or-car-attributes"),
+    NEARBY("GET /v1/drivers/nearby");
+
+    final String description;
+
+    Endpoint(String description) {
+        this.description = description;
+    }
+}
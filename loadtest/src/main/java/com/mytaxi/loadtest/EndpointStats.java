@@ -0,0 +1,51 @@
+package com.mytaxi.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests sent to one endpoint. Latencies are recorded in microseconds.
+ */
+final class EndpointStats {
+
+    private final Recorder latencies = new Recorder(3);
+
+    private final LongAdder clientErrors = new LongAdder();
+
+    private final LongAdder serverErrors = new LongAdder();
+
+    void record(long latencyNanos, int status) {
+        latencies.recordValue(Math.max(1, latencyNanos / 1000));
+        if (status >= 500 || status < 0) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        }
+    }
+
+    /**
+     * Drops everything recorded so far, called once the warmup is over.
+     */
+    void reset() {
+        latencies.reset();
+        clientErrors.reset();
+        serverErrors.reset();
+    }
+
+    /**
+     * @return the latencies recorded since the last call or {@link #reset()}
+     */
+    Histogram takeLatencies() {
+        return latencies.getIntervalHistogram();
+    }
+
+    long clientErrors() {
+        return clientErrors.sum();
+    }
+
+    long serverErrors() {
+        return serverErrors.sum();
+    }
+}
@@ -0,0 +1,146 @@
+package com.mytaxi.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeds a synthetic fleet with batched inserts.
+ * <p/>
+ * Drivers gather around a handful of cities, normally distributed with a spread that grows with the size of the city, and
+ * the bigger cities get more drivers. Ids start at {@link #FIRST_ID} to stay clear of the rows of {@code data.sql}.
+ */
+final class FleetGenerator {
+
+    static final long FIRST_ID = 1_000_000L;
+
+    static final String[] MANUFACTURERS = {"Audi", "BMW", "Mercedes", "Opel", "Skoda", "Tesla", "Toyota", "Volkswagen"};
+
+    private static final String[] ENGINE_TYPES = {"gas", "diesel", "electric", "hybrid"};
+
+    private static final int BATCH_SIZE = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Random random;
+
+    FleetGenerator(JdbcTemplate jdbcTemplate, long randomSeed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.random = new Random(randomSeed);
+    }
+
+    /**
+     * @return drivers and cars which were seeded
+     */
+    Fleet seed(int drivers, int cars, double onlineShare) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < cars; i++) {
+            batch.add(new Object[]{FIRST_ID + i, now, licensePlate(i), random.nextInt(5) == 0, 1 + random.nextInt(40) / 10f,
+                    ENGINE_TYPES[random.nextInt(ENGINE_TYPES.length)], MANUFACTURERS[random.nextInt(MANUFACTURERS.length)]});
+            if (batch.size() == BATCH_SIZE) {
+                insertCars(batch);
+            }
+        }
+        insertCars(batch);
+
+        int onlineDrivers = 0;
+        for (int i = 0; i < drivers; i++) {
+            boolean online = random.nextDouble() < onlineShare;
+            City city = City.pick(random);
+            batch.add(new Object[]{FIRST_ID + i, now, online ? "ONLINE" : "OFFLINE", "password" + i, "driver" + i,
+                    city.latitude(random), city.longitude(random), now});
+            onlineDrivers += online ? 1 : 0;
+            if (batch.size() == BATCH_SIZE) {
+                insertDrivers(batch);
+            }
+        }
+        insertDrivers(batch);
+
+        return new Fleet(drivers, cars, onlineDrivers);
+    }
+
+    static String licensePlate(int car) {
+        return "LT-" + (char) ('A' + car % 26) + (char) ('A' + car / 26 % 26) + "-" + car;
+    }
+
+    private void insertCars(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer,"
+                + " deleted) values (?, 0, ?, ?, ?, ?, ?, ?, false)", batch);
+        batch.clear();
+    }
+
+    private void insertDrivers(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into driver (id, version, date_created, deleted, online_status, password, username, latitude,"
+                + " longitude, date_coordinate_updated) values (?, 0, ?, false, ?, ?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    static final class Fleet {
+
+        final int drivers;
+
+        final int cars;
+
+        final int onlineDrivers;
+
+        private Fleet(int drivers, int cars, int onlineDrivers) {
+            this.drivers = drivers;
+            this.cars = cars;
+            this.onlineDrivers = onlineDrivers;
+        }
+    }
+
+    /**
+     * City centers with their share of the fleet and the standard deviation of the driver positions in degrees.
+     */
+    enum City {
+        BERLIN(52.520, 13.405, 30, 0.08),
+        HAMBURG(53.551, 9.994, 20, 0.06),
+        MUNICH(48.137, 11.576, 18, 0.06),
+        COLOGNE(50.938, 6.960, 12, 0.05),
+        FRANKFURT(50.110, 8.682, 10, 0.04),
+        VIENNA(48.208, 16.374, 10, 0.05);
+
+        private static final int TOTAL_WEIGHT = 100;
+
+        final double centerLatitude;
+
+        final double centerLongitude;
+
+        private final int weight;
+
+        private final double spreadDegrees;
+
+        City(double centerLatitude, double centerLongitude, int weight, double spreadDegrees) {
+            this.centerLatitude = centerLatitude;
+            this.centerLongitude = centerLongitude;
+            this.weight = weight;
+            this.spreadDegrees = spreadDegrees;
+        }
+
+        static City pick(Random random) {
+            int value = random.nextInt(TOTAL_WEIGHT);
+            for (City city : values()) {
+                value -= city.weight;
+                if (value < 0) {
+                    return city;
+                }
+            }
+            return BERLIN;
+        }
+
+        double latitude(Random random) {
+            return centerLatitude + random.nextGaussian() * spreadDegrees;
+        }
+
+        double longitude(Random random) {
+            // degrees of longitude shrink with the latitude, scaled so the spread is round on the map
+            return centerLongitude + random.nextGaussian() * spreadDegrees / Math.cos(Math.toRadians(centerLatitude));
+        }
+    }
+}
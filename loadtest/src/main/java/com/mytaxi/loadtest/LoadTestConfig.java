@@ -0,0 +1,81 @@
+package com.mytaxi.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from {@code --name=value} arguments.
+ */
+final class LoadTestConfig {
+
+    final int drivers;
+
+    final int cars;
+
+    final double onlineShare;
+
+    final int threads;
+
+    final int warmupSeconds;
+
+    final int durationSeconds;
+
+    final long randomSeed;
+
+    final int locationPingWeight;
+
+    final int carSelectionWeight;
+
+    final int searchWeight;
+
+    final int nearbyWeight;
+
+    final String outputDirectory;
+
+    final String[] profiles;
+
+    private LoadTestConfig(Map<String, String> values) {
+        drivers = intValue(values, "drivers", 500_000);
+        cars = intValue(values, "cars", 200_000);
+        onlineShare = Double.parseDouble(values.getOrDefault("online-share", "0.6"));
+        threads = intValue(values, "threads", 16);
+        warmupSeconds = intValue(values, "warmup-seconds", 10);
+        durationSeconds = intValue(values, "duration-seconds", 60);
+        randomSeed = Long.parseLong(values.getOrDefault("random-seed", "42"));
+        locationPingWeight = intValue(values, "location-ping-weight", 70);
+        carSelectionWeight = intValue(values, "car-selection-weight", 10);
+        searchWeight = intValue(values, "search-weight", 15);
+        nearbyWeight = intValue(values, "nearby-weight", 5);
+        outputDirectory = values.getOrDefault("output-directory", "loadtest-results");
+        String profileList = values.getOrDefault("profiles", "");
+        profiles = profileList.isEmpty() ? new String[0] : profileList.split(",");
+
+        check(drivers > 0 && cars > 0, "drivers and cars must be positive");
+        check(onlineShare > 0 && onlineShare <= 1, "online-share must be in (0, 1]");
+        check(threads > 0, "threads must be positive");
+        check(warmupSeconds >= 0 && durationSeconds > 0, "warmup-seconds must not be negative and duration-seconds must be positive");
+        check(locationPingWeight >= 0 && carSelectionWeight >= 0 && searchWeight >= 0 && nearbyWeight >= 0, "weights must not be negative");
+        check(locationPingWeight + carSelectionWeight + searchWeight + nearbyWeight > 0, "at least one weight must be positive");
+    }
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            check(arg.startsWith("--") && separator > 2, "arguments must look like --name=value: " + arg);
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestConfig(values);
+    }
+
+    private static int intValue(Map<String, String> values, String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
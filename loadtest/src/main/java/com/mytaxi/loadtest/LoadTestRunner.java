@@ -0,0 +1,112 @@
+package com.mytaxi.loadtest;
+
+import com.mytaxi.MytaxiServerApplicantTestApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the application with its in-memory database on a random local port, seeds a synthetic fleet and replays mixed traffic
+ * against the REST API.
+ * <p/>
+ * Prints the throughput and latency percentiles per endpoint and writes the full latency distribution of every endpoint as
+ * {@code .hgrm} file to the output directory, see {@link LoadTestConfig} for the arguments.
+ */
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws InterruptedException, FileNotFoundException {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        // HttpURLConnection keeps only five idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(config.threads));
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(MytaxiServerApplicantTestApplication.class)
+                .profiles(config.profiles)
+                .properties("server.port=0", "logging.level.root=WARN");
+        ConfigurableApplicationContext context = application.run();
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            long seedStart = System.nanoTime();
+            FleetGenerator.Fleet fleet = new FleetGenerator(context.getBean(JdbcTemplate.class), config.randomSeed)
+                    .seed(config.drivers, config.cars, config.onlineShare);
+            // the in-memory indexes are filled when the application is ready, have them pick up the seeded fleet
+            context.publishEvent(new ApplicationReadyEvent(application.application(), args, context));
+            System.out.printf(Locale.ROOT, "Seeded %d drivers (%d online) and %d cars in %d s%n", fleet.drivers, fleet.onlineDrivers,
+                    fleet.cars, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - seedStart));
+
+            Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+            for (Endpoint endpoint : Endpoint.values()) {
+                stats.put(endpoint, new EndpointStats());
+            }
+            double measuredSeconds = replay(baseUrl, config, fleet, stats);
+            report(config, stats, measuredSeconds);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static double replay(String baseUrl, LoadTestConfig config, FleetGenerator.Fleet fleet, Map<Endpoint, EndpointStats> stats)
+            throws InterruptedException {
+        long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.warmupSeconds + config.durationSeconds);
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads);
+        for (int i = 0; i < config.threads; i++) {
+            workers.execute(new TrafficWorker(baseUrl, config, fleet, stats, endNanos, config.randomSeed + i + 1));
+        }
+        workers.shutdown();
+
+        System.out.printf(Locale.ROOT, "Warming up for %d s with %d threads%n", config.warmupSeconds, config.threads);
+        TimeUnit.SECONDS.sleep(config.warmupSeconds);
+        for (EndpointStats endpointStats : stats.values()) {
+            endpointStats.reset();
+        }
+        long measureStart = System.nanoTime();
+        System.out.printf(Locale.ROOT, "Measuring for %d s%n", config.durationSeconds);
+
+        if (!workers.awaitTermination(config.durationSeconds + 60, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+        return (System.nanoTime() - measureStart) / 1e9;
+    }
+
+    private static void report(LoadTestConfig config, Map<Endpoint, EndpointStats> stats, double measuredSeconds)
+            throws FileNotFoundException {
+        File outputDirectory = new File(config.outputDirectory);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new FileNotFoundException("Could not create " + outputDirectory);
+        }
+
+        System.out.printf(Locale.ROOT, "%n%-52s %9s %9s %9s %9s %9s %9s %9s %7s %7s%n", "endpoint", "requests", "req/s", "p50 ms",
+                "p90 ms", "p99 ms", "p99.9 ms", "max ms", "4xx", "5xx/io");
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            Histogram latencies = entry.getValue().takeLatencies();
+            System.out.printf(Locale.ROOT, "%-52s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d %7d%n", entry.getKey().description,
+                    latencies.getTotalCount(), latencies.getTotalCount() / measuredSeconds, millis(latencies, 50), millis(latencies, 90),
+                    millis(latencies, 99), millis(latencies, 99.9), latencies.getMaxValue() / 1000.0, entry.getValue().clientErrors(),
+                    entry.getValue().serverErrors());
+
+            try (PrintStream out = new PrintStream(new File(outputDirectory, entry.getKey().name().toLowerCase(Locale.ROOT) + ".hgrm"))) {
+                latencies.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%nLatency distributions in milliseconds written to %s%n", outputDirectory.getAbsolutePath());
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
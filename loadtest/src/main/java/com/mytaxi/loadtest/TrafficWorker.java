@@ -0,0 +1,131 @@
+package com.mytaxi.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Sends a weighted mix of requests until the run is over: location pings, car selections each followed by the deselection,
+ * attribute searches and nearby searches.
+ */
+final class TrafficWorker implements Runnable {
+
+    private final String baseUrl;
+
+    private final LoadTestConfig config;
+
+    private final FleetGenerator.Fleet fleet;
+
+    private final Map<Endpoint, EndpointStats> stats;
+
+    private final long endNanos;
+
+    private final Random random;
+
+    private final byte[] drainBuffer = new byte[8192];
+
+    TrafficWorker(String baseUrl, LoadTestConfig config, FleetGenerator.Fleet fleet, Map<Endpoint, EndpointStats> stats, long endNanos,
+                  long randomSeed) {
+        this.baseUrl = baseUrl;
+        this.config = config;
+        this.fleet = fleet;
+        this.stats = stats;
+        this.endNanos = endNanos;
+        this.random = new Random(randomSeed);
+    }
+
+    @Override
+    public void run() {
+        int totalWeight = config.locationPingWeight + config.carSelectionWeight + config.searchWeight + config.nearbyWeight;
+        while (System.nanoTime() < endNanos && !Thread.currentThread().isInterrupted()) {
+            int value = random.nextInt(totalWeight);
+            if ((value -= config.locationPingWeight) < 0) {
+                pingLocation();
+            } else if ((value -= config.carSelectionWeight) < 0) {
+                selectAndDeselectCar();
+            } else if (value - config.searchWeight < 0) {
+                search();
+            } else {
+                searchNearby();
+            }
+        }
+    }
+
+    private void pingLocation() {
+        FleetGenerator.City city = FleetGenerator.City.pick(random);
+        send(Endpoint.LOCATION_PING, "PUT", String.format(Locale.ROOT, "/v1/drivers/%d?latitude=%.6f&longitude=%.6f", randomDriver(),
+                city.latitude(random), city.longitude(random)));
+    }
+
+    private void selectAndDeselectCar() {
+        long driverId = randomDriver();
+        long carId = FleetGenerator.FIRST_ID + random.nextInt(fleet.cars);
+        if (send(Endpoint.SELECT_CAR, "PUT", "/v1/drivers/" + driverId + "/selected-cars/" + carId) == 200) {
+            send(Endpoint.DESELECT_CAR, "PUT", "/v1/drivers/" + driverId + "/deselected-cars/" + carId);
+        }
+    }
+
+    private void search() {
+        String query;
+        switch (random.nextInt(3)) {
+            case 0:
+                String licensePlate = FleetGenerator.licensePlate(random.nextInt(fleet.cars));
+                query = "licensePlate=" + licensePlate.substring(licensePlate.length() - 4);
+                break;
+            case 1:
+                query = "manufacturer=" + FleetGenerator.MANUFACTURERS[random.nextInt(FleetGenerator.MANUFACTURERS.length)]
+                        + "&onlineStatus=ONLINE";
+                break;
+            default:
+                query = "username=driver" + random.nextInt(fleet.drivers);
+                break;
+        }
+        send(Endpoint.SEARCH, "GET", "/v1/drivers/driver-or-car-attributes?page=0&size=20&" + query);
+    }
+
+    private void searchNearby() {
+        FleetGenerator.City city = FleetGenerator.City.pick(random);
+        send(Endpoint.NEARBY, "GET", String.format(Locale.ROOT, "/v1/drivers/nearby?latitude=%.6f&longitude=%.6f&radiusKm=2&limit=10",
+                city.latitude(random), city.longitude(random)));
+    }
+
+    private long randomDriver() {
+        return FleetGenerator.FIRST_ID + random.nextInt(fleet.drivers);
+    }
+
+    /**
+     * @return status code of the response or -1 if the request failed
+     */
+    private int send(Endpoint endpoint, String method, String path) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            status = connection.getResponseCode();
+            drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        } catch (IOException e) {
+            status = -1;
+        }
+        stats.get(endpoint).record(System.nanoTime() - start, status);
+        return status;
+    }
+
+    /**
+     * Reads the body to its end so the connection goes back to the keep-alive pool.
+     */
+    private void drain(InputStream body) throws IOException {
+        if (body == null) {
+            return;
+        }
+        try (InputStream in = body) {
+            while (in.read(drainBuffer) != -1) {
+                // discard
+            }
+        }
+    }
+}
@@ -18,6 +18,15 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 public class MytaxiServerApplicantTestApplication extends WebMvcConfigurerAdapter
 {
 
+    private final LoggingInterceptor loggingInterceptor;
+
+
+    public MytaxiServerApplicantTestApplication(final LoggingInterceptor loggingInterceptor)
+    {
+        this.loggingInterceptor = loggingInterceptor;
+    }
+
+
     public static void main(String[] args)
     {
         SpringApplication.run(MytaxiServerApplicantTestApplication.class, args);
@@ -27,7 +36,9 @@ public class MytaxiServerApplicantTestApplication extends WebMvcConfigurerAdapte
     @Override
     public void addInterceptors(InterceptorRegistry registry)
     {
-        registry.addInterceptor(new LoggingInterceptor()).addPathPatterns("/**");
+        registry.addInterceptor(loggingInterceptor)
+            .addPathPatterns("/**")
+            .excludePathPatterns(loggingInterceptor.getExcludePathPatterns());
     }
 
 
@@ -7,10 +7,13 @@ import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
 import com.mytaxi.service.driver.CarService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
-import java.util.List;
 
 /**
  * All operations with a driver will be routed by this controller.
@@ -22,10 +25,13 @@ public class CarController {
 
     private final CarService carService;
 
+    private final CarStreamWriter carStreamWriter;
+
     @Autowired
-    public CarController(CarService carService)
+    public CarController(CarService carService, CarStreamWriter carStreamWriter)
     {
         this.carService = carService;
+        this.carStreamWriter = carStreamWriter;
     }
 
     @PostMapping
@@ -34,9 +40,20 @@ public class CarController {
         return CarMapper.makeCarDTO(carService.create(carDO));
     }
 
+    /**
+     * A page of the cars which are not deleted.
+     */
     @GetMapping
-    public List<CarDTO> getCars() {
-        return CarMapper.makeCarDTOList(carService.getCars());
+    public Page<CarDTO> getCars(@PageableDefault Pageable pageable) {
+        return CarMapper.makeCarDTOPage(carService.getCars(pageable));
+    }
+
+    /**
+     * All cars which are not deleted as newline delimited JSON, written while they are read from the database.
+     */
+    @GetMapping(produces = DriverLocationStreamReader.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamCars() {
+        return out -> carStreamWriter.write(out, carService::streamCars);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,64 @@
+package com.mytaxi.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mytaxi.controller.mapper.CarMapper;
+import com.mytaxi.datatransferobject.CarDTO;
+import com.mytaxi.domainobject.CarDO;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes cars as newline delimited JSON while they are read, one {@link CarDTO} per line.
+ */
+@Component
+public class CarStreamWriter {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter carWriter;
+
+    public CarStreamWriter(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        // flushing after every car would send one chunk per car
+        this.carWriter = objectMapper.writerFor(CarDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * @param out    response body
+     * @param source hands every car to the given consumer
+     * @return number of cars written
+     */
+    public long write(OutputStream out, Consumer<Consumer<CarDO>> source) throws IOException {
+        long[] written = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            try {
+                source.accept(carDO -> {
+                    try {
+                        carWriter.writeValue(generator, CarMapper.makeCarDTO(carDO));
+                        generator.writeRaw('\n');
+                        if (++written[0] % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // most likely the client went away, which ends the stream and the transaction reading it
+                throw e.getCause();
+            }
+        }
+        return written[0];
+    }
+}
@@ -0,0 +1,62 @@
+package com.mytaxi.controller;
+
+import com.mytaxi.controller.mapper.DispatchMapper;
+import com.mytaxi.datatransferobject.DispatchDTO;
+import com.mytaxi.datatransferobject.DispatchRequestDTO;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.service.driver.DispatchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Assigns drivers to ride requests and releases them once the ride is over.
+ * <p/>
+ */
+@RestController
+@RequestMapping("v1/dispatch")
+public class DispatchController
+{
+
+    private final DispatchService dispatchService;
+
+
+    @Autowired
+    public DispatchController(final DispatchService dispatchService)
+    {
+        this.dispatchService = dispatchService;
+    }
+
+
+    /**
+     * Assigns the nearest available driver whose selected car matches the request, two requests never get the same driver.
+     * If dispatch is batched the response is sent once the window of the request was assigned, without holding a request
+     * thread meanwhile.
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<DispatchDTO> dispatch(@Valid @RequestBody DispatchRequestDTO dispatchRequestDTO)
+    {
+        return dispatchService.submit(DispatchMapper.makeDispatchRequest(dispatchRequestDTO)).thenApply(DispatchMapper::makeDispatchDTO);
+    }
+
+
+    @GetMapping("/{driverId}")
+    public DispatchDTO getDispatch(@PathVariable long driverId) throws EntityNotFoundException
+    {
+        return DispatchMapper.makeDispatchDTO(dispatchService.find(driverId));
+    }
+
+
+    /**
+     * Completes the ride of a driver, who may be dispatched again afterwards.
+     */
+    @DeleteMapping("/{driverId}")
+    public DispatchDTO completeDispatch(@PathVariable long driverId) throws EntityNotFoundException
+    {
+        return DispatchMapper.makeDispatchDTO(dispatchService.complete(driverId));
+    }
+}
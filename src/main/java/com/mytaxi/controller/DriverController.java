@@ -1,14 +1,20 @@
 package com.mytaxi.controller;
 
+import com.mytaxi.controller.mapper.CursorMapper;
 import com.mytaxi.controller.mapper.DriverCarMapper;
 import com.mytaxi.controller.mapper.DriverMapper;
+import com.mytaxi.datatransferobject.BulkLocationUpdateDTO;
+import com.mytaxi.datatransferobject.CursorPageDTO;
 import com.mytaxi.datatransferobject.DriverCarDTO;
 import com.mytaxi.datatransferobject.DriverDTO;
 import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarFilter;
 import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.domainvalue.SeekRequest;
 import com.mytaxi.exception.CarAlreadyInUseException;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.LocationIngestionOverloadedException;
 import com.mytaxi.service.driver.CarDriverService;
 import com.mytaxi.service.driver.DriverService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,9 +22,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -35,12 +44,16 @@ public class DriverController
 
     private final CarDriverService carDriverService;
 
+    private final DriverLocationStreamReader driverLocationStreamReader;
+
 
     @Autowired
-    public DriverController(final DriverService driverService, CarDriverService carDriverService)
+    public DriverController(
+        final DriverService driverService, CarDriverService carDriverService, DriverLocationStreamReader driverLocationStreamReader)
     {
         this.driverService = driverService;
         this.carDriverService = carDriverService;
+        this.driverLocationStreamReader = driverLocationStreamReader;
     }
 
 
@@ -70,12 +83,40 @@ public class DriverController
     @PutMapping("/{driverId}")
     public void updateLocation(
         @Valid @PathVariable long driverId, @RequestParam double longitude, @RequestParam double latitude)
-        throws ConstraintsViolationException, EntityNotFoundException
+        throws ConstraintsViolationException, EntityNotFoundException, LocationIngestionOverloadedException
     {
         driverService.updateLocation(driverId, longitude, latitude);
     }
 
 
+    @PutMapping("/{driverId}/online")
+    public DriverDTO goOnline(@PathVariable long driverId) throws EntityNotFoundException
+    {
+        return DriverMapper.makeDriverDTO(driverService.goOnline(driverId));
+    }
+
+
+    @PutMapping("/{driverId}/offline")
+    public DriverDTO goOffline(@PathVariable long driverId) throws EntityNotFoundException
+    {
+        return DriverMapper.makeDriverDTO(driverService.goOffline(driverId));
+    }
+
+
+    @PutMapping("/{driverId}/heartbeat")
+    public void heartbeat(@PathVariable long driverId) throws EntityNotFoundException
+    {
+        driverService.heartbeat(driverId);
+    }
+
+
+    @PostMapping(value = "/locations", consumes = {MediaType.APPLICATION_JSON_VALUE, DriverLocationStreamReader.APPLICATION_NDJSON_VALUE})
+    public BulkLocationUpdateDTO updateLocations(InputStream body) throws IOException
+    {
+        return driverLocationStreamReader.read(body, driverService::updateLocations);
+    }
+
+
     @GetMapping
     public List<DriverDTO> findDrivers(@RequestParam OnlineStatus onlineStatus)
         throws ConstraintsViolationException, EntityNotFoundException
@@ -83,6 +124,14 @@ public class DriverController
         return DriverMapper.makeDriverDTOList(driverService.find(onlineStatus));
     }
 
+    @GetMapping("/nearby")
+    public List<DriverDTO> findNearbyDrivers(
+        @RequestParam double latitude, @RequestParam double longitude,
+        @RequestParam(defaultValue = "5") double radiusKm, @RequestParam(defaultValue = "10") int limit)
+    {
+        return DriverMapper.makeDriverDTOList(driverService.findNearby(latitude, longitude, radiusKm, limit));
+    }
+
     @PutMapping("/{driverId}/selected-cars/{carId}")
     public DriverCarDTO selectCarForDriver(@PathVariable(name = "driverId") Long driverId,
                                            @PathVariable(name = "carId") Long carId) throws EntityNotFoundException, CarAlreadyInUseException, ConstraintsViolationException {
@@ -96,9 +145,22 @@ public class DriverController
     }
 
     @GetMapping("/driver-or-car-attributes")
-    public Page<DriverDTO> getDrivers(@RequestParam Map<String, Object> allRequestParams,
+    public Page<DriverDTO> getDrivers(@RequestParam Map<String, String> allRequestParams,
                                       @PageableDefault Pageable pageable)
     {
-        return DriverMapper.makeDriverDTOPage(driverService.getDrivers(allRequestParams, pageable));
+        return DriverMapper.makeDriverDTOPage(driverService.getDrivers(DriverCarFilter.parse(allRequestParams), pageable));
+    }
+
+    /**
+     * Same search as {@link #getDrivers(Map, Pageable)} but paged with a continuation token. Pass an empty {@code cursor}
+     * for the first page and the returned {@code nextCursor} for the following ones. The total is only counted on request.
+     */
+    @GetMapping(value = "/driver-or-car-attributes", params = "cursor")
+    public CursorPageDTO<DriverDTO> getDriversAfterCursor(
+        @RequestParam Map<String, String> allRequestParams, @RequestParam String cursor,
+        @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean withTotal)
+    {
+        SeekRequest seekRequest = new SeekRequest(CursorMapper.makeAfterId(cursor), size, withTotal);
+        return DriverMapper.makeDriverDTOCursorPage(driverService.getDrivers(DriverCarFilter.parse(allRequestParams), seekRequest));
     }
 }
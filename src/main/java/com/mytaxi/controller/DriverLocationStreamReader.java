@@ -0,0 +1,147 @@
+package com.mytaxi.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.mytaxi.datatransferobject.BulkLocationUpdateDTO;
+import com.mytaxi.datatransferobject.LocationUpdateFailureDTO;
+import com.mytaxi.domainvalue.DriverLocation;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads driver locations from a request body record by record and hands them over in chunks, so the whole body is never
+ * held in memory.
+ * <p/>
+ * The body is either a JSON array or newline delimited JSON of records like
+ * {@code {"driverId": 1, "lat": 52.52, "lon": 13.40, "ts": 1531395000000}}, {@code ts} being optional epoch milliseconds.
+ */
+@Component
+public class DriverLocationStreamReader {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final ObjectMapper objectMapper;
+
+    private final int chunkSize;
+
+    public DriverLocationStreamReader(final ObjectMapper objectMapper,
+                                      @Value("${mytaxi.location-ingestion.bulk-chunk-size:500}") int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunk size must be positive");
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param body    JSON array or newline delimited JSON
+     * @param applier applies a chunk of locations and returns an error message by position in the chunk for every
+     *                location it rejected
+     * @return number of records read and applied together with every failed record
+     */
+    public BulkLocationUpdateDTO read(InputStream body, Function<List<DriverLocation>, Map<Integer, String>> applier) throws IOException {
+        List<LocationUpdateFailureDTO> failures = new ArrayList<>();
+        List<DriverLocation> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        int received = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            try {
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    JsonNode record = parser.readValueAsTree();
+                    int index = received++;
+                    try {
+                        chunk.add(toDriverLocation(record));
+                        chunkIndexes.add(index);
+                    } catch (IllegalArgumentException e) {
+                        failures.add(new LocationUpdateFailureDTO(index, driverId(record), e.getMessage()));
+                    }
+
+                    if (chunk.size() == chunkSize) {
+                        apply(chunk, chunkIndexes, applier, failures);
+                    }
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException e) {
+                // the rest of the body can not be read anymore, everything read so far is still applied
+                failures.add(new LocationUpdateFailureDTO(received, null, "Malformed body: " + e.getOriginalMessage()));
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            apply(chunk, chunkIndexes, applier, failures);
+        }
+
+        return new BulkLocationUpdateDTO(received, received - countRecordFailures(failures, received), failures);
+    }
+
+    private void apply(List<DriverLocation> chunk, List<Integer> chunkIndexes,
+                       Function<List<DriverLocation>, Map<Integer, String>> applier, List<LocationUpdateFailureDTO> failures) {
+        Map<Integer, String> chunkFailures = applier.apply(chunk);
+        for (Map.Entry<Integer, String> failure : chunkFailures.entrySet()) {
+            failures.add(new LocationUpdateFailureDTO(chunkIndexes.get(failure.getKey()), chunk.get(failure.getKey()).getDriverId(),
+                    failure.getValue()));
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    private static int countRecordFailures(List<LocationUpdateFailureDTO> failures, int received) {
+        int count = 0;
+        for (LocationUpdateFailureDTO failure : failures) {
+            if (failure.getIndex() < received) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static DriverLocation toDriverLocation(JsonNode record) {
+        Preconditions.checkArgument(record.isObject(), "record is not an object");
+        JsonNode driverId = record.get("driverId");
+        Preconditions.checkArgument(driverId != null && driverId.canConvertToLong(), "driverId is missing");
+
+        double latitude = number(record, "lat", "latitude");
+        double longitude = number(record, "lon", "longitude");
+
+        return new DriverLocation(driverId.asLong(), new GeoCoordinate(latitude, longitude), timestamp(record.get("ts")));
+    }
+
+    private static double number(JsonNode record, String name, String alias) {
+        JsonNode value = record.has(name) ? record.get(name) : record.get(alias);
+        Preconditions.checkArgument(value != null && value.isNumber(), "%s is missing", name);
+        return value.asDouble();
+    }
+
+    private static ZonedDateTime timestamp(JsonNode ts) {
+        if (ts == null || ts.isNull()) {
+            return ZonedDateTime.now();
+        }
+        Preconditions.checkArgument(ts.canConvertToLong(), "ts must be epoch milliseconds");
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(ts.asLong()), ZoneOffset.UTC);
+    }
+
+    private static Long driverId(JsonNode record) {
+        JsonNode driverId = record.get("driverId");
+        return driverId != null && driverId.canConvertToLong() ? driverId.asLong() : null;
+    }
+}
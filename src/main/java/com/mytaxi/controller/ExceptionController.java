@@ -4,6 +4,9 @@ import com.mytaxi.exception.CarAlreadyInUseException;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.CustomErrorResponse;
 import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.LocationIngestionOverloadedException;
+import com.mytaxi.exception.NoDriverAvailableException;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,27 +17,57 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 @Slf4j
 public class ExceptionController {
 
+    static final String EXCEPTION_COUNTER = "mytaxi.exceptions";
+
+    private final MeterRegistry meterRegistry;
+
+    public ExceptionController(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @ExceptionHandler(CarAlreadyInUseException.class)
     public ResponseEntity<CustomErrorResponse> handleCarAlreadyInUseException(CarAlreadyInUseException e) {
         log.error("Excetion Occured: " + e);
+        count(e);
         return ResponseEntity.status(HttpStatus.CONFLICT).body(new CustomErrorResponse(HttpStatus.CONFLICT.value(), e.getMessage()));
     }
 
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<CustomErrorResponse> handleEntityNotFoundException(EntityNotFoundException e) {
         log.error("Excetion Occured: " + e);
+        count(e);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CustomErrorResponse(HttpStatus.BAD_REQUEST.value(), e.getMessage()));
     }
 
     @ExceptionHandler(ConstraintsViolationException.class)
     public ResponseEntity<CustomErrorResponse> handleConstraintsViolationException(ConstraintsViolationException e) {
         log.error("Excetion Occured: " + e);
+        count(e);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CustomErrorResponse(HttpStatus.BAD_REQUEST.value(), e.getMessage()));
     }
 
+    @ExceptionHandler(LocationIngestionOverloadedException.class)
+    public ResponseEntity<CustomErrorResponse> handleLocationIngestionOverloadedException(LocationIngestionOverloadedException e) {
+        log.warn("Excetion Occured: " + e);
+        count(e);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new CustomErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage()));
+    }
+
+    @ExceptionHandler(NoDriverAvailableException.class)
+    public ResponseEntity<CustomErrorResponse> handleNoDriverAvailableException(NoDriverAvailableException e) {
+        log.warn("Excetion Occured: " + e);
+        count(e);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new CustomErrorResponse(HttpStatus.NOT_FOUND.value(), e.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<CustomErrorResponse> handleException(Exception e) {
         log.error("Excetion Occured: " + e);
+        count(e);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CustomErrorResponse(HttpStatus.BAD_REQUEST.value(), e.getMessage()));
     }
+
+    private void count(Exception e) {
+        meterRegistry.counter(EXCEPTION_COUNTER, "exception", e.getClass().getSimpleName()).increment();
+    }
 }
@@ -2,6 +2,8 @@ package com.mytaxi.controller.mapper;
 
 import com.mytaxi.datatransferobject.CarDTO;
 import com.mytaxi.domainobject.CarDO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,4 +21,8 @@ public class CarMapper {
     public static List<CarDTO> makeCarDTOList(List<CarDO> cars) {
         return cars.stream().map(car -> makeCarDTO(car)).collect(Collectors.toList());
     }
+
+    public static Page<CarDTO> makeCarDTOPage(Page<CarDO> cars) {
+        return new PageImpl<>(makeCarDTOList(cars.getContent()), cars.getPageable(), cars.getTotalElements());
+    }
 }
@@ -0,0 +1,41 @@
+package com.mytaxi.controller.mapper;
+
+import com.google.common.base.Strings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Turns the id a page ended with into the opaque continuation token handed out to clients and back.
+ */
+public class CursorMapper {
+
+    private static final String VERSION_PREFIX = "v1:";
+
+    public static String makeCursor(Long lastId) {
+        if (lastId == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((VERSION_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor token of the previous page, empty for the first page
+     * @return id to continue after, null for the first page
+     * @throws IllegalArgumentException if the cursor was not handed out by {@link #makeCursor(Long)}
+     */
+    public static Long makeAfterId(String cursor) {
+        if (Strings.isNullOrEmpty(cursor)) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(VERSION_PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Long.valueOf(decoded.substring(VERSION_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mytaxi.controller.mapper;
+
+import com.mytaxi.datatransferobject.DispatchDTO;
+import com.mytaxi.datatransferobject.DispatchRequestDTO;
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.domainvalue.GeoCoordinate;
+
+public class DispatchMapper {
+
+    public static final double DEFAULT_RADIUS_KM = 5;
+
+    public static DispatchRequest makeDispatchRequest(DispatchRequestDTO dispatchRequestDTO) {
+        double radiusKm = dispatchRequestDTO.getRadiusKm() == null ? DEFAULT_RADIUS_KM : dispatchRequestDTO.getRadiusKm();
+        return new DispatchRequest(new GeoCoordinate(dispatchRequestDTO.getLatitude(), dispatchRequestDTO.getLongitude()), radiusKm,
+                dispatchRequestDTO.getConvertible(), dispatchRequestDTO.getEngineType(), dispatchRequestDTO.getMinRating());
+    }
+
+    public static DispatchDTO makeDispatchDTO(Dispatch dispatch) {
+        return new DispatchDTO(dispatch.getDriverId(), dispatch.getCarId(), dispatch.getPickup().getLatitude(), dispatch.getPickup().getLongitude(),
+                dispatch.getDistanceKm(), dispatch.getDateDispatched());
+    }
+}
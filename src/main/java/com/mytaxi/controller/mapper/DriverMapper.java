@@ -1,8 +1,10 @@
 package com.mytaxi.controller.mapper;
 
+import com.mytaxi.datatransferobject.CursorPageDTO;
 import com.mytaxi.datatransferobject.DriverDTO;
 import com.mytaxi.domainobject.DriverDO;
 import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.domainvalue.SeekPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 
@@ -45,4 +47,9 @@ public class DriverMapper
     {
         return new PageImpl<>(makeDriverDTOList(drivers.getContent()), drivers.getPageable(), drivers.getTotalElements());
     }
+
+    public static CursorPageDTO<DriverDTO> makeDriverDTOCursorPage(SeekPage<DriverDO> drivers)
+    {
+        return new CursorPageDTO<>(makeDriverDTOList(drivers.getContent()), CursorMapper.makeCursor(drivers.getLastId()), drivers.getTotal());
+    }
 }
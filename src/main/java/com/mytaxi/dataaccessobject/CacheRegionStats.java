@@ -0,0 +1,28 @@
+package com.mytaxi.dataaccessobject;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of the counters of one second level cache region.
+ */
+@Data
+@AllArgsConstructor
+public class CacheRegionStats {
+
+    private long hits;
+
+    private long misses;
+
+    private long puts;
+
+    /**
+     * Share of the lookups served by the region, 0 if there were no lookups yet.
+     */
+    private double hitRate;
+
+    static CacheRegionStats of(long hits, long misses, long puts) {
+        long lookups = hits + misses;
+        return new CacheRegionStats(hits, misses, puts, lookups == 0 ? 0 : (double) hits / lookups);
+    }
+}
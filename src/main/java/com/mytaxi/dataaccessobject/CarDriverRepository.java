@@ -4,15 +4,21 @@ import com.mytaxi.domainobject.DriverCarDO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 import java.util.List;
 
-public interface CarDriverRepository extends CrudRepository<DriverCarDO, Long>, JpaSpecificationExecutor<DriverCarDO> {
+public interface CarDriverRepository extends CrudRepository<DriverCarDO, Long>, JpaSpecificationExecutor<DriverCarDO>, CarDriverRepositoryCustom {
 
     List<DriverCarDO> findByCarDO_IdAndSelectedIsTrue(Long carDOId);
 
+    List<DriverCarDO> findBySelectedIsTrue();
+
     DriverCarDO findByDriverDO_IdAndCarDO_Id(Long driverId, Long carId);
 
     Page<DriverCarDO> findAll(Pageable pageable);
+
+    @Query("select dc from DriverCarDO dc join fetch dc.driverDO join fetch dc.carDO")
+    List<DriverCarDO> findAllWithDriverAndCar();
 }
@@ -0,0 +1,27 @@
+package com.mytaxi.dataaccessobject;
+
+import com.mytaxi.domainobject.DriverCarDO;
+import com.mytaxi.domainobject.DriverDO;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Keyset queries on the driver_car table which, unlike {@code Pageable} queries, neither skip rows with an offset nor
+ * count all matching rows.
+ */
+public interface CarDriverRepositoryCustom {
+
+    /**
+     * @return up to {@code limit} matching rows with an id greater than {@code afterId}, ordered by id
+     */
+    List<DriverCarDO> findAllAfter(Specification<DriverCarDO> specification, Long afterId, int limit);
+
+    /**
+     * @return up to {@code limit} distinct drivers of matching rows with an id greater than {@code afterDriverId}, ordered
+     * by id
+     */
+    List<DriverDO> findDriversAfter(Specification<DriverCarDO> specification, Long afterDriverId, int limit);
+
+    long countDrivers(Specification<DriverCarDO> specification);
+}
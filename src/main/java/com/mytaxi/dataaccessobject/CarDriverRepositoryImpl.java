@@ -0,0 +1,75 @@
+package com.mytaxi.dataaccessobject;
+
+import com.mytaxi.domainobject.DriverCarDO;
+import com.mytaxi.domainobject.DriverDO;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CarDriverRepositoryImpl implements CarDriverRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<DriverCarDO> findAllAfter(Specification<DriverCarDO> specification, Long afterId, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DriverCarDO> query = criteriaBuilder.createQuery(DriverCarDO.class);
+        Root<DriverCarDO> root = query.from(DriverCarDO.class);
+
+        query.select(root)
+                .where(where(specification, root, query, criteriaBuilder, root.<Long>get("id"), afterId))
+                .orderBy(criteriaBuilder.asc(root.get("id")));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<DriverDO> findDriversAfter(Specification<DriverCarDO> specification, Long afterDriverId, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DriverDO> query = criteriaBuilder.createQuery(DriverDO.class);
+        Root<DriverCarDO> root = query.from(DriverCarDO.class);
+        Join<DriverCarDO, DriverDO> driver = root.join("driverDO");
+
+        query.select(driver)
+                .distinct(true)
+                .where(where(specification, root, query, criteriaBuilder, driver.<Long>get("id"), afterDriverId))
+                .orderBy(criteriaBuilder.asc(driver.get("id")));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countDrivers(Specification<DriverCarDO> specification) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<DriverCarDO> root = query.from(DriverCarDO.class);
+
+        query.select(criteriaBuilder.countDistinct(root.get("driverDO").get("id")))
+                .where(where(specification, root, query, criteriaBuilder, null, null));
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static Predicate[] where(Specification<DriverCarDO> specification, Root<DriverCarDO> root, CriteriaQuery<?> query,
+                                     CriteriaBuilder criteriaBuilder, Expression<Long> id, Long afterId) {
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            predicates.add(predicate);
+        }
+        if (afterId != null) {
+            predicates.add(criteriaBuilder.greaterThan(id, afterId));
+        }
+        return predicates.toArray(new Predicate[]{});
+    }
+}
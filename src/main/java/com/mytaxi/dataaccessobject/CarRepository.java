@@ -1,9 +1,14 @@
 package com.mytaxi.dataaccessobject;
 
 import com.mytaxi.domainobject.CarDO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Database Access Object for driver table.
@@ -14,4 +19,13 @@ public interface CarRepository extends CrudRepository<CarDO, Long> {
 
     List<CarDO> findAllByDeletedIsFalse();
 
+    Page<CarDO> findAllByDeletedIsFalse(Pageable pageable);
+
+    /**
+     * Streams the cars which are not deleted, rows are fetched from the database in chunks while the stream is consumed.
+     * Has to be consumed and closed within a transaction.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<CarDO> streamAllByDeletedIsFalse();
+
 }
@@ -0,0 +1,37 @@
+package com.mytaxi.dataaccessobject;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.jcache.JCacheRegionFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Properties;
+
+/**
+ * JCache region factory which also understands {@code classpath:} locations for {@code hibernate.javax.cache.uri}, the
+ * caching provider itself only opens absolute URLs.
+ */
+public class ClasspathJCacheRegionFactory extends JCacheRegionFactory {
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    @Override
+    protected URI getUri(Properties properties) {
+        String location = properties.getProperty(CONFIG_URI);
+        if (location == null || !location.startsWith(CLASSPATH_PREFIX)) {
+            return super.getUri(properties);
+        }
+
+        String resource = location.substring(CLASSPATH_PREFIX.length());
+        URL url = ClasspathJCacheRegionFactory.class.getClassLoader().getResource(resource.startsWith("/") ? resource.substring(1) : resource);
+        if (url == null) {
+            throw new CacheException("Could not find cache configuration " + location);
+        }
+        try {
+            return url.toURI();
+        } catch (URISyntaxException e) {
+            throw new CacheException("Could not read cache configuration " + location, e);
+        }
+    }
+}
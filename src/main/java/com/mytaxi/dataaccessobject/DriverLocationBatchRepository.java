@@ -0,0 +1,66 @@
+package com.mytaxi.dataaccessobject;
+
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverLocation;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Writes driver positions with plain JDBC batches, bypassing the persistence context and its dirty checking. Hibernate does
+ * not see these writes, so the written drivers are evicted from the second level cache.
+ */
+@Repository
+public class DriverLocationBatchRepository {
+
+    // a position older than the stored one is not written, pings of one driver may be written out of order
+    private static final String UPDATE_LOCATION =
+            "update driver set latitude = ?, longitude = ?, date_coordinate_updated = ?"
+                    + " where id = ? and (date_coordinate_updated is null or date_coordinate_updated <= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public DriverLocationBatchRepository(final JdbcTemplate jdbcTemplate, final EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * @param locations positions to write, at most one per driver
+     * @return number of updated rows per location, 0 if the driver does not exist or has a newer position stored
+     */
+    public int[] updateLocations(List<DriverLocation> locations) {
+        int[] updateCounts = jdbcTemplate.batchUpdate(UPDATE_LOCATION, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                DriverLocation location = locations.get(i);
+                Timestamp dateCoordinateUpdated = Timestamp.from(location.getDateCoordinateUpdated().toInstant());
+                statement.setDouble(1, location.getCoordinate().getLatitude());
+                statement.setDouble(2, location.getCoordinate().getLongitude());
+                statement.setTimestamp(3, dateCoordinateUpdated);
+                statement.setLong(4, location.getDriverId());
+                statement.setTimestamp(5, dateCoordinateUpdated);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return locations.size();
+            }
+        });
+
+        Cache cache = entityManagerFactory.getCache();
+        for (DriverLocation location : locations) {
+            cache.evict(DriverDO.class, location.getDriverId());
+        }
+        return updateCounts;
+    }
+}
@@ -2,16 +2,34 @@ package com.mytaxi.dataaccessobject;
 
 import com.mytaxi.domainobject.DriverDO;
 import com.mytaxi.domainvalue.OnlineStatus;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Database Access Object for driver table.
  * <p/>
  */
-public interface DriverRepository extends CrudRepository<DriverDO, Long>
+public interface DriverRepository extends CrudRepository<DriverDO, Long>, JpaSpecificationExecutor<DriverDO>
 {
 
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     List<DriverDO> findByOnlineStatus(OnlineStatus onlineStatus);
+
+    @Query("select d from DriverDO d where d.onlineStatus = :onlineStatus and d.deleted = false"
+        + " and d.coordinate.latitude between :minLatitude and :maxLatitude"
+        + " and d.coordinate.longitude between :minLongitude and :maxLongitude")
+    List<DriverDO> findInBoundingBox(
+        @Param("onlineStatus") OnlineStatus onlineStatus,
+        @Param("minLatitude") double minLatitude, @Param("maxLatitude") double maxLatitude,
+        @Param("minLongitude") double minLongitude, @Param("maxLongitude") double maxLongitude);
+
+    @Query("select d.id from DriverDO d where d.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
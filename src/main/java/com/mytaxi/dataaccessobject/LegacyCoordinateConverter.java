@@ -0,0 +1,54 @@
+package com.mytaxi.dataaccessobject;
+
+import com.mytaxi.domainvalue.GeoCoordinate;
+import org.springframework.data.geo.Point;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Reads the Java-serialized {@link Point} blobs of the former {@code driver.coordinate} column.
+ * <p/>
+ * Only {@link Point} may be deserialized, anything else in the column is rejected.
+ */
+public final class LegacyCoordinateConverter {
+
+    private LegacyCoordinateConverter() {
+    }
+
+    public static GeoCoordinate toGeoCoordinate(byte[] serializedPoint) {
+        if (serializedPoint == null || serializedPoint.length == 0) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new PointInputStream(new ByteArrayInputStream(serializedPoint))) {
+            Object point = in.readObject();
+            if (!(point instanceof Point)) {
+                // strings and arrays are read without resolving a class
+                throw new IllegalArgumentException("Could not read legacy coordinate: unexpected value " + point);
+            }
+            return GeoCoordinate.fromPoint((Point) point);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("Could not read legacy coordinate: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class PointInputStream extends ObjectInputStream {
+
+        private PointInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!Point.class.getName().equals(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Unexpected class in legacy coordinate");
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mytaxi.dataaccessobject;
+
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Moves driver positions from the legacy serialized {@code coordinate} column into the {@code latitude} and
+ * {@code longitude} columns.
+ * <p/>
+ * Runs before anything else reads positions on startup and only touches rows which were not migrated yet, so it is safe
+ * to leave enabled until the legacy column is dropped. Rows whose blob can not be read are logged and left as they are.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "mytaxi.legacy-coordinate-migration.enabled", havingValue = "true")
+public class LegacyCoordinateMigration {
+
+    private static final String LEGACY_TABLE = "driver";
+
+    private static final String LEGACY_COLUMN = "coordinate";
+
+    private static final String SELECT_LEGACY_COORDINATES =
+            "select id, coordinate from driver where coordinate is not null and latitude is null";
+
+    private static final String UPDATE_COORDINATE = "update driver set latitude = ?, longitude = ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public LegacyCoordinateMigration(final JdbcTemplate jdbcTemplate, final EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrate() {
+        List<Object[]> updates = new ArrayList<>();
+        try {
+            if (!hasLegacyColumn()) {
+                log.info("No legacy coordinates to migrate, the driver table has no coordinate column");
+                return;
+            }
+            jdbcTemplate.query(SELECT_LEGACY_COORDINATES, resultSet -> {
+                long driverId = resultSet.getLong("id");
+                try {
+                    GeoCoordinate coordinate = LegacyCoordinateConverter.toGeoCoordinate(resultSet.getBytes("coordinate"));
+                    if (coordinate != null) {
+                        updates.add(new Object[]{coordinate.getLatitude(), coordinate.getLongitude(), driverId});
+                    }
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping the unreadable legacy coordinate of driver {}: {}", driverId, e.getMessage());
+                }
+            });
+
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_COORDINATE, updates);
+                // drivers may have been cached while loading the selected cars, without their position
+                entityManagerFactory.getCache().evict(DriverDO.class);
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not migrate the legacy driver coordinates", e);
+            return;
+        }
+        log.info("Migrated {} legacy driver coordinates", updates.size());
+    }
+
+    private boolean hasLegacyColumn() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String table = identifier(metaData, LEGACY_TABLE);
+            String column = identifier(metaData, LEGACY_COLUMN);
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, column)) {
+                return columns.next();
+            }
+        });
+    }
+
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase(Locale.ROOT);
+        }
+        return metaData.storesLowerCaseIdentifiers() ? name.toLowerCase(Locale.ROOT) : name;
+    }
+}
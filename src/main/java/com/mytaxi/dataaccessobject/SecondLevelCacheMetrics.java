@@ -0,0 +1,42 @@
+package com.mytaxi.dataaccessobject;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hit and miss counters of the hibernate second level cache regions and the query cache. Counted only while
+ * {@code hibernate.generate_statistics} is enabled.
+ */
+@Component
+public class SecondLevelCacheMetrics {
+
+    public static final String QUERY_CACHE = "query";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCacheMetrics(final EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * @return counters by region name, the query cache is listed as {@link #QUERY_CACHE}
+     */
+    public Map<String, CacheRegionStats> getStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, CacheRegionStats> stats = new TreeMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(regionName);
+            stats.put(regionName, CacheRegionStats.of(region.getHitCount(), region.getMissCount(), region.getPutCount()));
+        }
+        stats.put(QUERY_CACHE, CacheRegionStats.of(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount()));
+        return stats;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mytaxi.datatransferobject;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkLocationUpdateDTO {
+
+    private Integer received;
+
+    private Integer applied;
+
+    private List<LocationUpdateFailureDTO> failures;
+}
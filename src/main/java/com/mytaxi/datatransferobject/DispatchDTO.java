@@ -0,0 +1,25 @@
+package com.mytaxi.datatransferobject;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DispatchDTO {
+
+    private Long driverId;
+
+    private Long carId;
+
+    private Double latitude;
+
+    private Double longitude;
+
+    private Double distanceKm;
+
+    private ZonedDateTime dateDispatched;
+}
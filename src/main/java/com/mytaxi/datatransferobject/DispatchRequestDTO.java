@@ -0,0 +1,27 @@
+package com.mytaxi.datatransferobject;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DispatchRequestDTO {
+
+    @NotNull(message = "Latitude can not be null!")
+    private Double latitude;
+
+    @NotNull(message = "Longitude can not be null!")
+    private Double longitude;
+
+    private Double radiusKm;
+
+    private Boolean convertible;
+
+    private String engineType;
+
+    private Float minRating;
+}
@@ -0,0 +1,19 @@
+package com.mytaxi.datatransferobject;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LocationUpdateFailureDTO {
+
+    private Integer index;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long driverId;
+
+    private String message;
+}
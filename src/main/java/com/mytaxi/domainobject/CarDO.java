@@ -3,6 +3,8 @@ package com.mytaxi.domainobject;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.*;
@@ -11,9 +13,13 @@ import java.time.ZonedDateTime;
 
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "car")
 @Table(
         name = "car",
-        uniqueConstraints = @UniqueConstraint(name = "license_plate", columnNames = {"license_plate"})
+        uniqueConstraints = @UniqueConstraint(name = "license_plate", columnNames = {"license_plate"}),
+        // cars which are not deleted are paged and streamed in id order
+        indexes = @Index(name = "ix_car_deleted_id", columnList = "deleted, id")
 )
 @AllArgsConstructor
 @NoArgsConstructor
@@ -42,6 +48,9 @@ public class CarDO {
 
     private boolean deleted;
 
+    @Version
+    private Long version;
+
     public CarDO(String licensePlate, Boolean convertible, Float rating, String engineType, String manufacturer) {
         this.licensePlate = licensePlate;
         this.convertible = convertible;
@@ -1,14 +1,24 @@
 package com.mytaxi.domainobject;
 
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "driver_car")
 @Table(
         name = "driver_car",
-        uniqueConstraints = @UniqueConstraint(name = "car_id_driver_id", columnNames = {"car_id", "driver_id"})
+        uniqueConstraints = @UniqueConstraint(name = "car_id_driver_id", columnNames = {"car_id", "driver_id"}),
+        // the selected driver of a car, the selected cars of a driver and all selections
+        indexes = {
+                @Index(name = "ix_driver_car_car_id_selected", columnList = "car_id, selected"),
+                @Index(name = "ix_driver_car_driver_id_selected", columnList = "driver_id, selected"),
+                @Index(name = "ix_driver_car_selected", columnList = "selected")
+        }
 )
 public class DriverCarDO {
 
@@ -27,4 +37,7 @@ public class DriverCarDO {
     @Column(name = "selected", nullable = false)
     private Boolean selected = false;
 
+    @Version
+    private Long version;
+
 }
@@ -2,6 +2,9 @@ package com.mytaxi.domainobject;
 
 import com.mytaxi.domainvalue.GeoCoordinate;
 import com.mytaxi.domainvalue.OnlineStatus;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import javax.persistence.*;
@@ -9,9 +12,14 @@ import javax.validation.constraints.NotNull;
 import java.time.ZonedDateTime;
 
 @Entity
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "driver")
 @Table(
     name = "driver",
-    uniqueConstraints = @UniqueConstraint(name = "uc_username", columnNames = {"username"})
+    uniqueConstraints = @UniqueConstraint(name = "uc_username", columnNames = {"username"}),
+    // lookups by online status, the nearby search adds deleted = false
+    indexes = @Index(name = "ix_driver_online_status_deleted", columnList = "online_status, deleted")
 )
 public class DriverDO
 {
@@ -46,6 +54,9 @@ public class DriverDO
     @Column(nullable = false)
     private OnlineStatus onlineStatus;
 
+    @Version
+    private Long version;
+
 
     private DriverDO()
     {
@@ -111,6 +122,12 @@ public class DriverDO
     }
 
 
+    public Long getVersion()
+    {
+        return version;
+    }
+
+
     public GeoCoordinate getCoordinate()
     {
         return coordinate;
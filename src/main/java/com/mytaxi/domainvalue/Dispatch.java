@@ -0,0 +1,63 @@
+package com.mytaxi.domainvalue;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A driver and the car they drive, assigned to pick up a passenger.
+ */
+public final class Dispatch
+{
+
+    private final long driverId;
+
+    private final long carId;
+
+    private final GeoCoordinate pickup;
+
+    private final double distanceKm;
+
+    private final ZonedDateTime dateDispatched;
+
+
+    public Dispatch(final long driverId, final long carId, final GeoCoordinate pickup, final double distanceKm, final ZonedDateTime dateDispatched)
+    {
+        this.driverId = driverId;
+        this.carId = carId;
+        this.pickup = pickup;
+        this.distanceKm = distanceKm;
+        this.dateDispatched = dateDispatched;
+    }
+
+
+    public long getDriverId()
+    {
+        return driverId;
+    }
+
+
+    public long getCarId()
+    {
+        return carId;
+    }
+
+
+    public GeoCoordinate getPickup()
+    {
+        return pickup;
+    }
+
+
+    /**
+     * Great-circle distance between the driver and the pickup point when the driver was assigned.
+     */
+    public double getDistanceKm()
+    {
+        return distanceKm;
+    }
+
+
+    public ZonedDateTime getDateDispatched()
+    {
+        return dateDispatched;
+    }
+}
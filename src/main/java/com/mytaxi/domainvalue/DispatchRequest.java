@@ -0,0 +1,83 @@
+package com.mytaxi.domainvalue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Asks for the nearest online driver within {@code radiusKm} of a pickup point whose selected car has the requested
+ * attributes. Attributes left null match every car.
+ */
+public final class DispatchRequest
+{
+
+    public static final double MAX_RADIUS_KM = 100;
+
+    private final GeoCoordinate pickup;
+
+    private final double radiusKm;
+
+    private final Boolean convertible;
+
+    private final String engineType;
+
+    private final Float minRating;
+
+
+    /**
+     * @param pickup      where the passenger waits
+     * @param radiusKm    maximum great-circle distance of the driver
+     * @param convertible required convertible flag of the car or null
+     * @param engineType  required engine type of the car or null
+     * @param minRating   lowest accepted car rating or null
+     */
+    public DispatchRequest(final GeoCoordinate pickup, final double radiusKm, final Boolean convertible, final String engineType, final Float minRating)
+    {
+        Preconditions.checkArgument(pickup != null, "pickup must be given");
+        Preconditions.checkArgument(radiusKm > 0 && radiusKm <= MAX_RADIUS_KM, "radiusKm must be in (0, %s]", MAX_RADIUS_KM);
+        this.pickup = pickup;
+        this.radiusKm = radiusKm;
+        this.convertible = convertible;
+        this.engineType = engineType;
+        this.minRating = minRating;
+    }
+
+
+    /**
+     * Whether a car with the given attributes may serve this request.
+     */
+    public boolean accepts(final Boolean carConvertible, final String carEngineType, final Float carRating)
+    {
+        return (convertible == null || convertible.equals(carConvertible))
+            && (engineType == null || engineType.equals(carEngineType))
+            && (minRating == null || (carRating != null && carRating >= minRating));
+    }
+
+
+    public GeoCoordinate getPickup()
+    {
+        return pickup;
+    }
+
+
+    public double getRadiusKm()
+    {
+        return radiusKm;
+    }
+
+
+    public Boolean getConvertible()
+    {
+        return convertible;
+    }
+
+
+    public String getEngineType()
+    {
+        return engineType;
+    }
+
+
+    public Float getMinRating()
+    {
+        return minRating;
+    }
+}
@@ -0,0 +1,102 @@
+package com.mytaxi.domainvalue;
+
+import com.google.common.base.Preconditions;
+import java.util.function.Function;
+
+/**
+ * Driver and car attributes a driver search may filter on, each knowing its request parameter, the association and field it
+ * is stored in and how its raw parameter value is parsed.
+ */
+public enum DriverCarAttribute
+{
+    USERNAME("username", Association.DRIVER, true, value -> value),
+    ONLINE_STATUS("onlineStatus", Association.DRIVER, false, value -> OnlineStatus.valueOf(value.toUpperCase())),
+    LICENSE_PLATE("licensePlate", Association.CAR, true, value -> value),
+    CONVERTIBLE("convertible", Association.CAR, false, DriverCarAttribute::parseBoolean),
+    RATING("rating", Association.CAR, false, Float::valueOf),
+    ENGINE_TYPE("engineType", Association.CAR, false, value -> value),
+    MANUFACTURER("manufacturer", Association.CAR, true, value -> value);
+
+    /**
+     * The side of a driver car an attribute belongs to.
+     */
+    public enum Association
+    {
+        DRIVER("driverDO"), CAR("carDO");
+
+        private final String attributeName;
+
+
+        Association(final String attributeName)
+        {
+            this.attributeName = attributeName;
+        }
+
+
+        public String getAttributeName()
+        {
+            return attributeName;
+        }
+    }
+
+    private final String parameterName;
+
+    private final Association association;
+
+    private final boolean contains;
+
+    private final Function<String, Object> parser;
+
+
+    DriverCarAttribute(final String parameterName, final Association association, final boolean contains, final Function<String, Object> parser)
+    {
+        this.parameterName = parameterName;
+        this.association = association;
+        this.contains = contains;
+        this.parser = parser;
+    }
+
+
+    /**
+     * Name of the request parameter, which is the field name on the associated entity as well.
+     */
+    public String getParameterName()
+    {
+        return parameterName;
+    }
+
+
+    public Association getAssociation()
+    {
+        return association;
+    }
+
+
+    /**
+     * Whether the attribute matches values containing the filter value instead of equal ones.
+     */
+    public boolean isContains()
+    {
+        return contains;
+    }
+
+
+    Object parse(final String value)
+    {
+        try
+        {
+            return parser.apply(value.trim());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("invalid value for " + parameterName + ": " + value, e);
+        }
+    }
+
+
+    private static Boolean parseBoolean(final String value)
+    {
+        Preconditions.checkArgument("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value), "not a boolean");
+        return Boolean.valueOf(value);
+    }
+}
@@ -0,0 +1,106 @@
+package com.mytaxi.domainvalue;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typed driver search filter, parsed once from the raw request parameters.
+ * <p/>
+ * The {@link #getShape() shape} tells which attributes are set regardless of their values, filters of the same shape
+ * translate into the same query.
+ */
+public final class DriverCarFilter
+{
+
+    public static final DriverCarFilter EMPTY = new DriverCarFilter(new EnumMap<>(DriverCarAttribute.class));
+
+    private final EnumMap<DriverCarAttribute, Object> values;
+
+    private final int shape;
+
+
+    private DriverCarFilter(final EnumMap<DriverCarAttribute, Object> values)
+    {
+        this.values = values;
+        int attributes = 0;
+        for (DriverCarAttribute attribute : values.keySet())
+        {
+            attributes |= 1 << attribute.ordinal();
+        }
+        this.shape = attributes;
+    }
+
+
+    /**
+     * Picks the known driver and car attributes out of the request parameters, other parameters like paging ones are ignored
+     * as well as blank values.
+     *
+     * @param params raw request parameters
+     * @throws IllegalArgumentException if a value does not parse into the type of its attribute
+     */
+    public static DriverCarFilter parse(final Map<String, String> params)
+    {
+        EnumMap<DriverCarAttribute, Object> values = new EnumMap<>(DriverCarAttribute.class);
+        for (DriverCarAttribute attribute : DriverCarAttribute.values())
+        {
+            String value = params.get(attribute.getParameterName());
+            if (value != null && !value.trim().isEmpty())
+            {
+                values.put(attribute, attribute.parse(value));
+            }
+        }
+        return values.isEmpty() ? EMPTY : new DriverCarFilter(values);
+    }
+
+
+    public Set<DriverCarAttribute> getAttributes()
+    {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+
+    public Object get(final DriverCarAttribute attribute)
+    {
+        return values.get(attribute);
+    }
+
+
+    /**
+     * Bit set of the ordinals of the set attributes.
+     */
+    public int getShape()
+    {
+        return shape;
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        return values.hashCode();
+    }
+
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || this.getClass() != obj.getClass())
+        {
+            return false;
+        }
+        return values.equals(((DriverCarFilter) obj).values);
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "DriverCarFilter " + values;
+    }
+}
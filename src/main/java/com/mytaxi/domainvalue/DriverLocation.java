@@ -0,0 +1,51 @@
+package com.mytaxi.domainvalue;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Position of a driver at a point in time.
+ */
+public final class DriverLocation
+{
+
+    private final long driverId;
+
+    private final GeoCoordinate coordinate;
+
+    private final ZonedDateTime dateCoordinateUpdated;
+
+
+    public DriverLocation(final long driverId, final GeoCoordinate coordinate, final ZonedDateTime dateCoordinateUpdated)
+    {
+        this.driverId = driverId;
+        this.coordinate = coordinate;
+        this.dateCoordinateUpdated = dateCoordinateUpdated;
+    }
+
+
+    public long getDriverId()
+    {
+        return driverId;
+    }
+
+
+    public GeoCoordinate getCoordinate()
+    {
+        return coordinate;
+    }
+
+
+    public ZonedDateTime getDateCoordinateUpdated()
+    {
+        return dateCoordinateUpdated;
+    }
+
+
+    /**
+     * @return whichever of both locations was taken last, this one if both have the same time
+     */
+    public DriverLocation newer(final DriverLocation other)
+    {
+        return other.dateCoordinateUpdated.isAfter(this.dateCoordinateUpdated) ? other : this;
+    }
+}
@@ -2,7 +2,6 @@ package com.mytaxi.domainvalue;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.common.base.Preconditions;
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
 import org.springframework.data.geo.Point;
@@ -15,49 +14,90 @@ public class GeoCoordinate
     private static final int MIN_LATITUDE = -90;
     private static final int MAX_LONGITUDE = 180;
     private static final int MIN_LONGITUDE = -180;
-    @Column(name = "coordinate")
-    private final Point point;
+
+    @Column(name = "latitude")
+    private final double latitude;
+
+    @Column(name = "longitude")
+    private final double longitude;
 
 
     protected GeoCoordinate()
     {
-        this.point = null;
+        this.latitude = 0;
+        this.longitude = 0;
     }
 
 
     /**
+     * The range checks only build their message once they fail, a valid coordinate allocates nothing but itself.
+     *
      * @param latitude  - y coordinate
      * @param longitude - x coordinate
      */
     public GeoCoordinate(final double latitude, final double longitude)
     {
-        Preconditions.checkArgument(latitude >= MIN_LATITUDE, "latitude is lower than min_latitude: " + MIN_LATITUDE);
-        Preconditions.checkArgument(latitude <= MAX_LATITUDE, "latitude is higher than max_latitude: " + MAX_LATITUDE);
-        Preconditions.checkArgument(longitude >= MIN_LONGITUDE, "longitude is lower than min_longitude: " + MIN_LONGITUDE);
-        Preconditions.checkArgument(longitude <= MAX_LONGITUDE, "longitude is higher than max_longitude: " + MAX_LONGITUDE);
+        if (!(latitude >= MIN_LATITUDE && latitude <= MAX_LATITUDE))
+        {
+            throw new IllegalArgumentException(outOfRange("latitude", latitude, MIN_LATITUDE, MAX_LATITUDE));
+        }
+        if (!(longitude >= MIN_LONGITUDE && longitude <= MAX_LONGITUDE))
+        {
+            throw new IllegalArgumentException(outOfRange("longitude", longitude, MIN_LONGITUDE, MAX_LONGITUDE));
+        }
 
-        this.point = new Point(longitude, latitude);
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+
+    /**
+     * Restores a coordinate from its {@link #toGeohash() geohash}, precise to about a centimeter.
+     */
+    public static GeoCoordinate fromGeohash(final long geohash)
+    {
+        return new GeoCoordinate(GeoHash.decodeLatitude(geohash), GeoHash.decodeLongitude(geohash));
+    }
+
+
+    /**
+     * Restores a coordinate from a point as it was stored before latitude and longitude got their own columns.
+     *
+     * @param point - x is the longitude, y the latitude
+     */
+    public static GeoCoordinate fromPoint(final Point point)
+    {
+        return new GeoCoordinate(point.getY(), point.getX());
     }
 
 
     @JsonProperty
     public double getLatitude()
     {
-        return this.point.getY();
+        return this.latitude;
+    }
+
+
+    /**
+     * @return the coordinate packed into one long, see {@link GeoHash}
+     */
+    public long toGeohash()
+    {
+        return GeoHash.encode(this.latitude, this.longitude);
     }
 
 
     @JsonIgnore
     public Point getPoint()
     {
-        return this.point;
+        return new Point(this.longitude, this.latitude);
     }
 
 
     @JsonProperty
     public double getLongitude()
     {
-        return this.point.getX();
+        return this.longitude;
     }
 
 
@@ -66,7 +106,8 @@ public class GeoCoordinate
     {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((this.point == null) ? 0 : this.point.hashCode());
+        result = prime * result + Double.hashCode(this.latitude);
+        result = prime * result + Double.hashCode(this.longitude);
         return result;
     }
 
@@ -87,25 +128,20 @@ public class GeoCoordinate
             return false;
         }
         final GeoCoordinate other = (GeoCoordinate) obj;
-        if (this.point == null)
-        {
-            if (other.point != null)
-            {
-                return false;
-            }
-        }
-        else if (!this.point.equals(other.point))
-        {
-            return false;
-        }
-        return true;
+        return Double.compare(this.latitude, other.latitude) == 0 && Double.compare(this.longitude, other.longitude) == 0;
+    }
+
+
+    private static String outOfRange(final String name, final double value, final int min, final int max)
+    {
+        return name + " " + value + " is not within [" + min + ", " + max + "]";
     }
 
 
     @Override
     public String toString()
     {
-        return this.point.toString();
+        return "Point [x=" + this.longitude + ", y=" + this.latitude + "]";
     }
 
 }
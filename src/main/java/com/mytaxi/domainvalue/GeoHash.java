@@ -0,0 +1,82 @@
+package com.mytaxi.domainvalue;
+
+/**
+ * Packs a coordinate into one {@code long}: 32 bits of longitude and 32 bits of latitude, interleaved bit by bit starting with
+ * the longitude like a binary geohash.
+ * <p/>
+ * A cell is about a centimeter wide, decoding returns its center. Coordinates sharing a prefix of the hash lie in the same
+ * cell of the coarser grid, so sorting by the hash keeps nearby coordinates together.
+ */
+public final class GeoHash
+{
+
+    private static final double CELLS_PER_AXIS = 4294967296.0; // 2^32
+
+    private static final long MAX_CELL = 0xFFFFFFFFL;
+
+
+    private GeoHash()
+    {
+    }
+
+
+    /**
+     * @param latitude  within [-90, 90]
+     * @param longitude within [-180, 180]
+     */
+    public static long encode(final double latitude, final double longitude)
+    {
+        return spread(cell(latitude + 90, 180)) | spread(cell(longitude + 180, 360)) << 1;
+    }
+
+
+    public static double decodeLatitude(final long geohash)
+    {
+        return center(compact(geohash), 180) - 90;
+    }
+
+
+    public static double decodeLongitude(final long geohash)
+    {
+        return center(compact(geohash >>> 1), 360) - 180;
+    }
+
+
+    private static long cell(final double offset, final double range)
+    {
+        return Math.min(MAX_CELL, (long) (offset / range * CELLS_PER_AXIS));
+    }
+
+
+    private static double center(final long cell, final double range)
+    {
+        return (cell + 0.5) / CELLS_PER_AXIS * range;
+    }
+
+
+    /**
+     * Moves the lower 32 bits to the even bit positions.
+     */
+    private static long spread(long bits)
+    {
+        bits = (bits | bits << 16) & 0x0000FFFF0000FFFFL;
+        bits = (bits | bits << 8) & 0x00FF00FF00FF00FFL;
+        bits = (bits | bits << 4) & 0x0F0F0F0F0F0F0F0FL;
+        bits = (bits | bits << 2) & 0x3333333333333333L;
+        return (bits | bits << 1) & 0x5555555555555555L;
+    }
+
+
+    /**
+     * Collects the even bit positions into the lower 32 bits.
+     */
+    private static long compact(long bits)
+    {
+        bits &= 0x5555555555555555L;
+        bits = (bits | bits >>> 1) & 0x3333333333333333L;
+        bits = (bits | bits >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        bits = (bits | bits >>> 4) & 0x00FF00FF00FF00FFL;
+        bits = (bits | bits >>> 8) & 0x0000FFFF0000FFFFL;
+        return (bits | bits >>> 16) & 0x00000000FFFFFFFFL;
+    }
+}
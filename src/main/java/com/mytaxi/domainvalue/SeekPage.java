@@ -0,0 +1,80 @@
+package com.mytaxi.domainvalue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Result of a {@link SeekRequest}.
+ */
+public final class SeekPage<T>
+{
+
+    private final List<T> content;
+
+    private final Long lastId;
+
+    private final Long total;
+
+
+    private SeekPage(final List<T> content, final Long lastId, final Long total)
+    {
+        this.content = content;
+        this.lastId = lastId;
+        this.total = total;
+    }
+
+
+    /**
+     * @param rows  up to {@code size + 1} rows, one more than asked for tells that there is a next page
+     * @param size  page size
+     * @param id    id of a row
+     * @param total total number of matching rows or null if it was not counted
+     */
+    public static <T> SeekPage<T> of(final List<T> rows, final int size, final Function<T, Long> id, final Long total)
+    {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        Long lastId = hasNext ? id.apply(content.get(content.size() - 1)) : null;
+        return new SeekPage<>(Collections.unmodifiableList(content), lastId, total);
+    }
+
+
+    public <R> SeekPage<R> map(final Function<T, R> mapper)
+    {
+        List<R> mapped = new ArrayList<>(content.size());
+        for (T row : content)
+        {
+            mapped.add(mapper.apply(row));
+        }
+        return new SeekPage<>(Collections.unmodifiableList(mapped), lastId, total);
+    }
+
+
+    public List<T> getContent()
+    {
+        return content;
+    }
+
+
+    /**
+     * @return id to continue after or null if this is the last page
+     */
+    public Long getLastId()
+    {
+        return lastId;
+    }
+
+
+    public boolean hasNext()
+    {
+        return lastId != null;
+    }
+
+
+    public Long getTotal()
+    {
+        return total;
+    }
+}
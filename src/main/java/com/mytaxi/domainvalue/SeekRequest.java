@@ -0,0 +1,50 @@
+package com.mytaxi.domainvalue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Asks for the next {@code size} rows after the row with id {@code afterId}, in ascending id order.
+ */
+public final class SeekRequest
+{
+
+    public static final int MAX_SIZE = 1000;
+
+    private final Long afterId;
+
+    private final int size;
+
+    private final boolean includeTotal;
+
+
+    /**
+     * @param afterId      id of the last row of the previous page, null for the first page
+     * @param size         maximum number of rows
+     * @param includeTotal whether the total number of matching rows should be counted as well
+     */
+    public SeekRequest(final Long afterId, final int size, final boolean includeTotal)
+    {
+        Preconditions.checkArgument(size > 0 && size <= MAX_SIZE, "size must be between 1 and %s", MAX_SIZE);
+        this.afterId = afterId;
+        this.size = size;
+        this.includeTotal = includeTotal;
+    }
+
+
+    public Long getAfterId()
+    {
+        return afterId;
+    }
+
+
+    public int getSize()
+    {
+        return size;
+    }
+
+
+    public boolean isIncludeTotal()
+    {
+        return includeTotal;
+    }
+}
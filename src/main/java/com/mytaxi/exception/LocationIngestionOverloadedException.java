@@ -0,0 +1,17 @@
+package com.mytaxi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many pending location updates.")
+public class LocationIngestionOverloadedException extends Exception
+{
+    static final long serialVersionUID = -3387516993444229948L;
+
+
+    public LocationIngestionOverloadedException(int capacity)
+    {
+        super("Too many pending location updates (capacity " + capacity + "), please retry later.");
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.mytaxi.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "No driver available.")
+public class NoDriverAvailableException extends Exception
+{
+    static final long serialVersionUID = -3387516993555229948L;
+
+
+    public NoDriverAvailableException(double radiusKm)
+    {
+        super("No available driver with a matching car within " + radiusKm + " km, please retry later or widen the radius.");
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.mytaxi.dataaccessobject.CarRepository;
+import com.mytaxi.dataaccessobject.DriverRepository;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarAttribute;
+import com.mytaxi.domainvalue.OnlineStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Substring indexes over the driver and car attributes the search matches with {@code LIKE '%value%'}, that is license plate,
+ * manufacturer and username, plus the online status served by the {@link DriverPresenceRegistry}.
+ * <p/>
+ * The indexes are filled on startup and kept up to date by the car and driver services. Soft deleted rows stay indexed since
+ * the search does not skip them either.
+ */
+@Component
+@Slf4j
+public class AttributeSearchIndex {
+
+    private final Map<DriverCarAttribute, TrigramIndex> indexes = new EnumMap<>(DriverCarAttribute.class);
+
+    private final CarRepository carRepository;
+
+    private final DriverRepository driverRepository;
+
+    private final DriverPresenceRegistry driverPresenceRegistry;
+
+    private final int maxIds;
+
+    private volatile boolean loaded;
+
+    public AttributeSearchIndex(final CarRepository carRepository, final DriverRepository driverRepository,
+                                final DriverPresenceRegistry driverPresenceRegistry,
+                                @Value("${mytaxi.search-index.max-ids:1000}") int maxIds) {
+        Preconditions.checkArgument(maxIds > 0, "max ids must be positive");
+        this.carRepository = carRepository;
+        this.driverRepository = driverRepository;
+        this.driverPresenceRegistry = driverPresenceRegistry;
+        this.maxIds = maxIds;
+        for (DriverCarAttribute attribute : DriverCarAttribute.values()) {
+            if (attribute.isContains()) {
+                indexes.put(attribute, new TrigramIndex());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (CarDO carDO : carRepository.findAll()) {
+            indexCar(carDO);
+        }
+        for (DriverDO driverDO : driverRepository.findAll()) {
+            indexDriver(driverDO);
+        }
+        loaded = true;
+        log.info("Indexed the search attributes of {} cars and {} drivers", indexes.get(DriverCarAttribute.LICENSE_PLATE).size(),
+                indexes.get(DriverCarAttribute.USERNAME).size());
+    }
+
+    public void indexCar(CarDO carDO) {
+        indexes.get(DriverCarAttribute.LICENSE_PLATE).put(carDO.getId(), carDO.getLicensePlate());
+        indexes.get(DriverCarAttribute.MANUFACTURER).put(carDO.getId(), carDO.getManufacturer());
+    }
+
+    public void indexDriver(DriverDO driverDO) {
+        indexes.get(DriverCarAttribute.USERNAME).put(driverDO.getId(), driverDO.getUsername());
+    }
+
+    /**
+     * Whether {@link #findIds(DriverCarAttribute, Object)} may resolve filters on the attribute.
+     */
+    public static boolean isIndexed(DriverCarAttribute attribute) {
+        return attribute.isContains() || attribute == DriverCarAttribute.ONLINE_STATUS;
+    }
+
+    /**
+     * Resolves a filter to the ids of the cars or drivers, depending on the association of the attribute, which match it.
+     * Substring filters are looked up in the trigram indexes, the online status in the {@link DriverPresenceRegistry}.
+     *
+     * @param attribute
+     * @param value
+     * @return matching ids or null if the attribute is not indexed, the index is not loaded yet or too many rows match for an
+     * id lookup to pay off
+     */
+    public Set<Long> findIds(DriverCarAttribute attribute, Object value) {
+        if (attribute == DriverCarAttribute.ONLINE_STATUS) {
+            return findDriverIds((OnlineStatus) value);
+        }
+        TrigramIndex index = indexes.get(attribute);
+        if (index == null || !loaded) {
+            return null;
+        }
+        return index.find((String) value, maxIds);
+    }
+
+    private Set<Long> findDriverIds(OnlineStatus onlineStatus) {
+        if (!driverPresenceRegistry.isLoaded()) {
+            return null;
+        }
+        Set<Long> driverIds = driverPresenceRegistry.driverIds(onlineStatus);
+        if (driverIds.size() > maxIds) {
+            return null;
+        }
+        // copied since the registry keeps changing while the query is built
+        Set<Long> snapshot = new HashSet<>(driverIds);
+        return snapshot.size() > maxIds ? null : snapshot;
+    }
+}
@@ -0,0 +1,410 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.dataaccessobject.CarRepository;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainvalue.DriverCarAttribute;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store of the car attributes a search filters on with equality or a contained text: one primitive array per
+ * attribute, indexed by row, and the car ids in ascending order.
+ * <p/>
+ * {@code rating} is a {@code float[]} holding NaN for no rating, {@code convertible} two bitsets for true and false, and
+ * {@code engineType} and {@code manufacturer} are dictionary encoded into {@code int[]} codes with -1 for no value. A filter
+ * is evaluated column by column into a bitset of matching rows, with plain loops over the arrays the JIT can unroll and
+ * vectorize; contains filters are resolved against the few dictionary values once instead of every row.
+ * <p/>
+ * Columns are copied on write and published through a volatile reference like the {@link FleetSnapshot}, so a search never
+ * blocks. Every car save of {@link DefaultCarService} updates or appends its row; deleted cars keep their row because the
+ * database search matches them as well.
+ */
+@Component
+@Slf4j
+public class CarAttributeColumns {
+
+    static final int NO_VALUE = -1;
+
+    private final CarRepository carRepository;
+
+    private final Object writeLock = new Object();
+
+    private volatile Columns columns = Columns.EMPTY;
+
+    private volatile boolean loaded;
+
+    public CarAttributeColumns(final CarRepository carRepository) {
+        this.carRepository = carRepository;
+    }
+
+    /**
+     * Whether an attribute is stored in a column, the others are left to the caller.
+     *
+     * @param attribute
+     */
+    public static boolean isColumnar(DriverCarAttribute attribute) {
+        switch (attribute) {
+            case CONVERTIBLE:
+            case RATING:
+            case ENGINE_TYPE:
+            case MANUFACTURER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        synchronized (writeLock) {
+            List<CarDO> cars = carRepository.findAll();
+            columns = Columns.of(cars.stream().sorted(Comparator.comparing(CarDO::getId)).toArray(CarDO[]::new));
+            loaded = true;
+        }
+        log.info("Loaded the attribute columns of {} cars", size());
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * Updates the row of a saved car or appends one for a new car.
+     *
+     * @param carDO
+     */
+    public void update(CarDO carDO) {
+        synchronized (writeLock) {
+            if (loaded) {
+                columns = columns.with(carDO);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the columnar attributes of a filter, the others are ignored.
+     *
+     * @param filter
+     * @return the cars matching all of them
+     */
+    public Matches match(DriverCarFilter filter) {
+        Columns current = columns;
+        long[] rows = Bits.all(current.size);
+
+        Object convertible = filter.get(DriverCarAttribute.CONVERTIBLE);
+        if (convertible != null) {
+            Bits.and(rows, (Boolean) convertible ? current.convertible : current.notConvertible);
+        }
+        Object rating = filter.get(DriverCarAttribute.RATING);
+        if (rating != null) {
+            Bits.and(rows, Bits.equalTo(current.ratings, current.size, (Float) rating));
+        }
+        Object engineType = filter.get(DriverCarAttribute.ENGINE_TYPE);
+        if (engineType != null) {
+            Integer code = current.engineTypes.codes.get(engineType);
+            if (code == null) {
+                Arrays.fill(rows, 0L);
+            } else {
+                Bits.and(rows, Bits.equalTo(current.engineTypeCodes, current.size, code));
+            }
+        }
+        Object manufacturer = filter.get(DriverCarAttribute.MANUFACTURER);
+        if (manufacturer != null) {
+            boolean[] codes = current.manufacturers.containing((String) manufacturer);
+            Bits.and(rows, Bits.in(current.manufacturerCodes, current.size, codes));
+        }
+        return new Matches(current.carIds, rows);
+    }
+
+    /**
+     * Cars matching a filter, as a bitset over the rows of the columns the filter was evaluated on.
+     */
+    public static final class Matches {
+
+        private final long[] carIds;
+
+        private final long[] rows;
+
+        private Matches(long[] carIds, long[] rows) {
+            this.carIds = carIds;
+            this.rows = rows;
+        }
+
+        public boolean contains(long carId) {
+            int row = Arrays.binarySearch(carIds, carId);
+            return row >= 0 && Bits.get(rows, row);
+        }
+
+        public int count() {
+            return Bits.count(rows);
+        }
+    }
+
+    private static final class Columns {
+
+        private static final Columns EMPTY = new Columns(0, new long[0], new float[0], new long[0], new long[0], new int[0],
+                new int[0], Dictionary.EMPTY, Dictionary.EMPTY);
+
+        private final int size;
+
+        private final long[] carIds;
+
+        private final float[] ratings;
+
+        private final long[] convertible;
+
+        private final long[] notConvertible;
+
+        private final int[] engineTypeCodes;
+
+        private final int[] manufacturerCodes;
+
+        private final Dictionary engineTypes;
+
+        private final Dictionary manufacturers;
+
+        private Columns(int size, long[] carIds, float[] ratings, long[] convertible, long[] notConvertible, int[] engineTypeCodes,
+                        int[] manufacturerCodes, Dictionary engineTypes, Dictionary manufacturers) {
+            this.size = size;
+            this.carIds = carIds;
+            this.ratings = ratings;
+            this.convertible = convertible;
+            this.notConvertible = notConvertible;
+            this.engineTypeCodes = engineTypeCodes;
+            this.manufacturerCodes = manufacturerCodes;
+            this.engineTypes = engineTypes;
+            this.manufacturers = manufacturers;
+        }
+
+        /**
+         * Columns of cars given in ascending id order.
+         */
+        private static Columns of(CarDO[] cars) {
+            Dictionary engineTypes = Dictionary.EMPTY;
+            Dictionary manufacturers = Dictionary.EMPTY;
+            for (CarDO carDO : cars) {
+                engineTypes = engineTypes.with(carDO.getEngineType());
+                manufacturers = manufacturers.with(carDO.getManufacturer());
+            }
+
+            int size = cars.length;
+            Columns columns = new Columns(size, new long[size], new float[size], new long[Bits.words(size)],
+                    new long[Bits.words(size)], new int[size], new int[size], engineTypes, manufacturers);
+            for (int row = 0; row < size; row++) {
+                columns.fill(row, cars[row]);
+            }
+            return columns;
+        }
+
+        /**
+         * Copy of the columns with the row of the car replaced or inserted at the position of its id.
+         */
+        private Columns with(CarDO carDO) {
+            int row = Arrays.binarySearch(carIds, 0, size, carDO.getId());
+            boolean append = row < 0;
+            int at = append ? -row - 1 : row;
+            int newSize = append ? size + 1 : size;
+
+            long[] newCarIds = insert(carIds, size, at, append);
+            float[] newRatings = insert(ratings, size, at, append);
+            int[] newEngineTypeCodes = insert(engineTypeCodes, size, at, append);
+            int[] newManufacturerCodes = insert(manufacturerCodes, size, at, append);
+            long[] newConvertible = Bits.insert(convertible, size, at, append);
+            long[] newNotConvertible = Bits.insert(notConvertible, size, at, append);
+
+            Columns columns = new Columns(newSize, newCarIds, newRatings, newConvertible, newNotConvertible, newEngineTypeCodes,
+                    newManufacturerCodes, engineTypes.with(carDO.getEngineType()), manufacturers.with(carDO.getManufacturer()));
+            columns.fill(at, carDO);
+            return columns;
+        }
+
+        // only called on columns which are not published yet
+        private void fill(int row, CarDO carDO) {
+            carIds[row] = carDO.getId();
+            ratings[row] = carDO.getRating() == null ? Float.NaN : carDO.getRating();
+            engineTypeCodes[row] = engineTypes.codeOf(carDO.getEngineType());
+            manufacturerCodes[row] = manufacturers.codeOf(carDO.getManufacturer());
+            Bits.set(convertible, row, Boolean.TRUE.equals(carDO.getConvertible()));
+            Bits.set(notConvertible, row, Boolean.FALSE.equals(carDO.getConvertible()));
+        }
+
+        private static long[] insert(long[] column, int size, int at, boolean append) {
+            if (!append) {
+                return column.clone();
+            }
+            long[] copy = new long[size + 1];
+            System.arraycopy(column, 0, copy, 0, at);
+            System.arraycopy(column, at, copy, at + 1, size - at);
+            return copy;
+        }
+
+        private static float[] insert(float[] column, int size, int at, boolean append) {
+            if (!append) {
+                return column.clone();
+            }
+            float[] copy = new float[size + 1];
+            System.arraycopy(column, 0, copy, 0, at);
+            System.arraycopy(column, at, copy, at + 1, size - at);
+            return copy;
+        }
+
+        private static int[] insert(int[] column, int size, int at, boolean append) {
+            if (!append) {
+                return column.clone();
+            }
+            int[] copy = new int[size + 1];
+            System.arraycopy(column, 0, copy, 0, at);
+            System.arraycopy(column, at, copy, at + 1, size - at);
+            return copy;
+        }
+    }
+
+    /**
+     * Distinct values of a text column, a value's code is its position.
+     */
+    private static final class Dictionary {
+
+        private static final Dictionary EMPTY = new Dictionary(new String[0], new HashMap<>());
+
+        private final String[] values;
+
+        private final Map<String, Integer> codes;
+
+        private Dictionary(String[] values, Map<String, Integer> codes) {
+            this.values = values;
+            this.codes = codes;
+        }
+
+        private Dictionary with(String value) {
+            if (value == null || codes.containsKey(value)) {
+                return this;
+            }
+            Map<String, Integer> newCodes = new HashMap<>(codes);
+            newCodes.put(value, values.length);
+            String[] newValues = Arrays.copyOf(values, values.length + 1);
+            newValues[values.length] = value;
+            return new Dictionary(newValues, newCodes);
+        }
+
+        private int codeOf(String value) {
+            return value == null ? NO_VALUE : codes.get(value);
+        }
+
+        private boolean[] containing(String part) {
+            boolean[] matching = new boolean[values.length];
+            for (int code = 0; code < values.length; code++) {
+                matching[code] = values[code].contains(part);
+            }
+            return matching;
+        }
+    }
+
+    /**
+     * Bitsets as plain {@code long} words, row {@code i} is bit {@code i % 64} of word {@code i / 64}.
+     */
+    static final class Bits {
+
+        private Bits() {
+        }
+
+        static long[] all(int size) {
+            long[] words = new long[words(size)];
+            Arrays.fill(words, -1L);
+            if (size % 64 != 0) {
+                words[words.length - 1] = (1L << size % 64) - 1;
+            }
+            return words;
+        }
+
+        static boolean get(long[] words, int row) {
+            return (words[row >>> 6] & 1L << row) != 0;
+        }
+
+        static void set(long[] words, int row, boolean value) {
+            if (value) {
+                words[row >>> 6] |= 1L << row;
+            } else {
+                words[row >>> 6] &= ~(1L << row);
+            }
+        }
+
+        static void and(long[] words, long[] other) {
+            for (int word = 0; word < words.length; word++) {
+                words[word] &= other[word];
+            }
+        }
+
+        static int count(long[] words) {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        static long[] equalTo(float[] column, int size, float value) {
+            long[] words = new long[words(size)];
+            for (int row = 0; row < size; row++) {
+                // branch free so the loop stays a straight pass over the column, NaN never equals
+                words[row >>> 6] |= (column[row] == value ? 1L : 0L) << row;
+            }
+            return words;
+        }
+
+        static long[] equalTo(int[] column, int size, int value) {
+            long[] words = new long[words(size)];
+            for (int row = 0; row < size; row++) {
+                words[row >>> 6] |= (column[row] == value ? 1L : 0L) << row;
+            }
+            return words;
+        }
+
+        static long[] in(int[] column, int size, boolean[] values) {
+            long[] words = new long[words(size)];
+            for (int row = 0; row < size; row++) {
+                int value = column[row];
+                words[row >>> 6] |= (value != NO_VALUE && values[value] ? 1L : 0L) << row;
+            }
+            return words;
+        }
+
+        /**
+         * Copy of a bitset of {@code size} rows, with a cleared row inserted at {@code at} if {@code append}.
+         */
+        static long[] insert(long[] words, int size, int at, boolean append) {
+            if (!append) {
+                return words.clone();
+            }
+            long[] copy = Arrays.copyOf(words, words(size + 1));
+            if (at == size) {
+                return copy;
+            }
+            // keep the rows before the inserted one, the rows after it are shifted by one
+            copy[at >>> 6] &= (1L << at) - 1;
+            Arrays.fill(copy, (at >>> 6) + 1, copy.length, 0L);
+            for (int row = at; row < size; row++) {
+                if (get(words, row)) {
+                    set(copy, row + 1, true);
+                }
+            }
+            return copy;
+        }
+
+        static int words(int size) {
+            return (size + 63) >>> 6;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.domainobject.CarDO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cars by id. The car catalog rarely changes, so cars may stay in memory for long.
+ */
+@Component
+public class CarCache extends EntityCache<CarDO> {
+
+    public CarCache(@Value("${mytaxi.entity-cache.car.maximum-size:10000}") long maximumSize,
+                    @Value("${mytaxi.entity-cache.car.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        super(maximumSize, expireAfterWriteSeconds);
+    }
+}
@@ -1,14 +1,16 @@
 package com.mytaxi.service.driver;
 
 import com.mytaxi.domainobject.DriverCarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import com.mytaxi.domainvalue.SeekPage;
+import com.mytaxi.domainvalue.SeekRequest;
 import com.mytaxi.exception.CarAlreadyInUseException;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
-import java.util.Map;
-
 public interface CarDriverService {
 
     DriverCarDO selectCarForDriver(Long driverId, Long carId) throws EntityNotFoundException, CarAlreadyInUseException, ConstraintsViolationException;
@@ -17,5 +19,11 @@ public interface CarDriverService {
 
     DriverCarDO find(Long driverId, Long carId);
 
-    Page<DriverCarDO> findCarDrivers(Map<String, Object> allRequestParams, Pageable pageable);
+    Page<DriverCarDO> findCarDrivers(DriverCarFilter filter, Pageable pageable);
+
+    SeekPage<DriverCarDO> findCarDrivers(DriverCarFilter filter, SeekRequest seekRequest);
+
+    Page<DriverDO> findDrivers(DriverCarFilter filter, Pageable pageable);
+
+    SeekPage<DriverDO> findDrivers(DriverCarFilter filter, SeekRequest seekRequest);
 }
@@ -0,0 +1,127 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.dataaccessobject.CarDriverRepository;
+import com.mytaxi.domainobject.DriverCarDO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds which driver currently has which car selected.
+ * <p/>
+ * Reserving and releasing a car are single compare-and-set operations on the car id, so two drivers can never own the same
+ * car even if they select it at the very same time. The registry mirrors the selected rows of the {@code driver_car} table
+ * and is filled from it on startup.
+ * <p/>
+ * The cars of a driver are tracked as well. That view is updated right after the car ids, so it may briefly lag behind;
+ * callers that act on it check {@link #ownerOf(long)} again.
+ * <p/>
+ * Callers that change a reservation together with its {@code driver_car} row hold {@link #lockOf(long)} of the car, so a
+ * release can not slip in between the reservation of a driver and the write of its row.
+ */
+@Component
+@Slf4j
+public class CarReservationRegistry {
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final ConcurrentMap<Long, Long> driverIdByCarId = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Set<Long>> carIdsByDriverId = new ConcurrentHashMap<>();
+
+    private final Lock[] carLocks = new Lock[LOCK_STRIPES];
+
+    private final CarDriverRepository carDriverRepository;
+
+    public CarReservationRegistry(final CarDriverRepository carDriverRepository) {
+        this.carDriverRepository = carDriverRepository;
+        for (int i = 0; i < carLocks.length; i++) {
+            carLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void load() {
+        driverIdByCarId.clear();
+        carIdsByDriverId.clear();
+        for (DriverCarDO driverCarDO : carDriverRepository.findBySelectedIsTrue()) {
+            Long carId = driverCarDO.getCarDO().getId();
+            Long driverId = driverCarDO.getDriverDO().getId();
+            Long owner = reserve(carId, driverId);
+            if (owner != null) {
+                log.warn("Car {} is selected by driver {} and {}, keeping driver {}", carId, owner, driverId, owner);
+            }
+        }
+        log.info("Loaded {} selected cars", driverIdByCarId.size());
+    }
+
+    /**
+     * Reserves a car for a driver unless another driver owns it.
+     *
+     * @param carId
+     * @param driverId
+     * @return the driver which owned the car before or null if it was free and is now reserved for {@code driverId}
+     */
+    public Long reserve(long carId, long driverId) {
+        Long owner = driverIdByCarId.putIfAbsent(carId, driverId);
+        if (owner == null) {
+            carIdsByDriverId.compute(driverId, (id, carIds) -> {
+                Set<Long> driverCarIds = carIds == null ? ConcurrentHashMap.newKeySet() : carIds;
+                driverCarIds.add(carId);
+                return driverCarIds;
+            });
+        }
+        return owner;
+    }
+
+    /**
+     * Releases a car if it is owned by the given driver.
+     *
+     * @param carId
+     * @param driverId
+     * @return false if the car is not owned by the driver
+     */
+    public boolean release(long carId, long driverId) {
+        if (!driverIdByCarId.remove(carId, driverId)) {
+            return false;
+        }
+        carIdsByDriverId.computeIfPresent(driverId, (id, carIds) -> {
+            carIds.remove(carId);
+            return carIds.isEmpty() ? null : carIds;
+        });
+        return true;
+    }
+
+    /**
+     * @param carId
+     * @return the lock serializing selections and deselections of the car, shared with a few other cars
+     */
+    public Lock lockOf(long carId) {
+        return carLocks[(int) Math.floorMod(carId, (long) LOCK_STRIPES)];
+    }
+
+    /**
+     * @param carId
+     * @return the driver owning the car or null if it is free
+     */
+    public Long ownerOf(long carId) {
+        return driverIdByCarId.get(carId);
+    }
+
+    /**
+     * @param driverId
+     * @return the cars reserved for the driver, an empty set if there are none
+     */
+    public Set<Long> carIdsOf(long driverId) {
+        Set<Long> carIds = carIdsByDriverId.get(driverId);
+        return carIds == null ? Collections.emptySet() : Collections.unmodifiableSet(carIds);
+    }
+}
@@ -3,8 +3,10 @@ package com.mytaxi.service.driver;
 import com.mytaxi.domainobject.CarDO;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
-import java.util.List;
+import java.util.function.Consumer;
 
 public interface CarService {
 
@@ -12,7 +14,9 @@ public interface CarService {
 
     CarDO create(CarDO carDO) throws ConstraintsViolationException;
 
-    List<CarDO> getCars();
+    Page<CarDO> getCars(Pageable pageable);
+
+    void streamCars(Consumer<CarDO> consumer);
 
     CarDO updateCar(Long id, CarDO carDO) throws EntityNotFoundException, ConstraintsViolationException;
 
@@ -5,7 +5,9 @@ import com.mytaxi.dataaccessobject.DriverRepository;
 import com.mytaxi.domainobject.CarDO;
 import com.mytaxi.domainobject.DriverCarDO;
 import com.mytaxi.domainobject.DriverDO;
-import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import com.mytaxi.domainvalue.SeekPage;
+import com.mytaxi.domainvalue.SeekRequest;
 import com.mytaxi.exception.CarAlreadyInUseException;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
@@ -17,13 +19,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 @Service
 @Slf4j
@@ -37,14 +34,34 @@ public class DefaultCarDriverService implements CarDriverService {
 
     private final DriverRepository driverRepository;
 
-    public DefaultCarDriverService(final CarDriverRepository carDriverRepository, final CarService carService, final DriverRepository driverRepository) {
+    private final CarReservationRegistry carReservationRegistry;
+
+    private final OptimisticLockRetryPolicy optimisticLockRetryPolicy;
+
+    private final DriverCarSpecifications driverCarSpecifications;
+
+    private final DriverCache driverCache;
+
+    private final FleetSnapshot fleetSnapshot;
+
+    public DefaultCarDriverService(final CarDriverRepository carDriverRepository, final CarService carService, final DriverRepository driverRepository,
+                                   final CarReservationRegistry carReservationRegistry, final OptimisticLockRetryPolicy optimisticLockRetryPolicy,
+                                   final DriverCarSpecifications driverCarSpecifications, final DriverCache driverCache,
+                                   final FleetSnapshot fleetSnapshot) {
         this.carDriverRepository = carDriverRepository;
         this.carService = carService;
         this.driverRepository = driverRepository;
+        this.carReservationRegistry = carReservationRegistry;
+        this.optimisticLockRetryPolicy = optimisticLockRetryPolicy;
+        this.driverCarSpecifications = driverCarSpecifications;
+        this.driverCache = driverCache;
+        this.fleetSnapshot = fleetSnapshot;
     }
 
     /**
-     * Select car for a specific driver
+     * Select car for a specific driver. The car is reserved in the {@link CarReservationRegistry} before anything is written,
+     * so of two drivers selecting the same car at once exactly one succeeds. Selecting a car the driver has selected already
+     * returns its row again. The reservation and the row change under the lock of the car, as they do when deselecting.
      *
      * @param driverId
      * @param carId
@@ -57,13 +74,37 @@ public class DefaultCarDriverService implements CarDriverService {
 
         LOG.debug("Selecting car: " + carId + " for driver: " + driverId);
 
-        DriverCarDO driverCarDO = getDriverCarSelectedTrue(driverId, carId);
+        DriverDO driverDO = findDriverById(driverId);
+        CarDO carDO = carService.find(carId);
 
-        if (driverCarDO == null || driverCarDO.getDriverDO().getId().equals(driverId)) {
-            return insertOrUpdateDriverDOAsSelected(driverId, carId);
-        }
+        Lock carLock = carReservationRegistry.lockOf(carId);
+        carLock.lock();
+        try {
+            Long previousOwner = carReservationRegistry.reserve(carId, driverId);
+            if (previousOwner != null && !previousOwner.equals(driverId)) {
+                throw new CarAlreadyInUseException(carId);
+            }
 
-        throw new CarAlreadyInUseException(carId);
+            DriverCarDO selectedDriverCarDO;
+            try {
+                selectedDriverCarDO = optimisticLockRetryPolicy.execute("selectCarForDriver", () -> insertOrUpdateDriverDOAsSelected(driverDO, carDO));
+            } catch (DataIntegrityViolationException e) {
+                // a select of the same car by the same driver committed the row after this one looked for it, which the car lock
+                // only rules out when no surrounding transaction holds back the commit
+                selectedDriverCarDO = find(driverId, carId);
+                if (selectedDriverCarDO == null || !Boolean.TRUE.equals(selectedDriverCarDO.getSelected())) {
+                    releaseIfReserved(previousOwner, carId, driverId);
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                releaseIfReserved(previousOwner, carId, driverId);
+                throw e;
+            }
+            fleetSnapshot.updateDriverCar(driverId, carDO, true);
+            return selectedDriverCarDO;
+        } finally {
+            carLock.unlock();
+        }
     }
 
     /**
@@ -77,15 +118,34 @@ public class DefaultCarDriverService implements CarDriverService {
     @Override
     public DriverCarDO deselectCarForDriver(Long driverId, Long carId) throws EntityNotFoundException, ConstraintsViolationException {
 
-        DriverCarDO driverCarDO = getDriverCarSelectedTrue(driverId, carId);
+        findDriverById(driverId);
+        carService.find(carId);
 
-        if (driverCarDO == null || !driverCarDO.getDriverDO().getId().equals(driverId)) {
-            throw new EntityNotFoundException("Car is not yet selected for this driver.");
-        }
+        // a select of the same car still writing its row finishes first, the release below must not overtake it
+        Lock carLock = carReservationRegistry.lockOf(carId);
+        carLock.lock();
+        try {
+            if (!driverId.equals(carReservationRegistry.ownerOf(carId))) {
+                throw new EntityNotFoundException("Car is not yet selected for this driver.");
+            }
 
-        driverCarDO.setSelected(false);
+            DriverCarDO deselectedDriverCarDO;
+            try {
+                deselectedDriverCarDO = optimisticLockRetryPolicy.execute("deselectCarForDriver", () -> updateDriverCarDOAsDeselected(driverId, carId));
+            } catch (DataIntegrityViolationException e) {
+                LOG.warn("Some constraints are thrown due to driver car selection");
+                throw new ConstraintsViolationException(e.getMessage());
+            }
+            if (deselectedDriverCarDO == null) {
+                throw new EntityNotFoundException("Car is not yet selected for this driver.");
+            }
 
-        return create(driverCarDO);
+            carReservationRegistry.release(carId, driverId);
+            fleetSnapshot.updateDriverCar(driverId, deselectedDriverCarDO.getCarDO(), false);
+            return deselectedDriverCarDO;
+        } finally {
+            carLock.unlock();
+        }
     }
 
     /**
@@ -101,102 +161,92 @@ public class DefaultCarDriverService implements CarDriverService {
     }
 
     @Override
-    public Page<DriverCarDO> findCarDrivers(Map<String, Object> allRequestParams, Pageable pageable) {
+    public Page<DriverCarDO> findCarDrivers(DriverCarFilter filter, Pageable pageable) {
 
-        return carDriverRepository.findAll(buildCarDriverDOSearchSpecs(allRequestParams), pageable);
+        return carDriverRepository.findAll(driverCarSpecifications.forDriverCars(filter), pageable);
     }
 
-    private Specification<DriverCarDO> buildCarDriverDOSearchSpecs(Map<String, Object> queryParams) {
-        return new Specification<DriverCarDO>() {
-            @Override
-            public Predicate toPredicate(Root<DriverCarDO> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder criteriaBuilder) {
-                List<Predicate> predicates = new ArrayList<>();
-
-                if (queryParams.containsKey("username")) {
-                    String username = (String) queryParams.get("username");
-                    predicates.add(criteriaBuilder.like(root.join("driverDO").get("username"), "%" + username + "%"));
-                }
-
-                if (queryParams.containsKey("onlineStatus")) {
-                    String onlineStatus = (String) queryParams.get("onlineStatus");
-                    //if (OnlineStatus.ONLINE.name())
-                    predicates.add(criteriaBuilder.and(criteriaBuilder.equal(root.join("driverDO").get("onlineStatus"), OnlineStatus.valueOf(onlineStatus.toUpperCase()))));
-                }
-
-                if (queryParams.containsKey("licensePlate")) {
-                    String licensePlate = (String) queryParams.get("licensePlate");
-                    predicates.add(criteriaBuilder.and(criteriaBuilder.like(root.join("carDO").get("licensePlate"), "%" + licensePlate + "%")));
-                }
+    /**
+     * Find the drivers having a driver car which matches the request params. Drivers are paged themselves, so every page is
+     * full and holds every driver once, no matter how many of their cars match.
+     *
+     * @param filter
+     * @param pageable
+     * @return
+     */
+    @Override
+    public Page<DriverDO> findDrivers(DriverCarFilter filter, Pageable pageable) {
+        return driverRepository.findAll(driverCarSpecifications.forDrivers(filter), pageable);
+    }
 
-                if (queryParams.containsKey("convertible")) {
-                    Boolean convertible = (Boolean) queryParams.get("convertible");
-                    predicates.add(criteriaBuilder.and(criteriaBuilder.equal(root.join("carDO").get("convertible"), convertible)));
-                }
+    /**
+     * Find the driver cars matching the request params after the given id, without counting all of them unless asked to.
+     *
+     * @param filter
+     * @param seekRequest
+     * @return
+     */
+    @Override
+    public SeekPage<DriverCarDO> findCarDrivers(DriverCarFilter filter, SeekRequest seekRequest) {
+        Specification<DriverCarDO> specification = driverCarSpecifications.forDriverCars(filter);
 
-                if (queryParams.containsKey("rating")) {
-                    Float rating = (Float) queryParams.get("rating");
-                    predicates.add(criteriaBuilder.and(criteriaBuilder.equal(root.join("carDO").get("rating"), rating)));
-                }
+        List<DriverCarDO> driverCarDOs = carDriverRepository.findAllAfter(specification, seekRequest.getAfterId(), seekRequest.getSize() + 1);
+        Long total = seekRequest.isIncludeTotal() ? carDriverRepository.count(specification) : null;
 
-                if (queryParams.containsKey("engineType")) {
-                    String engineType = (String) queryParams.get("engineType");
-                    predicates.add(criteriaBuilder.and(criteriaBuilder.equal(root.join("carDO").get("engineType"), engineType)));
-                }
+        return SeekPage.of(driverCarDOs, seekRequest.getSize(), DriverCarDO::getId, total);
+    }
 
-                if (queryParams.containsKey("manufacturer")) {
-                    String manufacturer = (String) queryParams.get("manufacturer");
-                    predicates.add(criteriaBuilder.and(criteriaBuilder.like(root.join("carDO").get("manufacturer"), "%" + manufacturer + "%")));
-                }
+    /**
+     * Find the distinct drivers of the driver cars matching the request params after the given driver id.
+     *
+     * @param filter
+     * @param seekRequest
+     * @return
+     */
+    @Override
+    public SeekPage<DriverDO> findDrivers(DriverCarFilter filter, SeekRequest seekRequest) {
+        Specification<DriverCarDO> specification = driverCarSpecifications.forDriverCars(filter);
 
-                return criteriaBuilder.and(predicates.toArray(new Predicate[]{}));
-            }
-        };
-    }
+        List<DriverDO> driverDOs = carDriverRepository.findDriversAfter(specification, seekRequest.getAfterId(), seekRequest.getSize() + 1);
+        Long total = seekRequest.isIncludeTotal() ? carDriverRepository.countDrivers(specification) : null;
 
-    private void checkIfDriverExists(Long driverId) throws EntityNotFoundException {
-        findDriverById(driverId);
+        return SeekPage.of(driverDOs, seekRequest.getSize(), DriverDO::getId, total);
     }
 
-    private DriverCarDO getDriverCarSelectedTrue(Long driverId, Long carId) throws EntityNotFoundException {
-        checkIfDriverExists(driverId);
-
-        CarDO carDO = carService.find(carId);
+    private DriverCarDO insertOrUpdateDriverDOAsSelected(DriverDO driverDO, CarDO carDO) {
+        DriverCarDO driverCarDO = find(driverDO.getId(), carDO.getId());
 
-        List<DriverCarDO> driverCarDOList = carDriverRepository.findByCarDO_IdAndSelectedIsTrue(carDO.getId());
-        if (driverCarDOList != null && driverCarDOList.size() > 1) {
-            throw new IllegalStateException("A car is selected by an offline driver.");
+        if (driverCarDO == null) {
+            log.debug("Car selected for the first time");
+            driverCarDO = new DriverCarDO();
+            driverCarDO.setDriverDO(driverDO);
+            driverCarDO.setCarDO(carDO);
         }
 
-        return driverCarDOList == null || driverCarDOList.isEmpty() ? null : driverCarDOList.get(0);
+        driverCarDO.setSelected(true);
+
+        return carDriverRepository.save(driverCarDO);
     }
 
-    private DriverCarDO insertOrUpdateDriverDOAsSelected(Long driverId, Long carId) throws EntityNotFoundException {
+    private DriverCarDO updateDriverCarDOAsDeselected(Long driverId, Long carId) {
         DriverCarDO driverCarDO = find(driverId, carId);
-
         if (driverCarDO == null) {
-            log.debug("Car selected for the first time");
-            driverCarDO = new DriverCarDO();
-            driverCarDO.setDriverDO(findDriverById(driverId));
-            driverCarDO.setCarDO(carService.find(carId));
+            return null;
         }
 
-        driverCarDO.setSelected(true);
+        driverCarDO.setSelected(false);
 
         return carDriverRepository.save(driverCarDO);
     }
 
-    private DriverCarDO create(DriverCarDO driverCarDO) throws ConstraintsViolationException {
-        try {
-            return carDriverRepository.save(driverCarDO);
-        } catch (DataIntegrityViolationException e)
-        {
-            LOG.warn("Some constraints are thrown due to driver car selection");
-            throw new ConstraintsViolationException(e.getMessage());
+    private void releaseIfReserved(Long previousOwner, long carId, long driverId) {
+        if (previousOwner == null) {
+            carReservationRegistry.release(carId, driverId);
         }
     }
 
     private DriverDO findDriverById(Long id) throws EntityNotFoundException {
-        return driverRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Could not find entity with id: " + id));
+        return driverCache.get(id, driverId -> driverRepository.findById(driverId)
+                .orElseThrow(() -> new EntityNotFoundException("Could not find entity with id: " + driverId)));
     }
 }
@@ -7,9 +7,14 @@ import com.mytaxi.exception.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import javax.persistence.EntityManager;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -17,48 +22,109 @@ public class DefaultCarService implements CarService {
 
     private final CarRepository carRepository;
 
-    public DefaultCarService(final CarRepository carRepository) {
+    private final AttributeSearchIndex attributeSearchIndex;
+
+    private final CarCache carCache;
+
+    private final EntityManager entityManager;
+
+    private final CarAttributeColumns carAttributeColumns;
+
+    private final FleetSnapshot fleetSnapshot;
+
+    public DefaultCarService(final CarRepository carRepository, final AttributeSearchIndex attributeSearchIndex, final CarCache carCache,
+                             final EntityManager entityManager, final CarAttributeColumns carAttributeColumns, final FleetSnapshot fleetSnapshot) {
         this.carRepository = carRepository;
+        this.attributeSearchIndex = attributeSearchIndex;
+        this.carCache = carCache;
+        this.entityManager = entityManager;
+        this.carAttributeColumns = carAttributeColumns;
+        this.fleetSnapshot = fleetSnapshot;
     }
 
+    /**
+     * Find a car by id, served from the {@link CarCache} if it was looked up before.
+     *
+     * @param carId
+     * @return
+     * @throws EntityNotFoundException
+     */
     @Override
     public CarDO find(Long carId) throws EntityNotFoundException {
-        return findCarChecked(carId);
+        return carCache.get(carId, this::findCarChecked);
     }
 
     @Override
     public CarDO create(CarDO carDO) throws ConstraintsViolationException {
 
+        CarDO savedCarDO;
         try
         {
-            return carRepository.save(carDO);
+            savedCarDO = carRepository.save(carDO);
         }
         catch (DataIntegrityViolationException e)
         {
             log.warn("Some constraints are thrown due to driver creation", e);
             throw new ConstraintsViolationException(e.getMessage());
         }
+        attributeSearchIndex.indexCar(savedCarDO);
+        // updates and deletes are saved through here as well
+        carAttributeColumns.update(savedCarDO);
+        fleetSnapshot.updateCar(savedCarDO);
+        return savedCarDO;
     }
 
+    /**
+     * Find a page of the cars which are not deleted.
+     *
+     * @param pageable
+     * @return
+     */
     @Override
-    public List<CarDO> getCars() {
-        return carRepository.findAll();
+    public Page<CarDO> getCars(Pageable pageable) {
+        return carRepository.findAllByDeletedIsFalse(pageable);
+    }
+
+    /**
+     * Hands every car which is not deleted to the consumer, one after the other. Cars are read in chunks and detached once
+     * consumed, so neither the result nor the persistence context ever holds the whole fleet.
+     *
+     * @param consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamCars(Consumer<CarDO> consumer) {
+        try (Stream<CarDO> cars = carRepository.streamAllByDeletedIsFalse()) {
+            cars.forEach(carDO -> {
+                consumer.accept(carDO);
+                entityManager.detach(carDO);
+            });
+        }
     }
 
     @Override
     public CarDO updateCar(Long id, CarDO newCarDO) throws EntityNotFoundException, ConstraintsViolationException {
         CarDO carDO = findCarChecked(id);
 
-        BeanUtils.copyProperties(newCarDO, carDO);
+        // id and version have to stay those of the loaded car, otherwise a new car would be inserted
+        BeanUtils.copyProperties(newCarDO, carDO, "id", "version");
 
-        return create(carDO);
+        try {
+            return create(carDO);
+        } finally {
+            carCache.invalidate(id);
+        }
     }
 
     @Override
     public void deleteCar(Long id) throws EntityNotFoundException, ConstraintsViolationException {
         CarDO carDO = findCarChecked(id);
         carDO.setDeleted(true);
-        create(carDO);
+        try {
+            create(carDO);
+        } finally {
+            carCache.invalidate(id);
+        }
     }
 
     private CarDO findCarChecked(Long carId) throws EntityNotFoundException {
@@ -0,0 +1,167 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.NoDriverAvailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches ride requests to the nearest available driver whose selected car has the requested attributes.
+ * <p/>
+ * {@link #dispatch(DispatchRequest)} answers a request right away: the nearest candidates of the {@link DispatchMatcher} are
+ * tried in order and the first one which can be claimed wins. When the first {@code initial-candidates} drivers don't match,
+ * the search is repeated with twice as many up to {@code max-candidates}. {@link #submit(DispatchRequest)} does the same
+ * unless the {@link DispatchBatcher} is enabled, which assigns the requests of a whole window at once.
+ * <p/>
+ * The latency until a request is answered and the pickup distance are published per mode and window, so the throughput and
+ * latency of different windows can be compared.
+ */
+@Service
+public class DefaultDispatchService implements DispatchService {
+
+    static final String LATENCY_TIMER = "mytaxi.dispatch.latency";
+
+    static final String PICKUP_DISTANCE = "mytaxi.dispatch.pickup.distance";
+
+    private final DispatchMatcher dispatchMatcher;
+
+    private final DriverAssignmentRegistry driverAssignmentRegistry;
+
+    private final DriverLocationIndex driverLocationIndex;
+
+    private final DriverPresenceRegistry driverPresenceRegistry;
+
+    private final DispatchBatcher dispatchBatcher;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int initialCandidates;
+
+    private final int maxCandidates;
+
+    public DefaultDispatchService(final DispatchMatcher dispatchMatcher, final DriverAssignmentRegistry driverAssignmentRegistry,
+                                  final DriverLocationIndex driverLocationIndex, final DriverPresenceRegistry driverPresenceRegistry,
+                                  final DispatchBatcher dispatchBatcher, final MeterRegistry meterRegistry,
+                                  @Value("${mytaxi.dispatch.initial-candidates:16}") int initialCandidates,
+                                  @Value("${mytaxi.dispatch.max-candidates:512}") int maxCandidates) {
+        Preconditions.checkArgument(initialCandidates > 0, "initial candidates must be positive");
+        Preconditions.checkArgument(maxCandidates >= initialCandidates, "max candidates must not be less than the initial candidates");
+        this.dispatchMatcher = dispatchMatcher;
+        this.driverAssignmentRegistry = driverAssignmentRegistry;
+        this.driverLocationIndex = driverLocationIndex;
+        this.driverPresenceRegistry = driverPresenceRegistry;
+        this.dispatchBatcher = dispatchBatcher;
+        this.meterRegistry = meterRegistry;
+        this.initialCandidates = initialCandidates;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Assigns the nearest available driver with a matching car to the request.
+     *
+     * @param request
+     * @return the dispatch the driver is now assigned to
+     * @throws NoDriverAvailableException if no candidate within the radius matches or all of them were taken concurrently
+     */
+    @Override
+    public Dispatch dispatch(DispatchRequest request) throws NoDriverAvailableException {
+        Set<Long> examined = new HashSet<>();
+        int limit = initialCandidates;
+
+        while (true) {
+            List<Long> driverIds = dispatchMatcher.nearestDrivers(request, limit);
+            for (Long driverId : driverIds) {
+                if (examined.add(driverId)) {
+                    DispatchMatcher.Candidate candidate = dispatchMatcher.candidate(driverId, request);
+                    Dispatch dispatch = candidate == null ? null : dispatchMatcher.claim(candidate, request);
+                    if (dispatch != null) {
+                        return dispatch;
+                    }
+                }
+            }
+            if (driverIds.size() < limit || limit >= maxCandidates) {
+                throw new NoDriverAvailableException(request.getRadiusKm());
+            }
+            limit = Math.min(2 * limit, maxCandidates);
+        }
+    }
+
+    /**
+     * Assigns a driver to the request, right away or with the next window if dispatch is batched.
+     *
+     * @param request
+     * @return completed with the dispatch or with a {@link NoDriverAvailableException}
+     */
+    @Override
+    public CompletableFuture<Dispatch> submit(DispatchRequest request) {
+        long start = System.nanoTime();
+        CompletableFuture<Dispatch> result;
+        if (dispatchBatcher.isEnabled()) {
+            result = dispatchBatcher.submit(request);
+        } else {
+            result = new CompletableFuture<>();
+            try {
+                result.complete(dispatch(request));
+            } catch (NoDriverAvailableException e) {
+                result.completeExceptionally(e);
+            }
+        }
+        return result.whenComplete((dispatch, e) -> record(System.nanoTime() - start, dispatch));
+    }
+
+    /**
+     * @param driverId
+     * @return the dispatch the driver is assigned to
+     * @throws EntityNotFoundException if the driver is not assigned
+     */
+    @Override
+    public Dispatch find(long driverId) throws EntityNotFoundException {
+        Dispatch dispatch = driverAssignmentRegistry.dispatchOf(driverId);
+        if (dispatch == null) {
+            throw new EntityNotFoundException("Driver " + driverId + " is not dispatched.");
+        }
+        return dispatch;
+    }
+
+    /**
+     * Ends the dispatch of a driver, who is then available for the next request again if still online.
+     *
+     * @param driverId
+     * @return the completed dispatch
+     * @throws EntityNotFoundException if the driver is not assigned
+     */
+    @Override
+    public Dispatch complete(long driverId) throws EntityNotFoundException {
+        Dispatch dispatch = driverAssignmentRegistry.release(driverId);
+        if (dispatch == null) {
+            throw new EntityNotFoundException("Driver " + driverId + " is not dispatched.");
+        }
+        driverLocationIndex.updateAvailability(driverId, driverPresenceRegistry.statusOf(driverId) == OnlineStatus.ONLINE);
+        return dispatch;
+    }
+
+    private void record(long latencyNanos, Dispatch dispatch) {
+        String mode = dispatchBatcher.isEnabled() ? DispatchBatcher.MODE_BATCHED : DispatchBatcher.MODE_GREEDY;
+        String window = dispatchBatcher.isEnabled() ? String.valueOf(dispatchBatcher.getWindowMs()) : "0";
+        Timer.builder(LATENCY_TIMER)
+                .description("Time until a ride request got a driver or was given up")
+                .tags("mode", mode, "window", window, "outcome", dispatch == null ? "unavailable" : "dispatched")
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        if (dispatch != null) {
+            meterRegistry.summary(PICKUP_DISTANCE, "mode", mode, "window", window).record(dispatch.getDistanceKm());
+        }
+    }
+}
@@ -1,22 +1,35 @@
 package com.mytaxi.service.driver;
 
 import com.mytaxi.dataaccessobject.DriverRepository;
-import com.mytaxi.domainobject.DriverCarDO;
 import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import com.mytaxi.domainvalue.DriverLocation;
 import com.mytaxi.domainvalue.GeoCoordinate;
 import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.domainvalue.SeekPage;
+import com.mytaxi.domainvalue.SeekRequest;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.LocationIngestionOverloadedException;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -33,15 +46,54 @@ public class DefaultDriverService implements DriverService
 
     private final CarDriverService carDriverService;
 
-    public DefaultDriverService(final DriverRepository driverRepository, final CarDriverService carDriverService)
+    private final DriverLocationIndex driverLocationIndex;
+
+    private final DriverLocationIngestion driverLocationIngestion;
+
+    private final AttributeSearchIndex attributeSearchIndex;
+
+    private final DriverCache driverCache;
+
+    private final DriverPresenceRegistry driverPresenceRegistry;
+
+    private final FleetSnapshot fleetSnapshot;
+
+    public DefaultDriverService(
+        final DriverRepository driverRepository, final CarDriverService carDriverService, final DriverLocationIndex driverLocationIndex,
+        final DriverLocationIngestion driverLocationIngestion, final AttributeSearchIndex attributeSearchIndex, final DriverCache driverCache,
+        final DriverPresenceRegistry driverPresenceRegistry, final FleetSnapshot fleetSnapshot)
     {
         this.driverRepository = driverRepository;
         this.carDriverService = carDriverService;
+        this.driverLocationIndex = driverLocationIndex;
+        this.driverLocationIngestion = driverLocationIngestion;
+        this.attributeSearchIndex = attributeSearchIndex;
+        this.driverCache = driverCache;
+        this.driverPresenceRegistry = driverPresenceRegistry;
+        this.fleetSnapshot = fleetSnapshot;
     }
 
 
     /**
-     * Selects a driver by id.
+     * Fills the location index with the last known positions and the presence registry with the online status once the
+     * database is populated.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLocationIndex()
+    {
+        Iterable<DriverDO> drivers = driverRepository.findAll();
+        for (DriverDO driverDO : drivers)
+        {
+            driverLocationIndex.update(driverDO.getId(), driverDO.getCoordinate(), DriverLocationIndex.isAvailable(driverDO));
+        }
+        LOG.info("Indexed the location of {} drivers", driverLocationIndex.size());
+        driverPresenceRegistry.onExpiry(this::expire);
+        driverPresenceRegistry.load(drivers);
+    }
+
+
+    /**
+     * Selects a driver by id, served from the {@link DriverCache} if it was looked up before.
      *
      * @param driverId
      * @return found driver
@@ -50,7 +102,7 @@ public class DefaultDriverService implements DriverService
     @Override
     public DriverDO find(Long driverId) throws EntityNotFoundException
     {
-        return findDriverChecked(driverId);
+        return driverCache.get(driverId, this::findDriverChecked);
     }
 
 
@@ -74,6 +126,9 @@ public class DefaultDriverService implements DriverService
             LOG.warn("Some constraints are thrown due to driver creation", e);
             throw new ConstraintsViolationException(e.getMessage());
         }
+        attributeSearchIndex.indexDriver(driver);
+        driverPresenceRegistry.setStatus(driver.getId(), driver.getOnlineStatus());
+        fleetSnapshot.updateDriver(driver);
         return driver;
     }
 
@@ -90,49 +145,301 @@ public class DefaultDriverService implements DriverService
     {
         DriverDO driverDO = findDriverChecked(driverId);
         driverDO.setDeleted(true);
+        afterCommit(() -> {
+            driverLocationIndex.remove(driverId);
+            driverCache.invalidate(driverId);
+            fleetSnapshot.updateDriver(driverDO);
+        });
     }
 
 
     /**
-     * Update the location for a driver.
+     * Update the location for a driver. Depending on the ingestion mode the location is written right away or buffered
+     * and written in batches.
      *
      * @param driverId
      * @param longitude
      * @param latitude
-     * @throws EntityNotFoundException
+     * @throws EntityNotFoundException              if no driver with the given id was found.
+     * @throws LocationIngestionOverloadedException if too many location updates are pending.
+     */
+    @Override
+    public void updateLocation(long driverId, double longitude, double latitude)
+        throws EntityNotFoundException, LocationIngestionOverloadedException
+    {
+        // buffered pings reach the database only on flush, so unknown drivers are rejected up front like in sync mode
+        if (driverLocationIngestion.isWriteBehind() && !isKnownDriver(driverId))
+        {
+            throw new EntityNotFoundException("Could not find entity with id: " + driverId);
+        }
+        driverLocationIngestion.submit(driverId, new GeoCoordinate(latitude, longitude));
+        driverPresenceRegistry.heartbeat(driverId);
+    }
+
+
+    /**
+     * Update the locations of many drivers at once. In sync mode they are written in chunks which commit on their own, so a
+     * failing chunk does not roll back the others.
+     *
+     * @param locations
+     * @return error message by position in {@code locations} for every location which could not be applied
+     */
+    @Override
+    public Map<Integer, String> updateLocations(List<DriverLocation> locations)
+    {
+        Map<Integer, String> errors = driverLocationIngestion.isWriteBehind()
+            ? submitKnownDrivers(locations)
+            : driverLocationIngestion.submitAll(locations);
+        for (int i = 0; i < locations.size(); i++)
+        {
+            if (!errors.containsKey(i))
+            {
+                driverPresenceRegistry.heartbeat(locations.get(i).getDriverId());
+            }
+        }
+        return errors;
+    }
+
+
+    /**
+     * Marks a driver as online, from now on the driver has to send location pings or heartbeats to stay online.
+     *
+     * @param driverId
+     * @return updated driver
+     * @throws EntityNotFoundException if no driver with the given id was found or the driver was deleted.
      */
     @Override
     @Transactional
-    public void updateLocation(long driverId, double longitude, double latitude) throws EntityNotFoundException
+    public DriverDO goOnline(long driverId) throws EntityNotFoundException
     {
-        DriverDO driverDO = findDriverChecked(driverId);
-        driverDO.setCoordinate(new GeoCoordinate(latitude, longitude));
+        return changeOnlineStatus(driverId, OnlineStatus.ONLINE);
     }
 
 
     /**
-     * Find all drivers by online state.
+     * Marks a driver as offline.
+     *
+     * @param driverId
+     * @return updated driver
+     * @throws EntityNotFoundException if no driver with the given id was found.
+     */
+    @Override
+    @Transactional
+    public DriverDO goOffline(long driverId) throws EntityNotFoundException
+    {
+        return changeOnlineStatus(driverId, OnlineStatus.OFFLINE);
+    }
+
+
+    /**
+     * Restarts the heartbeat timeout of an online driver.
+     *
+     * @param driverId
+     * @throws EntityNotFoundException if the driver is not online.
+     */
+    @Override
+    public void heartbeat(long driverId) throws EntityNotFoundException
+    {
+        if (!driverPresenceRegistry.heartbeat(driverId))
+        {
+            throw new EntityNotFoundException("Could not find online driver with id: " + driverId);
+        }
+    }
+
+
+    /**
+     * Find all drivers by online state. The ids come from the {@link DriverPresenceRegistry} once it is loaded, the drivers
+     * from the {@link FleetSnapshot} once that is loaded as well.
      *
      * @param onlineStatus
      */
     @Override
     public List<DriverDO> find(OnlineStatus onlineStatus)
     {
-        return driverRepository.findByOnlineStatus(onlineStatus);
+        if (!driverPresenceRegistry.isLoaded())
+        {
+            return driverRepository.findByOnlineStatus(onlineStatus);
+        }
+        List<Long> driverIds = new ArrayList<>(driverPresenceRegistry.driverIds(onlineStatus));
+        if (driverIds.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        if (fleetSnapshot.isLoaded())
+        {
+            return fleetSnapshot.find(driverIds);
+        }
+        List<DriverDO> drivers = new ArrayList<>(driverIds.size());
+        driverRepository.findAllById(driverIds).forEach(drivers::add);
+        return drivers;
     }
 
+    /**
+     * Find the online drivers closest to a position, nearest first.
+     *
+     * @param latitude
+     * @param longitude
+     * @param radiusKm
+     * @param limit
+     */
     @Override
-    public Page<DriverDO> getDrivers(Map<String, Object> allRequestParams, Pageable pageable) {
+    public List<DriverDO> findNearby(double latitude, double longitude, double radiusKm, int limit)
+    {
+        List<Long> driverIds = driverLocationIndex.findNearest(latitude, longitude, radiusKm, limit);
+        if (driverIds.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+
+        Map<Long, DriverDO> driversById = new HashMap<>();
+        for (DriverDO driverDO : driverRepository.findAllById(driverIds))
+        {
+            driversById.put(driverDO.getId(), driverDO);
+        }
+
+        return driverIds.stream()
+            .map(driversById::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Find the drivers matching driver or car attributes, from the {@link FleetSnapshot} unless the page is sorted.
+     *
+     * @param filter
+     * @param pageable
+     */
+    @Override
+    public Page<DriverDO> getDrivers(DriverCarFilter filter, Pageable pageable)
+    {
+        if (fleetSnapshot.isLoaded() && pageable.getSort().isUnsorted())
+        {
+            return fleetSnapshot.findDrivers(filter, pageable);
+        }
+        return carDriverService.findDrivers(filter, pageable);
+    }
+
+    /**
+     * Find the drivers matching driver or car attributes page by page, seeking on the driver id instead of skipping rows.
+     *
+     * @param filter
+     * @param seekRequest
+     */
+    @Override
+    public SeekPage<DriverDO> getDrivers(DriverCarFilter filter, SeekRequest seekRequest)
+    {
+        if (fleetSnapshot.isLoaded())
+        {
+            return fleetSnapshot.findDrivers(filter, seekRequest);
+        }
+        return carDriverService.findDrivers(filter, seekRequest);
+    }
+
+    private DriverDO changeOnlineStatus(long driverId, OnlineStatus onlineStatus) throws EntityNotFoundException
+    {
+        DriverDO driverDO = findDriverChecked(driverId);
+        if (onlineStatus == OnlineStatus.ONLINE && Boolean.TRUE.equals(driverDO.getDeleted()))
+        {
+            throw new EntityNotFoundException("Could not find entity with id: " + driverId);
+        }
+        driverDO.setOnlineStatus(onlineStatus);
+        boolean available = DriverLocationIndex.isAvailable(driverDO);
+        // a version conflict with an expiring heartbeat rolls the change back, the in-memory state must not keep it
+        afterCommit(() -> {
+            driverPresenceRegistry.setStatus(driverId, onlineStatus);
+            driverLocationIndex.updateAvailability(driverId, available);
+            driverCache.invalidate(driverId);
+            fleetSnapshot.updateDriver(driverDO);
+        });
+        return driverDO;
+    }
 
-        Page<DriverCarDO> carDriverPage = carDriverService.findCarDrivers(allRequestParams, pageable);
 
-        return new PageImpl<>(carDriverPage.getContent()
-                .stream()
-                .map(driverCarDO -> driverCarDO.getDriverDO())
-                .distinct()
-                .collect(Collectors.toList()), pageable, carDriverPage.getTotalElements());
+    /**
+     * Runs the action once the surrounding transaction committed, right away if there is none. In-memory state changed
+     * before the commit would keep a change the database rolled back, and a cache invalidated before the commit could be
+     * filled again with the old row by a concurrent read.
+     */
+    private static void afterCommit(Runnable action)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+        {
+            @Override
+            public void afterCommit()
+            {
+                action.run();
+            }
+        });
     }
 
+
+    /**
+     * Persists a driver that went offline because its heartbeat timed out, runs on the thread of the presence registry.
+     */
+    private void expire(long driverId)
+    {
+        try
+        {
+            Optional<DriverDO> driver = driverRepository.findById(driverId);
+            // the driver may have gone online again since the registry expired it
+            if (driver.isPresent() && driverPresenceRegistry.statusOf(driverId) == OnlineStatus.OFFLINE)
+            {
+                DriverDO driverDO = driver.get();
+                driverDO.setOnlineStatus(OnlineStatus.OFFLINE);
+                driverRepository.save(driverDO);
+                driverLocationIndex.updateAvailability(driverId, false);
+                driverCache.invalidate(driverId);
+                fleetSnapshot.updateDriver(driverDO);
+            }
+        }
+        catch (DataAccessException e)
+        {
+            LOG.warn("Could not set expired driver " + driverId + " offline", e);
+        }
+    }
+
+
+    private Map<Integer, String> submitKnownDrivers(List<DriverLocation> locations)
+    {
+        Map<Integer, String> errors = new HashMap<>();
+        List<DriverLocation> known = new ArrayList<>(locations.size());
+        List<Integer> positions = new ArrayList<>(locations.size());
+        for (int i = 0; i < locations.size(); i++)
+        {
+            long driverId = locations.get(i).getDriverId();
+            if (isKnownDriver(driverId))
+            {
+                known.add(locations.get(i));
+                positions.add(i);
+            }
+            else
+            {
+                errors.put(i, "Could not find entity with id: " + driverId);
+            }
+        }
+        driverLocationIngestion.submitAll(known).forEach((position, error) -> errors.put(positions.get(position), error));
+        return errors;
+    }
+
+
+    /**
+     * The presence registry holds every driver, soft deleted ones included, once it was loaded on startup.
+     */
+    private boolean isKnownDriver(long driverId)
+    {
+        if (driverPresenceRegistry.isLoaded())
+        {
+            return driverPresenceRegistry.statusOf(driverId) != null;
+        }
+        return driverRepository.existsById(driverId);
+    }
+
+
     private DriverDO findDriverChecked(Long driverId) throws EntityNotFoundException
     {
         return driverRepository.findById(driverId)
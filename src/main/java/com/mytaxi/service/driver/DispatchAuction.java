@@ -0,0 +1,84 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Assigns ride requests to drivers with the least total pickup distance, using the auction algorithm on a sparse cost matrix.
+ * <p/>
+ * Every request only knows a few nearby candidates. Unassigned requests bid for their best candidate, raising its price by
+ * the margin over their second best option plus {@code epsilon}, which outbids and requeues its previous request. A request
+ * may also stay unassigned at its own {@code unassignedCost}, so requests without a free candidate drop out instead of bidding
+ * forever. The result is within {@code requests * epsilon} of the optimal total cost.
+ */
+final class DispatchAuction {
+
+    static final int UNASSIGNED = -1;
+
+    private DispatchAuction() {
+    }
+
+    /**
+     * @param candidates      per request the indexes of the drivers it may be assigned to
+     * @param costs           per request the costs of its candidates, in the same order
+     * @param unassignedCosts per request the cost of leaving it unassigned
+     * @param drivers         number of drivers, candidate indexes are below it
+     * @param epsilon         minimal price increment, positive
+     * @return per request the index of its driver or {@link #UNASSIGNED}
+     */
+    static int[] assign(int[][] candidates, double[][] costs, double[] unassignedCosts, int drivers, double epsilon) {
+        Preconditions.checkArgument(candidates.length == costs.length && costs.length == unassignedCosts.length,
+                "candidates, costs and unassigned costs must have one entry per request");
+        Preconditions.checkArgument(epsilon > 0, "epsilon must be positive");
+
+        int requests = candidates.length;
+        double[] prices = new double[drivers];
+        int[] requestOfDriver = new int[drivers];
+        Arrays.fill(requestOfDriver, UNASSIGNED);
+        int[] driverOfRequest = new int[requests];
+        Arrays.fill(driverOfRequest, UNASSIGNED);
+
+        Deque<Integer> bidders = new ArrayDeque<>(requests);
+        for (int request = 0; request < requests; request++) {
+            bidders.add(request);
+        }
+
+        while (!bidders.isEmpty()) {
+            int request = bidders.poll();
+
+            // values are negated costs, staying unassigned is always an option
+            int best = UNASSIGNED;
+            double bestValue = -unassignedCosts[request];
+            double secondValue = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < candidates[request].length; k++) {
+                int driver = candidates[request][k];
+                double value = -(costs[request][k] + prices[driver]);
+                if (value > bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    best = driver;
+                } else if (value > secondValue) {
+                    secondValue = value;
+                }
+            }
+
+            // prices only rise, a request which prefers to stay unassigned keeps preferring it
+            if (best == UNASSIGNED) {
+                continue;
+            }
+
+            prices[best] += bestValue - secondValue + epsilon;
+            int outbid = requestOfDriver[best];
+            if (outbid != UNASSIGNED) {
+                driverOfRequest[outbid] = UNASSIGNED;
+                bidders.add(outbid);
+            }
+            requestOfDriver[best] = request;
+            driverOfRequest[request] = best;
+        }
+        return driverOfRequest;
+    }
+}
@@ -0,0 +1,266 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.exception.NoDriverAvailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Collects ride requests for {@code window-ms} and assigns all of them at once.
+ * <p/>
+ * Answering requests one by one hands each of them its nearest driver, even if that driver is the only one close to the next
+ * request. In {@code batched} mode every window gathers the nearest {@code candidates-per-request} matching drivers of each
+ * pending request on a pool of {@code parallelism} threads, then solves the assignment with the least total pickup distance
+ * by a {@link DispatchAuction} on the {@code dispatch-batcher} thread. Requests which got no driver, or whose driver was
+ * taken concurrently, wait for the next window until {@code max-wait-ms} passed.
+ */
+@Component
+@Slf4j
+public class DispatchBatcher {
+
+    public static final String MODE_GREEDY = "greedy";
+
+    public static final String MODE_BATCHED = "batched";
+
+    static final double EPSILON_KM = 0.01;
+
+    private final DispatchMatcher dispatchMatcher;
+
+    private final boolean enabled;
+
+    private final long windowMs;
+
+    private final long maxWaitNanos;
+
+    private final int candidatesPerRequest;
+
+    private final BlockingQueue<PendingRequest> incoming;
+
+    // only touched by the dispatch-batcher thread
+    private final List<PendingRequest> waiting = new ArrayList<>();
+
+    private final DistributionSummary batchSize;
+
+    private final Timer solveTime;
+
+    // threads are only started once the first window is assigned
+    private final ForkJoinPool matrixPool;
+
+    private ScheduledExecutorService scheduler;
+
+    public DispatchBatcher(
+            final DispatchMatcher dispatchMatcher,
+            final MeterRegistry meterRegistry,
+            @Value("${mytaxi.dispatch.mode:" + MODE_GREEDY + "}") String mode,
+            @Value("${mytaxi.dispatch.window-ms:500}") long windowMs,
+            @Value("${mytaxi.dispatch.max-wait-ms:3000}") long maxWaitMs,
+            @Value("${mytaxi.dispatch.candidates-per-request:8}") int candidatesPerRequest,
+            @Value("${mytaxi.dispatch.capacity:10000}") int capacity,
+            @Value("${mytaxi.dispatch.parallelism:0}") int parallelism) {
+        Preconditions.checkArgument(MODE_GREEDY.equals(mode) || MODE_BATCHED.equals(mode), "unknown dispatch mode: %s", mode);
+        Preconditions.checkArgument(windowMs > 0, "window must be positive");
+        Preconditions.checkArgument(maxWaitMs >= windowMs, "max wait must not be shorter than the window");
+        Preconditions.checkArgument(candidatesPerRequest > 0, "candidates per request must be positive");
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+        Preconditions.checkArgument(parallelism >= 0, "parallelism must not be negative");
+        this.dispatchMatcher = dispatchMatcher;
+        this.enabled = MODE_BATCHED.equals(mode);
+        this.windowMs = windowMs;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.candidatesPerRequest = candidatesPerRequest;
+        this.matrixPool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        this.incoming = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = DistributionSummary.builder("mytaxi.dispatch.batch.size")
+                .description("Ride requests assigned together in one window")
+                .tag("window", String.valueOf(windowMs))
+                .register(meterRegistry);
+        this.solveTime = Timer.builder("mytaxi.dispatch.batch.solve")
+                .description("Time to gather the candidates of a window and assign them")
+                .tag("window", String.valueOf(windowMs))
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tickQuietly, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        matrixPool.shutdown();
+        // nobody will assign the requests left over anymore
+        incoming.drainTo(waiting);
+        for (PendingRequest pendingRequest : waiting) {
+            pendingRequest.result.completeExceptionally(new NoDriverAvailableException(pendingRequest.request.getRadiusKm()));
+        }
+        waiting.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * Queues a request for the next window.
+     *
+     * @param request
+     * @return completed with the dispatch once the request is assigned, or with a {@link NoDriverAvailableException} if no
+     * driver was found within {@code max-wait-ms} or too many requests are waiting already
+     */
+    public CompletableFuture<Dispatch> submit(DispatchRequest request) {
+        Preconditions.checkState(enabled, "dispatch is not batched");
+        PendingRequest pendingRequest = new PendingRequest(request, System.nanoTime());
+        if (!incoming.offer(pendingRequest)) {
+            pendingRequest.result.completeExceptionally(new NoDriverAvailableException(request.getRadiusKm()));
+        }
+        return pendingRequest.result;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            log.error("Could not dispatch a window of {} requests", waiting.size(), e);
+        }
+    }
+
+    /**
+     * Assigns the requests of one window, runs on the {@code dispatch-batcher} thread.
+     */
+    void tick() {
+        incoming.drainTo(waiting);
+        if (waiting.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int requests = waiting.size();
+        batchSize.record(requests);
+
+        DispatchMatcher.Candidate[][] candidates = gatherCandidates();
+
+        Map<Long, Integer> driverIndexes = new HashMap<>();
+        int[][] driverIndexesOfRequest = new int[requests][];
+        double[][] costs = new double[requests][];
+        double[] unassignedCosts = new double[requests];
+        for (int request = 0; request < requests; request++) {
+            DispatchMatcher.Candidate[] requestCandidates = candidates[request];
+            driverIndexesOfRequest[request] = new int[requestCandidates.length];
+            costs[request] = new double[requestCandidates.length];
+            for (int k = 0; k < requestCandidates.length; k++) {
+                Integer driverIndex = driverIndexes.get(requestCandidates[k].getDriverId());
+                if (driverIndex == null) {
+                    driverIndex = driverIndexes.size();
+                    driverIndexes.put(requestCandidates[k].getDriverId(), driverIndex);
+                }
+                driverIndexesOfRequest[request][k] = driverIndex;
+                costs[request][k] = requestCandidates[k].getDistanceKm();
+            }
+            // any driver within the radius beats no driver at all
+            unassignedCosts[request] = 2 * waiting.get(request).request.getRadiusKm();
+        }
+
+        int[] assignment = DispatchAuction.assign(driverIndexesOfRequest, costs, unassignedCosts, driverIndexes.size(), EPSILON_KM);
+        solveTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        List<PendingRequest> unassigned = new ArrayList<>();
+        for (int request = 0; request < requests; request++) {
+            PendingRequest pendingRequest = waiting.get(request);
+            Dispatch dispatch = assignment[request] == DispatchAuction.UNASSIGNED
+                    ? null
+                    : dispatchMatcher.claim(candidateOf(candidates[request], driverIndexesOfRequest[request], assignment[request]),
+                    pendingRequest.request);
+            if (dispatch != null) {
+                pendingRequest.result.complete(dispatch);
+            } else if (System.nanoTime() - pendingRequest.submittedNanos >= maxWaitNanos) {
+                pendingRequest.result.completeExceptionally(new NoDriverAvailableException(pendingRequest.request.getRadiusKm()));
+            } else {
+                unassigned.add(pendingRequest);
+            }
+        }
+        waiting.clear();
+        waiting.addAll(unassigned);
+    }
+
+    /**
+     * Finds the candidates of every waiting request, the rows of the distance matrix are filled in parallel.
+     */
+    private DispatchMatcher.Candidate[][] gatherCandidates() {
+        DispatchMatcher.Candidate[][] candidates = new DispatchMatcher.Candidate[waiting.size()][];
+        // a parallel stream started from within a fork join pool runs on that pool instead of the common one
+        matrixPool.submit(() -> IntStream.range(0, waiting.size()).parallel()
+                .forEach(request -> candidates[request] = candidatesOf(waiting.get(request).request)))
+                .join();
+        return candidates;
+    }
+
+    private DispatchMatcher.Candidate[] candidatesOf(DispatchRequest request) {
+        List<DispatchMatcher.Candidate> candidates = new ArrayList<>(candidatesPerRequest);
+        for (Long driverId : dispatchMatcher.nearestDrivers(request, candidatesPerRequest)) {
+            DispatchMatcher.Candidate candidate = dispatchMatcher.candidate(driverId, request);
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+        return candidates.toArray(new DispatchMatcher.Candidate[0]);
+    }
+
+    private static DispatchMatcher.Candidate candidateOf(DispatchMatcher.Candidate[] candidates, int[] driverIndexes, int driverIndex) {
+        for (int k = 0; k < candidates.length; k++) {
+            if (driverIndexes[k] == driverIndex) {
+                return candidates[k];
+            }
+        }
+        throw new IllegalStateException("driver " + driverIndex + " is not a candidate of the request");
+    }
+
+    private static final class PendingRequest {
+
+        private final DispatchRequest request;
+
+        private final long submittedNanos;
+
+        private final CompletableFuture<Dispatch> result = new CompletableFuture<>();
+
+        private PendingRequest(DispatchRequest request, long submittedNanos) {
+            this.request = request;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+}
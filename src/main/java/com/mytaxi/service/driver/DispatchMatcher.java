@@ -0,0 +1,136 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.exception.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Finds the drivers which could serve a ride request and claims one of them, shared by the greedy and the batched dispatch.
+ * <p/>
+ * Candidates come from the {@link DriverLocationIndex} nearest first, their cars from the {@link CarReservationRegistry} and
+ * the {@link CarCache}, so matching does not touch the database. A candidate is only a snapshot, {@link #claim} checks again
+ * that the driver is free and still owns the car.
+ */
+@Component
+@Slf4j
+public class DispatchMatcher {
+
+    private final DriverLocationIndex driverLocationIndex;
+
+    private final CarReservationRegistry carReservationRegistry;
+
+    private final DriverAssignmentRegistry driverAssignmentRegistry;
+
+    private final CarService carService;
+
+    public DispatchMatcher(final DriverLocationIndex driverLocationIndex, final CarReservationRegistry carReservationRegistry,
+                           final DriverAssignmentRegistry driverAssignmentRegistry, final CarService carService) {
+        this.driverLocationIndex = driverLocationIndex;
+        this.carReservationRegistry = carReservationRegistry;
+        this.driverAssignmentRegistry = driverAssignmentRegistry;
+        this.carService = carService;
+    }
+
+    /**
+     * @param request
+     * @param limit
+     * @return ids of the available drivers within the radius of the request, nearest first
+     */
+    public List<Long> nearestDrivers(DispatchRequest request, int limit) {
+        GeoCoordinate pickup = request.getPickup();
+        return driverLocationIndex.findNearest(pickup.getLatitude(), pickup.getLongitude(), request.getRadiusKm(), limit);
+    }
+
+    /**
+     * @param driverId
+     * @param request
+     * @return the driver with the first of their cars matching the request, null if the driver is assigned already, is not
+     * indexed or has no matching car
+     */
+    public Candidate candidate(long driverId, DispatchRequest request) {
+        if (driverAssignmentRegistry.isAssigned(driverId)) {
+            return null;
+        }
+        for (Long carId : carReservationRegistry.carIdsOf(driverId)) {
+            if (!matches(carId, request)) {
+                continue;
+            }
+            GeoCoordinate location = driverLocationIndex.locationOf(driverId);
+            if (location == null) {
+                return null;
+            }
+            GeoCoordinate pickup = request.getPickup();
+            return new Candidate(driverId, carId, DriverLocationIndex.distanceKm(pickup.getLatitude(), pickup.getLongitude(),
+                    location.getLatitude(), location.getLongitude()));
+        }
+        return null;
+    }
+
+    /**
+     * Assigns the candidate to the request and takes the driver out of the nearest driver searches.
+     *
+     * @param candidate
+     * @param request
+     * @return the dispatch or null if the driver was assigned concurrently or the car was deselected in the meantime
+     */
+    public Dispatch claim(Candidate candidate, DispatchRequest request) {
+        Dispatch dispatch = new Dispatch(candidate.driverId, candidate.carId, request.getPickup(), candidate.distanceKm, ZonedDateTime.now());
+        if (!driverAssignmentRegistry.assign(dispatch)) {
+            return null;
+        }
+        if (!Long.valueOf(candidate.driverId).equals(carReservationRegistry.ownerOf(candidate.carId))) {
+            driverAssignmentRegistry.release(dispatch);
+            return null;
+        }
+        driverLocationIndex.updateAvailability(candidate.driverId, false);
+        return dispatch;
+    }
+
+    private boolean matches(long carId, DispatchRequest request) {
+        CarDO carDO;
+        try {
+            carDO = carService.find(carId);
+        } catch (EntityNotFoundException e) {
+            log.debug("Selected car {} does not exist anymore", carId);
+            return false;
+        }
+        return !carDO.isDeleted() && request.accepts(carDO.getConvertible(), carDO.getEngineType(), carDO.getRating());
+    }
+
+    /**
+     * A free driver, their matching car and the distance to the pickup point.
+     */
+    public static final class Candidate {
+
+        private final long driverId;
+
+        private final long carId;
+
+        private final double distanceKm;
+
+        Candidate(long driverId, long carId, double distanceKm) {
+            this.driverId = driverId;
+            this.carId = carId;
+            this.distanceKm = distanceKm;
+        }
+
+        public long getDriverId() {
+            return driverId;
+        }
+
+        public long getCarId() {
+            return carId;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.domainvalue.Dispatch;
+import com.mytaxi.domainvalue.DispatchRequest;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.NoDriverAvailableException;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface DispatchService {
+
+    Dispatch dispatch(DispatchRequest request) throws NoDriverAvailableException;
+
+    CompletableFuture<Dispatch> submit(DispatchRequest request);
+
+    Dispatch find(long driverId) throws EntityNotFoundException;
+
+    Dispatch complete(long driverId) throws EntityNotFoundException;
+}
@@ -0,0 +1,61 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.domainvalue.Dispatch;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds which drivers are on their way to a passenger.
+ * <p/>
+ * Assigning a driver is a single compare-and-set on the driver id, so of two dispatches racing for the same driver exactly
+ * one wins, the other one moves on to its next candidate. Assignments live in memory only and are gone after a restart.
+ */
+@Component
+public class DriverAssignmentRegistry {
+
+    private final ConcurrentMap<Long, Dispatch> dispatchByDriverId = new ConcurrentHashMap<>();
+
+    /**
+     * @param dispatch
+     * @return false if the driver is already assigned to another dispatch
+     */
+    public boolean assign(Dispatch dispatch) {
+        return dispatchByDriverId.putIfAbsent(dispatch.getDriverId(), dispatch) == null;
+    }
+
+    /**
+     * Releases the driver of the given dispatch if it is still assigned to it.
+     *
+     * @param dispatch
+     * @return false if the driver is assigned to another dispatch or not at all
+     */
+    public boolean release(Dispatch dispatch) {
+        return dispatchByDriverId.remove(dispatch.getDriverId(), dispatch);
+    }
+
+    /**
+     * @param driverId
+     * @return the released dispatch or null if the driver was not assigned
+     */
+    public Dispatch release(long driverId) {
+        return dispatchByDriverId.remove(driverId);
+    }
+
+    public boolean isAssigned(long driverId) {
+        return dispatchByDriverId.containsKey(driverId);
+    }
+
+    /**
+     * @param driverId
+     * @return the dispatch the driver is assigned to or null
+     */
+    public Dispatch dispatchOf(long driverId) {
+        return dispatchByDriverId.get(driverId);
+    }
+
+    public int size() {
+        return dispatchByDriverId.size();
+    }
+}
@@ -0,0 +1,17 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.domainobject.DriverDO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drivers by id. Their position changes all the time, so the location ingestion drops a driver whenever it writes a position.
+ */
+@Component
+public class DriverCache extends EntityCache<DriverDO> {
+
+    public DriverCache(@Value("${mytaxi.entity-cache.driver.maximum-size:10000}") long maximumSize,
+                       @Value("${mytaxi.entity-cache.driver.expire-after-write-seconds:60}") long expireAfterWriteSeconds) {
+        super(maximumSize, expireAfterWriteSeconds);
+    }
+}
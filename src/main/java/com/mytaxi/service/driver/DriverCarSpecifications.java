@@ -0,0 +1,163 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.domainobject.DriverCarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarAttribute;
+import com.mytaxi.domainvalue.DriverCarAttribute.Association;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Turns a {@link DriverCarFilter} into JPA specifications.
+ * <p/>
+ * Splitting the set attributes by association is done once per filter shape and cached, so a request only binds its values.
+ * Each association is joined at most once and a join the surrounding query already made is reused. Substring filters are
+ * resolved to ids through the {@link AttributeSearchIndex} first, so the database looks the rows up by primary key and only
+ * runs {@code LIKE} on those.
+ */
+@Component
+public class DriverCarSpecifications {
+
+    private final ConcurrentMap<Integer, CompiledShape> compiledShapes = new ConcurrentHashMap<>();
+
+    private final AttributeSearchIndex attributeSearchIndex;
+
+    public DriverCarSpecifications(final AttributeSearchIndex attributeSearchIndex) {
+        this.attributeSearchIndex = attributeSearchIndex;
+    }
+
+    /**
+     * Driver cars whose driver and car match the filter.
+     *
+     * @param filter
+     * @return
+     */
+    public Specification<DriverCarDO> forDriverCars(DriverCarFilter filter) {
+        CompiledShape shape = compile(filter);
+        Map<DriverCarAttribute, Set<Long>> ids = resolveIds(shape, filter);
+        return (root, criteriaQuery, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>(filter.getAttributes().size());
+            if (shape.driverAttributes.length > 0) {
+                shape.addPredicates(predicates, shape.driverAttributes, join(root, Association.DRIVER), filter, ids, criteriaBuilder);
+            }
+            if (shape.carAttributes.length > 0) {
+                shape.addPredicates(predicates, shape.carAttributes, join(root, Association.CAR), filter, ids, criteriaBuilder);
+            }
+            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Drivers matching the driver attributes of the filter that have a driver car whose car matches the car attributes.
+     * Driver attributes are checked on the driver row itself, only car attributes go into the driver car subquery.
+     *
+     * @param filter
+     * @return
+     */
+    public Specification<DriverDO> forDrivers(DriverCarFilter filter) {
+        CompiledShape shape = compile(filter);
+        Map<DriverCarAttribute, Set<Long>> ids = resolveIds(shape, filter);
+        return (root, criteriaQuery, criteriaBuilder) -> {
+            Subquery<Long> driverCars = criteriaQuery.subquery(Long.class);
+            Root<DriverCarDO> driverCarRoot = driverCars.from(DriverCarDO.class);
+
+            List<Predicate> carPredicates = new ArrayList<>(shape.carAttributes.length + 1);
+            carPredicates.add(criteriaBuilder.equal(driverCarRoot.get(Association.DRIVER.getAttributeName()), root));
+            if (shape.carAttributes.length > 0) {
+                shape.addPredicates(carPredicates, shape.carAttributes, join(driverCarRoot, Association.CAR), filter, ids, criteriaBuilder);
+            }
+            driverCars.select(driverCarRoot.<Long>get("id")).where(carPredicates.toArray(new Predicate[0]));
+
+            List<Predicate> predicates = new ArrayList<>(shape.driverAttributes.length + 1);
+            shape.addPredicates(predicates, shape.driverAttributes, root, filter, ids, criteriaBuilder);
+            predicates.add(criteriaBuilder.exists(driverCars));
+            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    int compiledShapeCount() {
+        return compiledShapes.size();
+    }
+
+    private CompiledShape compile(DriverCarFilter filter) {
+        return compiledShapes.computeIfAbsent(filter.getShape(), shape -> new CompiledShape(filter));
+    }
+
+    private Map<DriverCarAttribute, Set<Long>> resolveIds(CompiledShape shape, DriverCarFilter filter) {
+        Map<DriverCarAttribute, Set<Long>> ids = new EnumMap<>(DriverCarAttribute.class);
+        for (DriverCarAttribute attribute : shape.indexedAttributes) {
+            Set<Long> matchingIds = attributeSearchIndex.findIds(attribute, filter.get(attribute));
+            if (matchingIds != null) {
+                ids.put(attribute, matchingIds);
+            }
+        }
+        return ids;
+    }
+
+    private static From<?, ?> join(Root<DriverCarDO> root, Association association) {
+        for (Join<DriverCarDO, ?> join : root.getJoins()) {
+            if (join.getJoinType() == JoinType.INNER && association.getAttributeName().equals(join.getAttribute().getName())) {
+                return join;
+            }
+        }
+        return root.join(association.getAttributeName());
+    }
+
+    private static final class CompiledShape {
+
+        private final DriverCarAttribute[] driverAttributes;
+
+        private final DriverCarAttribute[] carAttributes;
+
+        private final DriverCarAttribute[] indexedAttributes;
+
+        private CompiledShape(DriverCarFilter filter) {
+            this.driverAttributes = filter.getAttributes().stream()
+                    .filter(attribute -> attribute.getAssociation() == Association.DRIVER)
+                    .toArray(DriverCarAttribute[]::new);
+            this.carAttributes = filter.getAttributes().stream()
+                    .filter(attribute -> attribute.getAssociation() == Association.CAR)
+                    .toArray(DriverCarAttribute[]::new);
+            this.indexedAttributes = filter.getAttributes().stream()
+                    .filter(AttributeSearchIndex::isIndexed)
+                    .toArray(DriverCarAttribute[]::new);
+        }
+
+        private void addPredicates(List<Predicate> predicates, DriverCarAttribute[] attributes, From<?, ?> from, DriverCarFilter filter,
+                                   Map<DriverCarAttribute, Set<Long>> ids, CriteriaBuilder criteriaBuilder) {
+            for (DriverCarAttribute attribute : attributes) {
+                Object value = filter.get(attribute);
+                Set<Long> matchingIds = ids.get(attribute);
+                if (matchingIds != null && matchingIds.isEmpty()) {
+                    predicates.add(criteriaBuilder.disjunction());
+                    continue;
+                }
+                if (matchingIds != null) {
+                    // the filter stays as a recheck of the few rows found, the index may hold a change which was rolled back
+                    predicates.add(from.get("id").in(matchingIds));
+                }
+                if (attribute.isContains()) {
+                    predicates.add(criteriaBuilder.like(from.<String>get(attribute.getParameterName()), "%" + value + "%"));
+                } else {
+                    predicates.add(criteriaBuilder.equal(from.get(attribute.getParameterName()), value));
+                }
+            }
+        }
+    }
+}
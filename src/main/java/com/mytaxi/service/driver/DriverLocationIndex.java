@@ -0,0 +1,338 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverLocation;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.domainvalue.GeoHash;
+import com.mytaxi.domainvalue.OnlineStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory grid index over the last known driver positions.
+ * <p/>
+ * The world is split into square cells of {@code cellSizeDegrees}. A nearest neighbour query starts at the cell containing
+ * the query point and walks outwards ring by ring, so only the cells around the point are visited instead of every driver.
+ */
+@Component
+public class DriverLocationIndex {
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final double KM_PER_DEGREE = Math.toRadians(EARTH_RADIUS_KM);
+
+    private static final double MIN_COS_LATITUDE = 0.01;
+
+    private static final long ANY_CELL = -1;
+
+    private static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private final double cellSizeDegrees;
+
+    private final long latitudeCells;
+
+    private final long longitudeCells;
+
+    private final ConcurrentMap<Long, IndexedDriver> drivers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    public DriverLocationIndex(@Value("${mytaxi.driver-index.cell-size-degrees:0.05}") double cellSizeDegrees) {
+        Preconditions.checkArgument(cellSizeDegrees > 0 && cellSizeDegrees <= 10, "cell size must be in (0, 10] degrees");
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.latitudeCells = (long) Math.ceil(180 / cellSizeDegrees) + 1;
+        this.longitudeCells = (long) Math.ceil(360 / cellSizeDegrees);
+    }
+
+    /**
+     * Stores or moves the position of a driver. The position counts as taken at an unknown time, so the next
+     * {@link #moveIfPresent(DriverLocation)} replaces it whatever its time.
+     *
+     * @param driverId
+     * @param coordinate last known position, drivers without a position are removed from the index
+     * @param available  whether the driver may be returned by {@link #findNearest(double, double, double, int)}
+     */
+    public void update(long driverId, GeoCoordinate coordinate, boolean available) {
+        if (coordinate == null) {
+            remove(driverId);
+            return;
+        }
+
+        long geohash = coordinate.toGeohash();
+        long cellKey = cellKey(coordinate.getLatitude(), coordinate.getLongitude());
+        drivers.compute(driverId, (id, previous) -> relocate(previous, new IndexedDriver(id, geohash, available, cellKey, UNKNOWN_TIME)));
+    }
+
+    /**
+     * Moves an already indexed driver and keeps its availability. A location taken before the indexed one is ignored, so
+     * a late write of an older ping does not move the driver back.
+     *
+     * @param location
+     * @return false if the driver is not indexed yet
+     */
+    public boolean moveIfPresent(DriverLocation location) {
+        GeoCoordinate coordinate = location.getCoordinate();
+        long geohash = coordinate.toGeohash();
+        long cellKey = cellKey(coordinate.getLatitude(), coordinate.getLongitude());
+        long locatedAt = location.getDateCoordinateUpdated().toInstant().toEpochMilli();
+        // the availability is copied from the entry being replaced, so a concurrent updateAvailability is never undone
+        return drivers.computeIfPresent(location.getDriverId(), (id, current) -> current.locatedAt > locatedAt ? current
+                : relocate(current, new IndexedDriver(id, geohash, current.available, cellKey, locatedAt))) != null;
+    }
+
+    /**
+     * Changes the availability of an indexed driver without touching its position.
+     *
+     * @param driverId
+     * @param available
+     */
+    public void updateAvailability(long driverId, boolean available) {
+        drivers.computeIfPresent(driverId, (id, indexedDriver) -> indexedDriver.withAvailable(available));
+    }
+
+    public void remove(long driverId) {
+        drivers.computeIfPresent(driverId, (id, previous) -> {
+            removeFromCell(previous.cellKey, id);
+            return null;
+        });
+    }
+
+    /**
+     * Whether a driver may be handed out by {@link #findNearest(double, double, double, int)}.
+     */
+    static boolean isAvailable(DriverDO driverDO) {
+        return driverDO.getOnlineStatus() == OnlineStatus.ONLINE && !Boolean.TRUE.equals(driverDO.getDeleted());
+    }
+
+    public int size() {
+        return drivers.size();
+    }
+
+    /**
+     * @param driverId
+     * @return the indexed position of the driver or null if the driver is not indexed
+     */
+    public GeoCoordinate locationOf(long driverId) {
+        IndexedDriver indexedDriver = drivers.get(driverId);
+        return indexedDriver == null ? null : GeoCoordinate.fromGeohash(indexedDriver.geohash);
+    }
+
+    /**
+     * Finds the ids of the available drivers closest to the given point, nearest first.
+     *
+     * @param latitude
+     * @param longitude
+     * @param radiusKm  maximum great-circle distance
+     * @param limit     maximum number of drivers returned
+     * @return driver ids ordered by ascending distance
+     */
+    public List<Long> findNearest(double latitude, double longitude, double radiusKm, int limit) {
+        Preconditions.checkArgument(radiusKm > 0, "radiusKm must be positive");
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
+        Preconditions.checkArgument(latitude >= -90 && latitude <= 90, "latitude must be within [-90, 90]");
+        Preconditions.checkArgument(longitude >= -180 && longitude <= 180, "longitude must be within [-180, 180]");
+
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(limit, Comparator.comparingDouble((Candidate c) -> c.distanceKm).reversed());
+
+        long centerLatitudeCell = latitudeCell(latitude);
+        long centerLongitudeCell = longitudeCell(longitude);
+        long maxRing = Math.max(latitudeCells, longitudeCells / 2);
+        long visitedCells = 0;
+
+        for (long ring = 0; ring <= maxRing; ring++) {
+            visitedCells += visitRing(centerLatitudeCell, centerLongitudeCell, ring, latitude, longitude, radiusKm, limit, nearest);
+
+            // a huge radius over a sparse index touches more empty cells than there are drivers, a plain scan is cheaper then
+            if (visitedCells > drivers.size()) {
+                nearest.clear();
+                collect(drivers.keySet(), ANY_CELL, latitude, longitude, radiusKm, limit, nearest);
+                break;
+            }
+
+            // everything outside of this ring is separated from the query point by at least `ring` full cells
+            double outerDistanceKm = ring * minCellWidthKm(latitude, ring + 1);
+            if (outerDistanceKm > radiusKm || (nearest.size() == limit && nearest.peek().distanceKm <= outerDistanceKm)) {
+                break;
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(nearest);
+        sorted.sort(Comparator.comparingDouble(c -> c.distanceKm));
+
+        List<Long> driverIds = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted) {
+            driverIds.add(candidate.driverId);
+        }
+        return Collections.unmodifiableList(driverIds);
+    }
+
+    private long visitRing(long centerLatitudeCell, long centerLongitudeCell, long ring, double latitude, double longitude,
+                           double radiusKm, int limit, PriorityQueue<Candidate> nearest) {
+        // longitude columns wrap around, so offsets are clamped to one window around the globe to visit each cell once
+        long westmostOffset = -((longitudeCells - 1) / 2);
+        long eastmostOffset = longitudeCells - 1 + westmostOffset;
+        long visitedCells = 0;
+
+        for (long latitudeOffset = -ring; latitudeOffset <= ring; latitudeOffset++) {
+            long latitudeCell = centerLatitudeCell + latitudeOffset;
+            if (latitudeCell < 0 || latitudeCell >= latitudeCells) {
+                continue;
+            }
+            if (Math.abs(latitudeOffset) == ring) {
+                for (long longitudeOffset = Math.max(-ring, westmostOffset); longitudeOffset <= Math.min(ring, eastmostOffset); longitudeOffset++) {
+                    visitCell(latitudeCell, centerLongitudeCell + longitudeOffset, latitude, longitude, radiusKm, limit, nearest);
+                    visitedCells++;
+                }
+            } else {
+                if (-ring >= westmostOffset) {
+                    visitCell(latitudeCell, centerLongitudeCell - ring, latitude, longitude, radiusKm, limit, nearest);
+                    visitedCells++;
+                }
+                if (ring <= eastmostOffset) {
+                    visitCell(latitudeCell, centerLongitudeCell + ring, latitude, longitude, radiusKm, limit, nearest);
+                    visitedCells++;
+                }
+            }
+        }
+        return visitedCells;
+    }
+
+    private void visitCell(long latitudeCell, long longitudeCell, double latitude, double longitude, double radiusKm, int limit,
+                           PriorityQueue<Candidate> nearest) {
+        long cellKey = latitudeCell * longitudeCells + Math.floorMod(longitudeCell, longitudeCells);
+        Set<Long> cell = cells.get(cellKey);
+        if (cell != null) {
+            collect(cell, cellKey, latitude, longitude, radiusKm, limit, nearest);
+        }
+    }
+
+    private void collect(Set<Long> driverIds, long cellKey, double latitude, double longitude, double radiusKm, int limit,
+                         PriorityQueue<Candidate> nearest) {
+        for (Long driverId : driverIds) {
+            IndexedDriver indexedDriver = drivers.get(driverId);
+            if (indexedDriver == null || !indexedDriver.available) {
+                continue;
+            }
+            // a moving driver is briefly listed in its old and its new cell, it only counts in the cell it is indexed in
+            if (cellKey != ANY_CELL && indexedDriver.cellKey != cellKey) {
+                continue;
+            }
+            double distanceKm = distanceKm(latitude, longitude, GeoHash.decodeLatitude(indexedDriver.geohash),
+                    GeoHash.decodeLongitude(indexedDriver.geohash));
+            if (distanceKm > radiusKm) {
+                continue;
+            }
+            if (nearest.size() < limit) {
+                nearest.add(new Candidate(driverId, distanceKm));
+            } else if (distanceKm < nearest.peek().distanceKm) {
+                nearest.poll();
+                nearest.add(new Candidate(driverId, distanceKm));
+            }
+        }
+    }
+
+    /**
+     * Moves the driver between the cells of its previous and its next entry. Runs while the map entry of the driver is locked,
+     * so concurrent writes of one driver change its cells one after the other and never leave it behind in a stale cell.
+     */
+    private IndexedDriver relocate(IndexedDriver previous, IndexedDriver next) {
+        if (previous == null || previous.cellKey != next.cellKey) {
+            cells.compute(next.cellKey, (key, cell) -> {
+                Set<Long> driverIds = cell == null ? ConcurrentHashMap.newKeySet() : cell;
+                driverIds.add(next.driverId);
+                return driverIds;
+            });
+            if (previous != null) {
+                removeFromCell(previous.cellKey, previous.driverId);
+            }
+        }
+        return next;
+    }
+
+    private void removeFromCell(long cellKey, long driverId) {
+        cells.computeIfPresent(cellKey, (key, cell) -> {
+            cell.remove(driverId);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    /**
+     * Lower bound for the width of a cell within {@code ring} cells of the query latitude, longitude cells shrink towards
+     * the poles.
+     */
+    private double minCellWidthKm(double latitude, long ring) {
+        double farthestLatitude = Math.min(90, Math.abs(latitude) + (ring + 1) * cellSizeDegrees);
+        double cosLatitude = Math.max(MIN_COS_LATITUDE, Math.cos(Math.toRadians(farthestLatitude)));
+        return cellSizeDegrees * KM_PER_DEGREE * cosLatitude;
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return latitudeCell(latitude) * longitudeCells + longitudeCell(longitude);
+    }
+
+    private long latitudeCell(double latitude) {
+        return (long) Math.floor((latitude + 90) / cellSizeDegrees);
+    }
+
+    private long longitudeCell(double longitude) {
+        return Math.floorMod((long) Math.floor((longitude + 180) / cellSizeDegrees), longitudeCells);
+    }
+
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static final class IndexedDriver {
+
+        private final long driverId;
+
+        // one long instead of two doubles keeps the entry of every driver eight bytes smaller
+        private final long geohash;
+
+        private final boolean available;
+
+        private final long cellKey;
+
+        // epoch millis of the ping the position was taken from
+        private final long locatedAt;
+
+        private IndexedDriver(long driverId, long geohash, boolean available, long cellKey, long locatedAt) {
+            this.driverId = driverId;
+            this.geohash = geohash;
+            this.available = available;
+            this.cellKey = cellKey;
+            this.locatedAt = locatedAt;
+        }
+
+        private IndexedDriver withAvailable(boolean available) {
+            return new IndexedDriver(driverId, geohash, available, cellKey, locatedAt);
+        }
+    }
+
+    private static final class Candidate {
+
+        private final long driverId;
+
+        private final double distanceKm;
+
+        private Candidate(long driverId, double distanceKm) {
+            this.driverId = driverId;
+            this.distanceKm = distanceKm;
+        }
+    }
+}
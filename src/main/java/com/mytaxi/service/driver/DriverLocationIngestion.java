@@ -0,0 +1,416 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.mytaxi.dataaccessobject.DriverLocationBatchRepository;
+import com.mytaxi.dataaccessobject.DriverRepository;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverLocation;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.LocationIngestionOverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accepts driver location pings and writes them to the database.
+ * <p/>
+ * In {@code write-behind} mode pings are buffered per driver, a newer ping replaces a pending one, and the buffer is
+ * flushed with JDBC batches every {@code flush-interval-ms}. Once {@code capacity} drivers have a pending ping further
+ * drivers are rejected until the next flush. In {@code sync} mode every ping is written before the call returns, a bulk
+ * submit is written in chunks of {@code bulk-chunk-size} which commit on their own.
+ */
+@Component
+@Slf4j
+public class DriverLocationIngestion {
+
+    public static final String MODE_SYNC = "sync";
+
+    public static final String MODE_WRITE_BEHIND = "write-behind";
+
+    private final DriverLocationBatchRepository driverLocationBatchRepository;
+
+    private final DriverRepository driverRepository;
+
+    private final DriverLocationIndex driverLocationIndex;
+
+    private final DriverCache driverCache;
+
+    private final FleetSnapshot fleetSnapshot;
+
+    private final boolean writeBehind;
+
+    private final int capacity;
+
+    private final long flushIntervalMs;
+
+    private final int batchSize;
+
+    private final int bulkChunkSize;
+
+    private final TransactionTemplate chunkTransaction;
+
+    private final ConcurrentMap<Long, DriverLocation> pending = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong stale = new AtomicLong();
+
+    private final AtomicLong unknownDrivers = new AtomicLong();
+
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private final AtomicLong failedChunks = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public DriverLocationIngestion(
+            final DriverLocationBatchRepository driverLocationBatchRepository,
+            final DriverRepository driverRepository,
+            final DriverLocationIndex driverLocationIndex,
+            final DriverCache driverCache,
+            final FleetSnapshot fleetSnapshot,
+            final PlatformTransactionManager transactionManager,
+            @Value("${mytaxi.location-ingestion.mode:" + MODE_WRITE_BEHIND + "}") String mode,
+            @Value("${mytaxi.location-ingestion.capacity:100000}") int capacity,
+            @Value("${mytaxi.location-ingestion.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${mytaxi.location-ingestion.batch-size:500}") int batchSize,
+            @Value("${mytaxi.location-ingestion.bulk-chunk-size:500}") int bulkChunkSize) {
+        Preconditions.checkArgument(MODE_SYNC.equals(mode) || MODE_WRITE_BEHIND.equals(mode), "unknown location ingestion mode: %s", mode);
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+        Preconditions.checkArgument(flushIntervalMs > 0, "flush interval must be positive");
+        Preconditions.checkArgument(batchSize > 0, "batch size must be positive");
+        Preconditions.checkArgument(bulkChunkSize > 0, "bulk chunk size must be positive");
+        this.driverLocationBatchRepository = driverLocationBatchRepository;
+        this.driverRepository = driverRepository;
+        this.driverLocationIndex = driverLocationIndex;
+        this.driverCache = driverCache;
+        this.fleetSnapshot = fleetSnapshot;
+        this.writeBehind = MODE_WRITE_BEHIND.equals(mode);
+        this.capacity = capacity;
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+        this.bulkChunkSize = bulkChunkSize;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!writeBehind) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "driver-location-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Hands over a position of a driver.
+     *
+     * @param driverId
+     * @param coordinate
+     * @throws EntityNotFoundException              in sync mode if the driver does not exist, unknown drivers are dropped
+     *                                              silently on flush in write-behind mode. A position older than the
+     *                                              stored one is dropped silently in both modes
+     * @throws LocationIngestionOverloadedException if too many drivers have a pending position
+     */
+    public void submit(long driverId, GeoCoordinate coordinate) throws EntityNotFoundException, LocationIngestionOverloadedException {
+        submit(new DriverLocation(driverId, coordinate, ZonedDateTime.now()));
+    }
+
+    /**
+     * @param location
+     * @throws EntityNotFoundException              in sync mode if the driver does not exist
+     * @throws LocationIngestionOverloadedException if too many drivers have a pending position
+     * @see #submit(long, GeoCoordinate)
+     */
+    public void submit(DriverLocation location) throws EntityNotFoundException, LocationIngestionOverloadedException {
+        if (!writeBehind) {
+            accepted.incrementAndGet();
+            if (write(Collections.singletonList(location))[0] == Outcome.UNKNOWN_DRIVER) {
+                throw new EntityNotFoundException("Could not find entity with id: " + location.getDriverId());
+            }
+            return;
+        }
+
+        enqueue(location);
+    }
+
+    /**
+     * Hands over the positions of many drivers at once. In sync mode they are written with one batch per chunk of
+     * {@code bulk-chunk-size}, each in a transaction of its own, and a chunk which can not be written fails only its own
+     * positions.
+     *
+     * @param locations
+     * @return error message by position in {@code locations} for every location which was not accepted
+     */
+    public Map<Integer, String> submitAll(List<DriverLocation> locations) {
+        Map<Integer, String> failures = new HashMap<>();
+
+        if (!writeBehind) {
+            accepted.addAndGet(locations.size());
+            for (int from = 0; from < locations.size(); from += bulkChunkSize) {
+                writeChunk(locations.subList(from, Math.min(from + bulkChunkSize, locations.size())), from, failures);
+            }
+            return failures;
+        }
+
+        for (int i = 0; i < locations.size(); i++) {
+            try {
+                enqueue(locations.get(i));
+            } catch (LocationIngestionOverloadedException e) {
+                failures.put(i, e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Writes all pending positions.
+     *
+     * @return number of written positions
+     */
+    public int flush() {
+        int flushed = 0;
+        List<DriverLocation> batch = new ArrayList<>(Math.min(batchSize, Math.max(pendingCount.get(), 1)));
+        Iterator<Long> driverIds = pending.keySet().iterator();
+        while (driverIds.hasNext()) {
+            DriverLocation location = pending.remove(driverIds.next());
+            if (location == null) {
+                continue;
+            }
+            pendingCount.decrementAndGet();
+            batch.add(location);
+            if (batch.size() == batchSize) {
+                flushed += writeOrRequeue(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += writeOrRequeue(batch);
+        }
+        return flushed;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public LocationIngestionStats getStats() {
+        return new LocationIngestionStats(pendingCount.get(), capacity, accepted.get(), coalesced.get(), rejected.get(),
+                written.get(), stale.get(), unknownDrivers.get(), failedFlushes.get(), failedChunks.get());
+    }
+
+    private void enqueue(DriverLocation location) throws LocationIngestionOverloadedException {
+        long driverId = location.getDriverId();
+
+        boolean reserved = false;
+        if (!pending.containsKey(driverId)) {
+            if (pendingCount.incrementAndGet() > capacity) {
+                pendingCount.decrementAndGet();
+                rejected.incrementAndGet();
+                throw new LocationIngestionOverloadedException(capacity);
+            }
+            reserved = true;
+        }
+
+        boolean[] inserted = {false};
+        DriverLocation latest = pending.compute(driverId, (id, current) -> {
+            if (current == null) {
+                inserted[0] = true;
+                return location;
+            }
+            // pings may arrive out of order, the latest position wins
+            return current.newer(location);
+        });
+
+        if (reserved && !inserted[0]) {
+            pendingCount.decrementAndGet();
+        } else if (!reserved && inserted[0]) {
+            // flushed in the meantime
+            pendingCount.incrementAndGet();
+        }
+        if (!inserted[0]) {
+            coalesced.incrementAndGet();
+        }
+        accepted.incrementAndGet();
+        if (latest == location) {
+            // a late ping which lost against the pending one must not move the driver either
+            driverLocationIndex.moveIfPresent(location);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            int flushed = flush();
+            if (flushed > 0) {
+                log.debug("Flushed {} driver locations", flushed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Flushing driver locations failed", e);
+        }
+    }
+
+    private int writeOrRequeue(List<DriverLocation> batch) {
+        try {
+            Outcome[] outcomes = write(batch);
+            int updated = 0;
+            for (Outcome outcome : outcomes) {
+                if (outcome == Outcome.WRITTEN) {
+                    updated++;
+                }
+            }
+            return updated;
+        } catch (DataAccessException e) {
+            failedFlushes.incrementAndGet();
+            log.warn("Could not write {} driver locations, retrying with the next flush", batch.size(), e);
+            for (DriverLocation location : batch) {
+                // a newer ping which arrived in the meantime wins
+                if (pending.putIfAbsent(location.getDriverId(), location) == null) {
+                    pendingCount.incrementAndGet();
+                }
+            }
+            return 0;
+        }
+    }
+
+    private void writeChunk(List<DriverLocation> chunk, int offset, Map<Integer, String> failures) {
+        Outcome[] outcomes;
+        try {
+            outcomes = chunkTransaction.execute(status -> update(chunk));
+        } catch (DataAccessException | TransactionException e) {
+            failedChunks.incrementAndGet();
+            log.warn("Could not write a chunk of {} driver locations", chunk.size(), e);
+            for (int i = 0; i < chunk.size(); i++) {
+                failures.put(offset + i, "Could not write the location, try again later");
+            }
+            return;
+        }
+
+        apply(chunk, outcomes);
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == Outcome.UNKNOWN_DRIVER) {
+                failures.put(offset + i, "Could not find entity with id: " + chunk.get(i).getDriverId());
+            }
+        }
+    }
+
+    private Outcome[] write(List<DriverLocation> batch) {
+        Outcome[] outcomes = update(batch);
+        apply(batch, outcomes);
+        return outcomes;
+    }
+
+    /**
+     * Writes the positions to the database.
+     */
+    private Outcome[] update(List<DriverLocation> batch) {
+        int[] updateCounts = driverLocationBatchRepository.updateLocations(batch);
+
+        Outcome[] outcomes = new Outcome[batch.size()];
+        List<Long> skippedDriverIds = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (updateCounts[i] == 0) {
+                skippedDriverIds.add(batch.get(i).getDriverId());
+            } else {
+                outcomes[i] = Outcome.WRITTEN;
+            }
+        }
+
+        if (!skippedDriverIds.isEmpty()) {
+            // the update also skips drivers with a newer position stored already, only drivers without a row are unknown
+            Set<Long> existingDriverIds = new HashSet<>(driverRepository.findExistingIds(skippedDriverIds));
+            for (int i = 0; i < outcomes.length; i++) {
+                if (outcomes[i] == null) {
+                    outcomes[i] = existingDriverIds.contains(batch.get(i).getDriverId()) ? Outcome.STALE : Outcome.UNKNOWN_DRIVER;
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Counts the outcomes and moves the written drivers in memory, once their positions are stored.
+     */
+    private void apply(List<DriverLocation> batch, Outcome[] outcomes) {
+        List<DriverLocation> updated = new ArrayList<>(batch.size());
+        List<Long> unindexedDriverIds = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            DriverLocation location = batch.get(i);
+            if (outcomes[i] == Outcome.STALE) {
+                stale.incrementAndGet();
+                continue;
+            }
+            if (outcomes[i] == Outcome.UNKNOWN_DRIVER) {
+                unknownDrivers.incrementAndGet();
+                continue;
+            }
+            updated.add(location);
+            driverCache.invalidate(location.getDriverId());
+            // ignored by the index if a newer ping of the driver was accepted while this one was written
+            if (!driverLocationIndex.moveIfPresent(location)) {
+                unindexedDriverIds.add(location.getDriverId());
+            }
+        }
+        written.addAndGet(updated.size());
+        fleetSnapshot.move(updated);
+
+        if (!unindexedDriverIds.isEmpty()) {
+            // first position of these drivers, their availability is only known by the database
+            for (DriverDO driverDO : driverRepository.findAllById(unindexedDriverIds)) {
+                driverLocationIndex.update(driverDO.getId(), driverDO.getCoordinate(), DriverLocationIndex.isAvailable(driverDO));
+            }
+        }
+    }
+
+    /**
+     * What became of a position handed to {@link #update(List)}.
+     */
+    private enum Outcome {
+        WRITTEN, STALE, UNKNOWN_DRIVER
+    }
+}
@@ -0,0 +1,200 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.OnlineStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * In-memory view of the online status of every driver, so looking up the drivers of one status does not hit the database.
+ * <p/>
+ * The registry mirrors the {@code online_status} column, soft deleted drivers included, and is kept up to date by the driver
+ * service. Online drivers have to keep sending heartbeats, location pings count as one. A driver whose last heartbeat is older
+ * than {@code heartbeat-timeout-seconds} is moved to {@link OnlineStatus#OFFLINE} and handed to the expiry listener, which
+ * persists the change.
+ */
+@Component
+@Slf4j
+public class DriverPresenceRegistry {
+
+    private final Map<OnlineStatus, Set<Long>> driverIdsByStatus = new EnumMap<>(OnlineStatus.class);
+
+    private final ConcurrentMap<Long, OnlineStatus> statusByDriverId = new ConcurrentHashMap<>();
+
+    private final HeartbeatTimerWheel heartbeats;
+
+    private final long tickMs;
+
+    private volatile LongConsumer expiryListener = driverId -> {
+    };
+
+    private volatile boolean loaded;
+
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public DriverPresenceRegistry(@Value("${mytaxi.presence.heartbeat-timeout-seconds:120}") long heartbeatTimeoutSeconds,
+                                  @Value("${mytaxi.presence.tick-ms:1000}") long tickMs,
+                                  @Value("${mytaxi.presence.wheel-size:512}") int wheelSize) {
+        this(new HeartbeatTimerWheel(TimeUnit.SECONDS.toMillis(heartbeatTimeoutSeconds), tickMs, wheelSize, System::currentTimeMillis),
+                tickMs);
+    }
+
+    public DriverPresenceRegistry(HeartbeatTimerWheel heartbeats, long tickMs) {
+        Preconditions.checkArgument(tickMs > 0, "tick must be positive");
+        this.heartbeats = heartbeats;
+        this.tickMs = tickMs;
+        for (OnlineStatus status : OnlineStatus.values()) {
+            driverIdsByStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "driver-presence-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireQuietly, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Replaces the content of the registry, online drivers get a full heartbeat timeout from now on.
+     *
+     * @param drivers all drivers
+     */
+    public void load(Iterable<DriverDO> drivers) {
+        for (DriverDO driverDO : drivers) {
+            setStatus(driverDO.getId(), driverDO.getOnlineStatus());
+        }
+        loaded = true;
+        log.info("Registered the online status of {} drivers, {} of them online", statusByDriverId.size(),
+                driverIdsByStatus.get(OnlineStatus.ONLINE).size());
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @param expiryListener called with the id of every driver that went offline because its heartbeat timed out
+     */
+    public void onExpiry(LongConsumer expiryListener) {
+        this.expiryListener = expiryListener;
+    }
+
+    /**
+     * Records the status of a driver, going online starts the heartbeat timeout and going offline stops it.
+     *
+     * @param driverId
+     * @param status
+     */
+    public void setStatus(long driverId, OnlineStatus status) {
+        Preconditions.checkNotNull(status, "status must not be null");
+        statusByDriverId.compute(driverId, (id, previous) -> {
+            if (previous != null && previous != status) {
+                driverIdsByStatus.get(previous).remove(id);
+            }
+            driverIdsByStatus.get(status).add(id);
+            // inside compute so that racing status changes of one driver leave the timeout matching the final status
+            if (status == OnlineStatus.ONLINE) {
+                heartbeats.touch(id);
+            } else {
+                heartbeats.cancel(id);
+            }
+            return status;
+        });
+    }
+
+    /**
+     * Restarts the heartbeat timeout of an online driver.
+     *
+     * @param driverId
+     * @return false if the driver is not online
+     */
+    public boolean heartbeat(long driverId) {
+        if (statusByDriverId.get(driverId) != OnlineStatus.ONLINE) {
+            return false;
+        }
+        heartbeats.touch(driverId);
+        return true;
+    }
+
+    /**
+     * @param driverId
+     * @return status of the driver or null if the driver is unknown
+     */
+    public OnlineStatus statusOf(long driverId) {
+        return statusByDriverId.get(driverId);
+    }
+
+    /**
+     * @param status
+     * @return live, unmodifiable view of the ids of the drivers with the given status
+     */
+    public Set<Long> driverIds(OnlineStatus status) {
+        return Collections.unmodifiableSet(driverIdsByStatus.get(status));
+    }
+
+    /**
+     * Moves every online driver whose heartbeat timed out to offline.
+     *
+     * @return number of drivers which went offline
+     */
+    public int expireStale() {
+        int expiredDrivers = 0;
+        for (Long driverId : heartbeats.expire()) {
+            boolean[] expired = new boolean[1];
+            statusByDriverId.computeIfPresent(driverId, (id, status) -> {
+                // a heartbeat right after the deadline passed reschedules the driver, it stays online then
+                if (status != OnlineStatus.ONLINE || heartbeats.isScheduled(id)) {
+                    return status;
+                }
+                driverIdsByStatus.get(OnlineStatus.ONLINE).remove(id);
+                driverIdsByStatus.get(OnlineStatus.OFFLINE).add(id);
+                expired[0] = true;
+                return OnlineStatus.OFFLINE;
+            });
+            if (expired[0]) {
+                expiredDrivers++;
+                expiryListener.accept(driverId);
+            }
+        }
+        return expiredDrivers;
+    }
+
+    private void expireQuietly() {
+        try {
+            int expiredDrivers = expireStale();
+            if (expiredDrivers > 0) {
+                log.info("{} drivers went offline after missing their heartbeat", expiredDrivers);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not expire stale drivers", e);
+        }
+    }
+}
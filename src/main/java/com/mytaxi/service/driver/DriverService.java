@@ -1,9 +1,14 @@
 package com.mytaxi.service.driver;
 
 import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import com.mytaxi.domainvalue.DriverLocation;
 import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.domainvalue.SeekPage;
+import com.mytaxi.domainvalue.SeekRequest;
 import com.mytaxi.exception.ConstraintsViolationException;
 import com.mytaxi.exception.EntityNotFoundException;
+import com.mytaxi.exception.LocationIngestionOverloadedException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -19,9 +24,21 @@ public interface DriverService
 
     void delete(Long driverId) throws EntityNotFoundException;
 
-    void updateLocation(long driverId, double longitude, double latitude) throws EntityNotFoundException;
+    void updateLocation(long driverId, double longitude, double latitude) throws EntityNotFoundException, LocationIngestionOverloadedException;
+
+    Map<Integer, String> updateLocations(List<DriverLocation> locations);
+
+    DriverDO goOnline(long driverId) throws EntityNotFoundException;
+
+    DriverDO goOffline(long driverId) throws EntityNotFoundException;
+
+    void heartbeat(long driverId) throws EntityNotFoundException;
 
     List<DriverDO> find(OnlineStatus onlineStatus);
 
-    Page<DriverDO> getDrivers(Map<String, Object> allRequestParams, Pageable pageable);
+    List<DriverDO> findNearby(double latitude, double longitude, double radiusKm, int limit);
+
+    Page<DriverDO> getDrivers(DriverCarFilter filter, Pageable pageable);
+
+    SeekPage<DriverDO> getDrivers(DriverCarFilter filter, SeekRequest seekRequest);
 }
@@ -0,0 +1,74 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.mytaxi.exception.EntityNotFoundException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded read-through cache of entities by id.
+ * <p/>
+ * Entries are evicted once the cache is full or when they are older than the configured time to live, which also bounds how
+ * long a change missing an {@link #invalidate(Long) invalidation} stays unseen. Missing entities are not cached. The cached
+ * instances are detached and shared, callers which change an entity have to load it from the repository instead.
+ *
+ * @param <T> entity type
+ */
+public class EntityCache<T> {
+
+    private final Cache<Long, T> cache;
+
+    public EntityCache(long maximumSize, long expireAfterWriteSeconds) {
+        Preconditions.checkArgument(maximumSize > 0, "maximum size must be positive");
+        Preconditions.checkArgument(expireAfterWriteSeconds > 0, "time to live must be positive");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached entity or loads and caches it. Concurrent misses on the same id load it only once.
+     *
+     * @param id
+     * @param loader
+     * @return
+     * @throws EntityNotFoundException if the loader did not find the entity
+     */
+    public T get(Long id, Loader<T> loader) throws EntityNotFoundException {
+        try {
+            return cache.get(id, () -> loader.load(id));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EntityNotFoundException) {
+                throw (EntityNotFoundException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public EntityCacheStats getStats() {
+        CacheStats stats = cache.stats();
+        return new EntityCacheStats(cache.size(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        T load(Long id) throws EntityNotFoundException;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mytaxi.service.driver;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of the counters of an {@link EntityCache}.
+ */
+@Data
+@AllArgsConstructor
+public class EntityCacheStats {
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * Share of the lookups served from memory, 1 if there were no lookups yet.
+     */
+    private double hitRate;
+
+    private long evictions;
+}
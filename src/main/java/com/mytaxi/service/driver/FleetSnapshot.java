@@ -0,0 +1,563 @@
+package com.mytaxi.service.driver;
+
+import com.mytaxi.dataaccessobject.CarDriverRepository;
+import com.mytaxi.dataaccessobject.DriverRepository;
+import com.mytaxi.domainobject.CarDO;
+import com.mytaxi.domainobject.DriverCarDO;
+import com.mytaxi.domainobject.DriverDO;
+import com.mytaxi.domainvalue.DriverCarAttribute;
+import com.mytaxi.domainvalue.DriverCarAttribute.Association;
+import com.mytaxi.domainvalue.DriverCarFilter;
+import com.mytaxi.domainvalue.DriverLocation;
+import com.mytaxi.domainvalue.GeoCoordinate;
+import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.domainvalue.SeekPage;
+import com.mytaxi.domainvalue.SeekRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Denormalized, read-only copy of the fleet: one compact record per driver holding its status, position and the attributes
+ * of every car it has a {@code driver_car} row for, so driver searches and status lookups need no database round trip.
+ * <p/>
+ * The records sit in an array sorted by driver id behind a volatile reference. Readers take the current snapshot and never
+ * lock; writers copy the array, replace the records they changed and publish the copy, one writer at a time. Writes are
+ * applied by the services right after they wrote the database, positions once per ingested batch. Changes made before the
+ * snapshot is loaded are read from the database, later ones wait until it is published. Like the other in-memory registries
+ * the snapshot is not rolled back with a failed transaction.
+ * <p/>
+ * Searches match the same drivers as {@link DriverCarSpecifications#forDrivers(DriverCarFilter)}: driver attributes on the
+ * driver, car attributes on any of its cars, selected or not, and only drivers having a car at all. The car attributes kept
+ * in {@link CarAttributeColumns} are evaluated there once per search and joined to the cars of the drivers by id.
+ */
+@Component
+@Slf4j
+public class FleetSnapshot {
+
+    private static final Snapshot EMPTY = new Snapshot(new long[0], new DriverRecord[0]);
+
+    private final DriverRepository driverRepository;
+
+    private final CarDriverRepository carDriverRepository;
+
+    private final CarAttributeColumns carAttributeColumns;
+
+    private final boolean enabled;
+
+    private final Object writeLock = new Object();
+
+    private final AtomicLong swaps = new AtomicLong();
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    private volatile boolean loaded;
+
+    public FleetSnapshot(final DriverRepository driverRepository, final CarDriverRepository carDriverRepository,
+                         final CarAttributeColumns carAttributeColumns, @Value("${mytaxi.fleet-snapshot.enabled:false}") boolean enabled) {
+        this.driverRepository = driverRepository;
+        this.carDriverRepository = carDriverRepository;
+        this.carAttributeColumns = carAttributeColumns;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Builds the snapshot from the database, writers wait until it is published so none of their changes get lost.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            Map<Long, List<CarRecord>> carsByDriverId = new HashMap<>();
+            for (DriverCarDO driverCarDO : carDriverRepository.findAllWithDriverAndCar()) {
+                carsByDriverId.computeIfAbsent(driverCarDO.getDriverDO().getId(), id -> new ArrayList<>())
+                        .add(new CarRecord(driverCarDO.getCarDO(), Boolean.TRUE.equals(driverCarDO.getSelected())));
+            }
+
+            List<DriverRecord> records = new ArrayList<>();
+            for (DriverDO driverDO : driverRepository.findAll()) {
+                List<CarRecord> cars = carsByDriverId.get(driverDO.getId());
+                records.add(new DriverRecord(driverDO, cars == null ? new CarRecord[0] : cars.toArray(new CarRecord[0])));
+            }
+            records.sort((first, second) -> Long.compare(first.id, second.id));
+
+            long[] ids = new long[records.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = records.get(i).id;
+            }
+            publish(new Snapshot(ids, records.toArray(new DriverRecord[0])));
+            loaded = true;
+        }
+        log.info("Loaded a fleet snapshot of {} drivers", size());
+    }
+
+    /**
+     * Whether reads may be served from the snapshot.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return snapshot.ids.length;
+    }
+
+    /**
+     * Number of snapshots published so far, every write publishes one.
+     */
+    public long getSwaps() {
+        return swaps.get();
+    }
+
+    /**
+     * Adds a driver or takes over its attributes, status and position, keeping its cars.
+     *
+     * @param driverDO
+     */
+    public void updateDriver(DriverDO driverDO) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!loaded) {
+                return;
+            }
+            Snapshot current = snapshot;
+            int index = Arrays.binarySearch(current.ids, driverDO.getId());
+            if (index >= 0) {
+                DriverRecord[] records = current.records.clone();
+                records[index] = new DriverRecord(driverDO, records[index].cars);
+                publish(new Snapshot(current.ids, records));
+                return;
+            }
+
+            int insertAt = -index - 1;
+            int size = current.ids.length;
+            long[] ids = new long[size + 1];
+            DriverRecord[] records = new DriverRecord[size + 1];
+            System.arraycopy(current.ids, 0, ids, 0, insertAt);
+            System.arraycopy(current.records, 0, records, 0, insertAt);
+            ids[insertAt] = driverDO.getId();
+            records[insertAt] = new DriverRecord(driverDO, new CarRecord[0]);
+            System.arraycopy(current.ids, insertAt, ids, insertAt + 1, size - insertAt);
+            System.arraycopy(current.records, insertAt, records, insertAt + 1, size - insertAt);
+            publish(new Snapshot(ids, records));
+        }
+    }
+
+    /**
+     * Moves the drivers of a written batch of locations, with a single copy for the whole batch.
+     *
+     * @param locations
+     */
+    public void move(Collection<DriverLocation> locations) {
+        if (!enabled || locations.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!loaded) {
+                return;
+            }
+            Snapshot current = snapshot;
+            DriverRecord[] records = null;
+            for (DriverLocation location : locations) {
+                int index = Arrays.binarySearch(current.ids, location.getDriverId());
+                if (index < 0) {
+                    continue;
+                }
+                if (records == null) {
+                    records = current.records.clone();
+                }
+                records[index] = records[index].movedTo(location.getCoordinate());
+            }
+            if (records != null) {
+                publish(new Snapshot(current.ids, records));
+            }
+        }
+    }
+
+    /**
+     * Adds a car to a driver or updates whether the driver has it selected.
+     *
+     * @param driverId
+     * @param carDO
+     * @param selected
+     */
+    public void updateDriverCar(long driverId, CarDO carDO, boolean selected) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!loaded) {
+                return;
+            }
+            Snapshot current = snapshot;
+            int index = Arrays.binarySearch(current.ids, driverId);
+            if (index < 0) {
+                return;
+            }
+            DriverRecord record = current.records[index];
+            int carIndex = record.indexOfCar(carDO.getId());
+            CarRecord[] cars;
+            if (carIndex < 0) {
+                cars = Arrays.copyOf(record.cars, record.cars.length + 1);
+                carIndex = record.cars.length;
+            } else {
+                cars = record.cars.clone();
+            }
+            cars[carIndex] = new CarRecord(carDO, selected);
+
+            DriverRecord[] records = current.records.clone();
+            records[index] = record.withCars(cars);
+            publish(new Snapshot(current.ids, records));
+        }
+    }
+
+    /**
+     * Takes over the attributes of a car into every driver having it.
+     *
+     * @param carDO
+     */
+    public void updateCar(CarDO carDO) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!loaded) {
+                return;
+            }
+            Snapshot current = snapshot;
+            DriverRecord[] records = null;
+            for (int index = 0; index < current.records.length; index++) {
+                DriverRecord record = current.records[index];
+                int carIndex = record.indexOfCar(carDO.getId());
+                if (carIndex < 0) {
+                    continue;
+                }
+                if (records == null) {
+                    records = current.records.clone();
+                }
+                CarRecord[] cars = record.cars.clone();
+                cars[carIndex] = new CarRecord(carDO, cars[carIndex].selected);
+                records[index] = record.withCars(cars);
+            }
+            if (records != null) {
+                publish(new Snapshot(current.ids, records));
+            }
+        }
+    }
+
+    /**
+     * @param driverIds
+     * @return the known drivers of the given ids in id order, unknown ids are skipped
+     */
+    public List<DriverDO> find(Collection<Long> driverIds) {
+        Snapshot current = snapshot;
+        long[] sortedIds = driverIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        List<DriverDO> drivers = new ArrayList<>(sortedIds.length);
+        for (long driverId : sortedIds) {
+            int index = Arrays.binarySearch(current.ids, driverId);
+            if (index >= 0) {
+                drivers.add(current.records[index].toDriverDO());
+            }
+        }
+        return drivers;
+    }
+
+    /**
+     * Drivers matching the filter in id order, a sort of the pageable is ignored.
+     *
+     * @param filter
+     * @param pageable
+     */
+    public Page<DriverDO> findDrivers(DriverCarFilter filter, Pageable pageable) {
+        Snapshot current = snapshot;
+        Matcher matcher = new Matcher(filter, carAttributeColumns);
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int size = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+
+        List<DriverDO> content = new ArrayList<>(Math.min(size, 64));
+        long total = 0;
+        for (DriverRecord record : current.records) {
+            if (matcher.matches(record)) {
+                if (total >= offset && content.size() < size) {
+                    content.add(record.toDriverDO());
+                }
+                total++;
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Drivers matching the filter after the id of the request.
+     *
+     * @param filter
+     * @param seekRequest
+     */
+    public SeekPage<DriverDO> findDrivers(DriverCarFilter filter, SeekRequest seekRequest) {
+        Snapshot current = snapshot;
+        Matcher matcher = new Matcher(filter, carAttributeColumns);
+        int limit = seekRequest.getSize() + 1;
+
+        int start = 0;
+        if (seekRequest.getAfterId() != null) {
+            int index = Arrays.binarySearch(current.ids, seekRequest.getAfterId());
+            start = index >= 0 ? index + 1 : -index - 1;
+        }
+
+        List<DriverDO> drivers = new ArrayList<>(Math.min(limit, 64));
+        for (int index = start; index < current.records.length && drivers.size() < limit; index++) {
+            if (matcher.matches(current.records[index])) {
+                drivers.add(current.records[index].toDriverDO());
+            }
+        }
+
+        Long total = null;
+        if (seekRequest.isIncludeTotal()) {
+            long count = 0;
+            for (DriverRecord record : current.records) {
+                if (matcher.matches(record)) {
+                    count++;
+                }
+            }
+            total = count;
+        }
+        return SeekPage.of(drivers, seekRequest.getSize(), DriverDO::getId, total);
+    }
+
+    private void publish(Snapshot next) {
+        snapshot = next;
+        swaps.incrementAndGet();
+    }
+
+    private static final class Snapshot {
+
+        private final long[] ids;
+
+        private final DriverRecord[] records;
+
+        private Snapshot(long[] ids, DriverRecord[] records) {
+            this.ids = ids;
+            this.records = records;
+        }
+    }
+
+    private static final class DriverRecord {
+
+        private final long id;
+
+        private final String username;
+
+        private final String password;
+
+        private final boolean deleted;
+
+        private final OnlineStatus onlineStatus;
+
+        // NaN while the driver has no position
+        private final double latitude;
+
+        private final double longitude;
+
+        private final CarRecord[] cars;
+
+        private DriverRecord(DriverDO driverDO, CarRecord[] cars) {
+            this(driverDO.getId(), driverDO.getUsername(), driverDO.getPassword(), Boolean.TRUE.equals(driverDO.getDeleted()),
+                    driverDO.getOnlineStatus(), driverDO.getCoordinate(), cars);
+        }
+
+        private DriverRecord(long id, String username, String password, boolean deleted, OnlineStatus onlineStatus,
+                             GeoCoordinate coordinate, CarRecord[] cars) {
+            this.id = id;
+            this.username = username;
+            this.password = password;
+            this.deleted = deleted;
+            this.onlineStatus = onlineStatus;
+            this.latitude = coordinate == null ? Double.NaN : coordinate.getLatitude();
+            this.longitude = coordinate == null ? Double.NaN : coordinate.getLongitude();
+            this.cars = cars;
+        }
+
+        private GeoCoordinate coordinate() {
+            return Double.isNaN(latitude) ? null : new GeoCoordinate(latitude, longitude);
+        }
+
+        private DriverRecord movedTo(GeoCoordinate coordinate) {
+            return new DriverRecord(id, username, password, deleted, onlineStatus, coordinate, cars);
+        }
+
+        private DriverRecord withCars(CarRecord[] cars) {
+            return new DriverRecord(id, username, password, deleted, onlineStatus, coordinate(), cars);
+        }
+
+        private int indexOfCar(long carId) {
+            for (int i = 0; i < cars.length; i++) {
+                if (cars[i].id == carId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Object value(DriverCarAttribute attribute) {
+            switch (attribute) {
+                case USERNAME:
+                    return username;
+                case ONLINE_STATUS:
+                    return onlineStatus;
+                default:
+                    throw new IllegalArgumentException("not a driver attribute: " + attribute);
+            }
+        }
+
+        private DriverDO toDriverDO() {
+            DriverDO driverDO = new DriverDO(username, password);
+            driverDO.setId(id);
+            driverDO.setDeleted(deleted);
+            driverDO.setOnlineStatus(onlineStatus);
+            GeoCoordinate coordinate = coordinate();
+            if (coordinate != null) {
+                driverDO.setCoordinate(coordinate);
+            }
+            return driverDO;
+        }
+    }
+
+    private static final class CarRecord {
+
+        private final long id;
+
+        private final String licensePlate;
+
+        private final Boolean convertible;
+
+        private final Float rating;
+
+        private final String engineType;
+
+        private final String manufacturer;
+
+        private final boolean selected;
+
+        private CarRecord(CarDO carDO, boolean selected) {
+            this.id = carDO.getId();
+            this.licensePlate = carDO.getLicensePlate();
+            this.convertible = carDO.getConvertible();
+            this.rating = carDO.getRating();
+            this.engineType = carDO.getEngineType();
+            this.manufacturer = carDO.getManufacturer();
+            this.selected = selected;
+        }
+
+        private Object value(DriverCarAttribute attribute) {
+            switch (attribute) {
+                case LICENSE_PLATE:
+                    return licensePlate;
+                case CONVERTIBLE:
+                    return convertible;
+                case RATING:
+                    return rating;
+                case ENGINE_TYPE:
+                    return engineType;
+                case MANUFACTURER:
+                    return manufacturer;
+                default:
+                    throw new IllegalArgumentException("not a car attribute: " + attribute);
+            }
+        }
+    }
+
+    /**
+     * A filter split by association once per search, contains attributes compare like {@code LIKE '%value%'}. Columnar car
+     * attributes are matched by the bitset of the columns, only the others per car record.
+     */
+    private static final class Matcher {
+
+        private final DriverCarAttribute[] driverAttributes;
+
+        private final Object[] driverValues;
+
+        private final DriverCarAttribute[] carAttributes;
+
+        private final Object[] carValues;
+
+        // null if no columnar attribute is filtered on or the columns are not loaded
+        private final CarAttributeColumns.Matches columnMatches;
+
+        private Matcher(DriverCarFilter filter, CarAttributeColumns carAttributeColumns) {
+            boolean columnar = carAttributeColumns.isLoaded()
+                    && filter.getAttributes().stream().anyMatch(CarAttributeColumns::isColumnar);
+            this.driverAttributes = attributes(filter, Association.DRIVER);
+            this.driverValues = values(filter, driverAttributes);
+            this.carAttributes = Arrays.stream(attributes(filter, Association.CAR))
+                    .filter(attribute -> !columnar || !CarAttributeColumns.isColumnar(attribute))
+                    .toArray(DriverCarAttribute[]::new);
+            this.carValues = values(filter, carAttributes);
+            this.columnMatches = columnar ? carAttributeColumns.match(filter) : null;
+        }
+
+        private boolean matches(DriverRecord record) {
+            for (int i = 0; i < driverAttributes.length; i++) {
+                if (!matches(driverAttributes[i], record.value(driverAttributes[i]), driverValues[i])) {
+                    return false;
+                }
+            }
+            for (CarRecord car : record.cars) {
+                if (matches(car)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matches(CarRecord car) {
+            if (columnMatches != null && !columnMatches.contains(car.id)) {
+                return false;
+            }
+            for (int i = 0; i < carAttributes.length; i++) {
+                if (!matches(carAttributes[i], car.value(carAttributes[i]), carValues[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean matches(DriverCarAttribute attribute, Object actual, Object expected) {
+            if (attribute.isContains()) {
+                return actual != null && ((String) actual).contains((String) expected);
+            }
+            return Objects.equals(actual, expected);
+        }
+
+        private static DriverCarAttribute[] attributes(DriverCarFilter filter, Association association) {
+            return filter.getAttributes().stream()
+                    .filter(attribute -> attribute.getAssociation() == association)
+                    .toArray(DriverCarAttribute[]::new);
+        }
+
+        private static Object[] values(DriverCarFilter filter, DriverCarAttribute[] attributes) {
+            Object[] values = new Object[attributes.length];
+            for (int i = 0; i < attributes.length; i++) {
+                values[i] = filter.get(attributes[i]);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timer wheel tracking one heartbeat deadline per driver.
+ * <p/>
+ * Time is cut into ticks of {@code tickMs}, a deadline lands in the slot {@code tick % wheelSize}. A heartbeat only replaces
+ * the deadline and drops the driver into its new slot, the entry left in the old slot is skipped and cleaned up when that slot
+ * is visited. {@link #expire()} visits one slot per elapsed tick, so expiring costs the number of drivers sharing a slot
+ * instead of a scan over every driver.
+ */
+public class HeartbeatTimerWheel {
+
+    private final long tickMs;
+
+    private final long timeoutTicks;
+
+    private final LongSupplier clock;
+
+    private final List<Set<Long>> slots;
+
+    private final ConcurrentMap<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    private long processedTick;
+
+    /**
+     * @param timeoutMs time after the last heartbeat until a driver expires, rounded up to full ticks
+     * @param tickMs    resolution of the wheel
+     * @param wheelSize number of slots
+     * @param clock     current time in milliseconds
+     */
+    public HeartbeatTimerWheel(long timeoutMs, long tickMs, int wheelSize, LongSupplier clock) {
+        Preconditions.checkArgument(tickMs > 0, "tick must be positive");
+        Preconditions.checkArgument(timeoutMs >= tickMs, "timeout must be at least one tick");
+        Preconditions.checkArgument(wheelSize > 0, "wheel size must be positive");
+        this.tickMs = tickMs;
+        this.timeoutTicks = (timeoutMs + tickMs - 1) / tickMs;
+        this.clock = clock;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+        this.processedTick = currentTick();
+    }
+
+    /**
+     * Starts or restarts the timeout of a driver.
+     *
+     * @param driverId
+     */
+    public void touch(long driverId) {
+        long deadline = currentTick() + timeoutTicks;
+        deadlines.put(driverId, deadline);
+        slot(deadline).add(driverId);
+    }
+
+    /**
+     * Stops tracking a driver, it will not expire anymore.
+     *
+     * @param driverId
+     */
+    public void cancel(long driverId) {
+        deadlines.remove(driverId);
+    }
+
+    public boolean isScheduled(long driverId) {
+        return deadlines.containsKey(driverId);
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Visits the slots of all ticks elapsed since the last call.
+     *
+     * @return ids of the drivers whose deadline passed, they are no longer tracked
+     */
+    public synchronized List<Long> expire() {
+        long now = currentTick();
+        if (processedTick >= now) {
+            return Collections.emptyList();
+        }
+        // after a pause longer than one round every slot is due, visiting each once is enough
+        long firstTick = Math.max(processedTick + 1, now - slots.size() + 1);
+        List<Long> expired = new ArrayList<>();
+        for (long tick = firstTick; tick <= now; tick++) {
+            visit(tick, now, expired);
+        }
+        processedTick = now;
+        return expired;
+    }
+
+    private void visit(long tick, long now, List<Long> expired) {
+        Set<Long> slot = slot(tick);
+        for (Long driverId : slot) {
+            Long deadline = deadlines.get(driverId);
+            if (deadline != null && deadline <= now) {
+                if (deadlines.remove(driverId, deadline)) {
+                    expired.add(driverId);
+                }
+            } else if (deadline != null && slot(deadline) == slot) {
+                // due in a later round of the wheel
+                continue;
+            }
+            slot.remove(driverId);
+            // a concurrent heartbeat may have moved the driver back into this slot while it was removed
+            Long current = deadlines.get(driverId);
+            if (current != null && slot(current) == slot) {
+                slot.add(driverId);
+            }
+        }
+    }
+
+    private Set<Long> slot(long tick) {
+        return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+    }
+
+    private long currentTick() {
+        return clock.getAsLong() / tickMs;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mytaxi.service.driver;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of the counters of {@link DriverLocationIngestion}.
+ */
+@Data
+@AllArgsConstructor
+public class LocationIngestionStats {
+
+    private int pending;
+
+    private int capacity;
+
+    private long accepted;
+
+    private long coalesced;
+
+    private long rejected;
+
+    private long written;
+
+    private long stale;
+
+    private long unknownDrivers;
+
+    private long failedFlushes;
+
+    private long failedChunks;
+}
@@ -0,0 +1,113 @@
+package com.mytaxi.service.driver;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs an operation which failed because a versioned entity was changed concurrently.
+ * <p/>
+ * Every attempt has to read the entities it writes again. Between two attempts the thread sleeps for a random time of up
+ * to {@code base-backoff-ms * 2^(attempt - 1)}, capped at {@code max-backoff-ms}, so competing requests spread out instead
+ * of colliding again.
+ */
+@Component
+@Slf4j
+public class OptimisticLockRetryPolicy {
+
+    private final int maxAttempts;
+
+    private final long baseBackoffMs;
+
+    private final long maxBackoffMs;
+
+    private final ConcurrentMap<String, Counters> countersByOperation = new ConcurrentHashMap<>();
+
+    public OptimisticLockRetryPolicy(@Value("${mytaxi.optimistic-retry.max-attempts:5}") int maxAttempts,
+                                     @Value("${mytaxi.optimistic-retry.base-backoff-ms:5}") long baseBackoffMs,
+                                     @Value("${mytaxi.optimistic-retry.max-backoff-ms:100}") long maxBackoffMs) {
+        Preconditions.checkArgument(maxAttempts > 0, "max attempts must be positive");
+        Preconditions.checkArgument(baseBackoffMs >= 0 && maxBackoffMs >= baseBackoffMs, "backoff must be 0 <= base <= max");
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * @param operation name the counters are kept under
+     * @param attempt   reads and writes the versioned entities
+     * @return the result of the first attempt without a conflict
+     * @throws OptimisticLockingFailureException if every attempt ran into a conflict
+     */
+    public <T> T execute(String operation, Supplier<T> attempt) {
+        Counters counters = countersByOperation.computeIfAbsent(operation, name -> new Counters());
+        counters.operations.incrementAndGet();
+
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException e) {
+                counters.conflicts.incrementAndGet();
+                if (attemptNumber >= maxAttempts) {
+                    counters.exhausted.incrementAndGet();
+                    log.warn("Giving up {} after {} conflicting attempts", operation, attemptNumber);
+                    throw e;
+                }
+                counters.retries.incrementAndGet();
+                log.debug("Retrying {} after conflict number {}", operation, attemptNumber);
+                backoff(attemptNumber, e);
+            }
+        }
+    }
+
+    /**
+     * @return counters by operation name
+     */
+    public Map<String, OptimisticRetryStats> getStats() {
+        Map<String, OptimisticRetryStats> stats = new TreeMap<>();
+        countersByOperation.forEach((operation, counters) -> stats.put(operation, counters.snapshot()));
+        return Collections.unmodifiableMap(stats);
+    }
+
+    private void backoff(int attemptNumber, OptimisticLockingFailureException conflict) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attemptNumber - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong operations = new AtomicLong();
+
+        private final AtomicLong conflicts = new AtomicLong();
+
+        private final AtomicLong retries = new AtomicLong();
+
+        private final AtomicLong exhausted = new AtomicLong();
+
+        private OptimisticRetryStats snapshot() {
+            long operationCount = operations.get();
+            long conflictCount = conflicts.get();
+            return new OptimisticRetryStats(operationCount, conflictCount, retries.get(), exhausted.get(),
+                    operationCount == 0 ? 0 : (double) conflictCount / operationCount);
+        }
+    }
+}
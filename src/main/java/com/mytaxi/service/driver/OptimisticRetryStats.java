@@ -0,0 +1,25 @@
+package com.mytaxi.service.driver;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of the counters {@link OptimisticLockRetryPolicy} keeps per operation.
+ */
+@Data
+@AllArgsConstructor
+public class OptimisticRetryStats {
+
+    private long operations;
+
+    private long conflicts;
+
+    private long retries;
+
+    private long exhausted;
+
+    /**
+     * Conflicts per operation, above 1 if operations conflict more than once.
+     */
+    private double conflictRate;
+}
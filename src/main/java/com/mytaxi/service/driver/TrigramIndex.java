@@ -0,0 +1,113 @@
+package com.mytaxi.service.driver;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongConsumer;
+
+/**
+ * In-memory substring index over one string attribute of an entity.
+ * <p/>
+ * Every value is split into its trigrams, the three character windows, and the entity id is added to the posting set of
+ * each of them. A substring of at least three characters can only occur in values having all of its trigrams, so only the
+ * smallest of their posting sets has to be checked. Matching is case sensitive like {@code LIKE} on the database.
+ */
+public class TrigramIndex {
+
+    private static final int GRAM = 3;
+
+    private final ConcurrentMap<Long, String> values = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes or re-indexes the value of an entity.
+     *
+     * @param id
+     * @param value null removes the entity
+     */
+    public void put(long id, String value) {
+        if (value == null) {
+            remove(id);
+            return;
+        }
+        values.compute(id, (key, previous) -> {
+            if (previous != null && !previous.equals(value)) {
+                forEachTrigram(previous, trigram -> removePosting(trigram, id));
+            }
+            if (previous == null || !previous.equals(value)) {
+                forEachTrigram(value, trigram -> postings.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(id));
+            }
+            return value;
+        });
+    }
+
+    public void remove(long id) {
+        values.computeIfPresent(id, (key, previous) -> {
+            forEachTrigram(previous, trigram -> removePosting(trigram, id));
+            return null;
+        });
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Finds the ids of the entities whose value contains the query.
+     *
+     * @param query
+     * @param limit maximum number of ids worth returning
+     * @return matching ids or null if there are more than {@code limit}
+     */
+    public Set<Long> find(String query, int limit) {
+        Iterable<Long> candidates = values.keySet();
+        if (query.length() >= GRAM) {
+            Set<Long> smallest = null;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                Set<Long> posting = postings.get(trigram(query, i));
+                if (posting == null) {
+                    return Collections.emptySet();
+                }
+                if (smallest == null || posting.size() < smallest.size()) {
+                    smallest = posting;
+                }
+            }
+            candidates = smallest;
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (Long id : candidates) {
+            String value = values.get(id);
+            if (value != null && value.contains(query)) {
+                if (ids.size() == limit) {
+                    return null;
+                }
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private void removePosting(long trigram, long id) {
+        postings.computeIfPresent(trigram, (key, posting) -> {
+            posting.remove(id);
+            return posting.isEmpty() ? null : posting;
+        });
+    }
+
+    private static void forEachTrigram(String value, LongConsumer consumer) {
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            consumer.accept(trigram(value, i));
+        }
+    }
+
+    /**
+     * Packs the three chars at {@code offset} into one long, so no substring has to be allocated.
+     */
+    private static long trigram(String value, int offset) {
+        return ((long) value.charAt(offset) << 32) | ((long) value.charAt(offset + 1) << 16) | value.charAt(offset + 2);
+    }
+}
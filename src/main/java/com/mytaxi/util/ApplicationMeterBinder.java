@@ -0,0 +1,161 @@
+package com.mytaxi.util;
+
+import com.mytaxi.dataaccessobject.CacheRegionStats;
+import com.mytaxi.dataaccessobject.SecondLevelCacheMetrics;
+import com.mytaxi.domainvalue.OnlineStatus;
+import com.mytaxi.service.driver.CarCache;
+import com.mytaxi.service.driver.DriverCache;
+import com.mytaxi.service.driver.DriverLocationIngestion;
+import com.mytaxi.service.driver.DriverPresenceRegistry;
+import com.mytaxi.service.driver.EntityCache;
+import com.mytaxi.service.driver.FleetSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the counters the components already keep for themselves: the location ingestion queue, the entity caches, the
+ * hibernate second level cache regions, the online drivers, the fleet snapshot and the request log queue. The values are read when the metrics
+ * are scraped.
+ */
+@Component
+public class ApplicationMeterBinder implements MeterBinder
+{
+
+    private final DriverLocationIngestion driverLocationIngestion;
+
+    private final CarCache carCache;
+
+    private final DriverCache driverCache;
+
+    private final SecondLevelCacheMetrics secondLevelCacheMetrics;
+
+    private final DriverPresenceRegistry driverPresenceRegistry;
+
+    private final RequestLogWriter requestLogWriter;
+
+    private final FleetSnapshot fleetSnapshot;
+
+
+    public ApplicationMeterBinder(
+        final DriverLocationIngestion driverLocationIngestion, final CarCache carCache, final DriverCache driverCache,
+        final SecondLevelCacheMetrics secondLevelCacheMetrics, final DriverPresenceRegistry driverPresenceRegistry,
+        final RequestLogWriter requestLogWriter, final FleetSnapshot fleetSnapshot)
+    {
+        this.driverLocationIngestion = driverLocationIngestion;
+        this.carCache = carCache;
+        this.driverCache = driverCache;
+        this.secondLevelCacheMetrics = secondLevelCacheMetrics;
+        this.driverPresenceRegistry = driverPresenceRegistry;
+        this.requestLogWriter = requestLogWriter;
+        this.fleetSnapshot = fleetSnapshot;
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        bindLocationIngestion(registry);
+        bindEntityCache(registry, "car", carCache);
+        bindEntityCache(registry, "driver", driverCache);
+        for (String region : secondLevelCacheMetrics.getStats().keySet())
+        {
+            bindCacheRegion(registry, region);
+        }
+        for (OnlineStatus status : OnlineStatus.values())
+        {
+            Gauge.builder("mytaxi.drivers", driverPresenceRegistry, presence -> presence.driverIds(status).size())
+                .description("Drivers by online status")
+                .tag("status", status.name())
+                .register(registry);
+        }
+        Gauge.builder("mytaxi.request.log.queued", requestLogWriter, RequestLogWriter::getQueued)
+            .description("Request log entries waiting for the writer thread")
+            .register(registry);
+        FunctionCounter.builder("mytaxi.request.log.dropped", requestLogWriter, RequestLogWriter::getDropped)
+            .description("Request log entries dropped because the queue was full")
+            .register(registry);
+        Gauge.builder("mytaxi.fleet.snapshot.drivers", fleetSnapshot, FleetSnapshot::size)
+            .description("Drivers in the in-memory fleet snapshot")
+            .register(registry);
+        FunctionCounter.builder("mytaxi.fleet.snapshot.swaps", fleetSnapshot, FleetSnapshot::getSwaps)
+            .description("Fleet snapshots published by writes")
+            .register(registry);
+    }
+
+
+    private void bindLocationIngestion(MeterRegistry registry)
+    {
+        Gauge.builder("mytaxi.location.ingestion.pending", driverLocationIngestion, ingestion -> ingestion.getStats().getPending())
+            .description("Drivers with a queued location update")
+            .register(registry);
+        Gauge.builder("mytaxi.location.ingestion.capacity", driverLocationIngestion, ingestion -> ingestion.getStats().getCapacity())
+            .description("Drivers which may have a queued location update")
+            .register(registry);
+        locationCounter(registry, "accepted", ingestion -> ingestion.getStats().getAccepted());
+        locationCounter(registry, "coalesced", ingestion -> ingestion.getStats().getCoalesced());
+        locationCounter(registry, "rejected", ingestion -> ingestion.getStats().getRejected());
+        locationCounter(registry, "written", ingestion -> ingestion.getStats().getWritten());
+        locationCounter(registry, "stale", ingestion -> ingestion.getStats().getStale());
+        locationCounter(registry, "unknown-driver", ingestion -> ingestion.getStats().getUnknownDrivers());
+        FunctionCounter.builder("mytaxi.location.ingestion.failed.flushes", driverLocationIngestion,
+            ingestion -> ingestion.getStats().getFailedFlushes())
+            .register(registry);
+        FunctionCounter.builder("mytaxi.location.ingestion.failed.chunks", driverLocationIngestion,
+            ingestion -> ingestion.getStats().getFailedChunks())
+            .register(registry);
+    }
+
+
+    private void locationCounter(MeterRegistry registry, String outcome, ToDoubleFunction<DriverLocationIngestion> count)
+    {
+        FunctionCounter.builder("mytaxi.location.ingestion.updates", driverLocationIngestion, count)
+            .description("Location updates by outcome")
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+
+    private static void bindEntityCache(MeterRegistry registry, String name, EntityCache<?> cache)
+    {
+        Gauge.builder("mytaxi.entity.cache.size", cache, entityCache -> entityCache.getStats().getSize())
+            .tag("cache", name)
+            .register(registry);
+        FunctionCounter.builder("mytaxi.entity.cache.requests", cache, entityCache -> entityCache.getStats().getHits())
+            .tag("cache", name)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("mytaxi.entity.cache.requests", cache, entityCache -> entityCache.getStats().getMisses())
+            .tag("cache", name)
+            .tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("mytaxi.entity.cache.evictions", cache, entityCache -> entityCache.getStats().getEvictions())
+            .tag("cache", name)
+            .register(registry);
+    }
+
+
+    private void bindCacheRegion(MeterRegistry registry, String region)
+    {
+        regionCounter(registry, region, "hit", CacheRegionStats::getHits);
+        regionCounter(registry, region, "miss", CacheRegionStats::getMisses);
+        regionCounter(registry, region, "put", CacheRegionStats::getPuts);
+    }
+
+
+    private void regionCounter(MeterRegistry registry, String region, String result, ToDoubleFunction<CacheRegionStats> count)
+    {
+        FunctionCounter.builder("mytaxi.second.level.cache.requests", secondLevelCacheMetrics,
+            metrics -> {
+                CacheRegionStats stats = metrics.getStats().get(region);
+                return stats == null ? 0 : count.applyAsDouble(stats);
+            })
+            .tag("region", region)
+            .tag("result", result)
+            .register(registry);
+    }
+}
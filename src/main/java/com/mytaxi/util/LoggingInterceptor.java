@@ -1,35 +1,74 @@
 package com.mytaxi.util;
 
+import com.google.common.base.Preconditions;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.juli.logging.Log;
-import org.apache.juli.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs requests through the {@link RequestLogWriter}, off the request thread.
+ * <p/>
+ * Failed requests are always logged. Successful requests are sampled at {@code success-sample-rate}. Paths matching
+ * {@code exclude-path-patterns}, like the swagger assets, are never logged.
+ */
+@Component
 public class LoggingInterceptor extends HandlerInterceptorAdapter
 {
 
-    private static final Log LOG = LogFactory.getLog(LoggingInterceptor.class);
+    private static final String START_NANOS = LoggingInterceptor.class.getName() + ".START_NANOS";
+
+    private final RequestLogWriter requestLogWriter;
+
+    private final double successSampleRate;
+
+    private final String[] excludePathPatterns;
+
+
+    public LoggingInterceptor(
+        final RequestLogWriter requestLogWriter,
+        @Value("${mytaxi.request-log.success-sample-rate:1.0}") double successSampleRate,
+        @Value("${mytaxi.request-log.exclude-path-patterns:}") String[] excludePathPatterns)
+    {
+        Preconditions.checkArgument(successSampleRate >= 0 && successSampleRate <= 1, "success sample rate must be within [0, 1]");
+        this.requestLogWriter = requestLogWriter;
+        this.successSampleRate = successSampleRate;
+        this.excludePathPatterns = excludePathPatterns;
+    }
+
+
+    public String[] getExcludePathPatterns()
+    {
+        return excludePathPatterns.clone();
+    }
 
 
     @Override
-    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
     {
-        StringBuilder logMessage = new StringBuilder();
-        logMessage.append("method: ").append(request.getMethod()).append("\t");
-        logMessage.append("uri: ").append(request.getRequestURI()).append("\t");
-        logMessage.append("status: ").append(response.getStatus()).append("\t");
-        logMessage.append("remoteAddress: ").append(request.getRemoteAddr()).append("\t");
+        request.setAttribute(START_NANOS, System.nanoTime());
+        return true;
+    }
 
-        if (ex != null)
-        {
-            LoggingInterceptor.LOG.error(logMessage.toString(), ex);
-        }
-        else
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex)
+    {
+        int status = response.getStatus();
+        boolean error = ex != null || status >= 400;
+        if (!error && (successSampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= successSampleRate))
         {
-            LoggingInterceptor.LOG.info(logMessage.toString());
+            return;
         }
 
+        Object startNanos = request.getAttribute(START_NANOS);
+        long durationMicros = startNanos instanceof Long ? TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - (Long) startNanos) : -1;
+        requestLogWriter.submit(new RequestLogEntry(request.getMethod(), request.getRequestURI(), status, durationMicros,
+            request.getRemoteAddr(), ex));
     }
 
 }
@@ -0,0 +1,92 @@
+package com.mytaxi.util;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stops the application from starting with the {@code production} profile when a setting only meant for debugging is
+ * active, like printing every SQL statement, or when JDBC batching is switched off.
+ */
+@Component
+@Profile(ProductionSettingsCheck.PRODUCTION_PROFILE)
+public class ProductionSettingsCheck
+{
+
+    public static final String PRODUCTION_PROFILE = "production";
+
+    private static final List<String> DEBUG_FLAGS = Arrays.asList(
+        "debug",
+        "trace",
+        "spring.jpa.show-sql",
+        "spring.jpa.properties.hibernate.format_sql",
+        "spring.jpa.properties.hibernate.use_sql_comments",
+        "spring.h2.console.enabled");
+
+    private static final List<String> SQL_LOGGERS = Arrays.asList(
+        "logging.level.root",
+        "logging.level.org.hibernate.SQL",
+        "logging.level.org.hibernate.type",
+        "logging.level.org.hibernate.type.descriptor.sql",
+        "logging.level.org.springframework.jdbc.core");
+
+    private final Environment environment;
+
+
+    public ProductionSettingsCheck(final Environment environment)
+    {
+        this.environment = environment;
+    }
+
+
+    @PostConstruct
+    public void check()
+    {
+        List<String> violations = violations(environment);
+        if (!violations.isEmpty())
+        {
+            throw new IllegalStateException("The " + PRODUCTION_PROFILE + " profile must not start with " + String.join(", ", violations));
+        }
+    }
+
+
+    static List<String> violations(PropertyResolver environment)
+    {
+        List<String> violations = new ArrayList<>();
+        for (String flag : DEBUG_FLAGS)
+        {
+            if (environment.getProperty(flag, Boolean.class, false))
+            {
+                violations.add(flag + "=true");
+            }
+        }
+        for (String logger : SQL_LOGGERS)
+        {
+            String level = environment.getProperty(logger, "");
+            if ("DEBUG".equalsIgnoreCase(level) || "TRACE".equalsIgnoreCase(level) || "ALL".equalsIgnoreCase(level))
+            {
+                violations.add(logger + "=" + level);
+            }
+        }
+
+        String ddlAuto = environment.getProperty("spring.jpa.hibernate.ddl-auto", "");
+        String url = environment.getProperty("spring.datasource.url", "");
+        if ((ddlAuto.startsWith("create") || "update".equals(ddlAuto)) && !url.isEmpty() && !url.startsWith("jdbc:h2:mem:"))
+        {
+            violations.add("spring.jpa.hibernate.ddl-auto=" + ddlAuto + " on " + url);
+        }
+
+        int batchSize = environment.getProperty("spring.jpa.properties.hibernate.jdbc.batch_size", Integer.class, 0);
+        if (batchSize < 2)
+        {
+            violations.add("spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        }
+        return violations;
+    }
+}
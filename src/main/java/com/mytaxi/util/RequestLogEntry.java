@@ -0,0 +1,37 @@
+package com.mytaxi.util;
+
+/**
+ * Fields of one logged request, captured on the request thread and formatted by the {@link RequestLogWriter}.
+ */
+final class RequestLogEntry
+{
+
+    final String method;
+
+    final String uri;
+
+    final int status;
+
+    final long durationMicros;
+
+    final String remoteAddress;
+
+    final Exception exception;
+
+
+    RequestLogEntry(String method, String uri, int status, long durationMicros, String remoteAddress, Exception exception)
+    {
+        this.method = method;
+        this.uri = uri;
+        this.status = status;
+        this.durationMicros = durationMicros;
+        this.remoteAddress = remoteAddress;
+        this.exception = exception;
+    }
+
+
+    boolean isError()
+    {
+        return exception != null || status >= 400;
+    }
+}
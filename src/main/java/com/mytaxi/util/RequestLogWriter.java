@@ -0,0 +1,149 @@
+package com.mytaxi.util;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes request log lines on a background thread.
+ * <p/>
+ * Request threads only enqueue a {@link RequestLogEntry}. The writer thread formats the entries as {@code key=value} pairs
+ * into one reused buffer and logs them. When {@code queue-size} entries are waiting, further entries are dropped and counted
+ * instead of slowing the requests down.
+ */
+@Component
+public class RequestLogWriter
+{
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoggingInterceptor.class);
+
+    private final BlockingQueue<RequestLogEntry> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    private ExecutorService writer;
+
+
+    public RequestLogWriter(@Value("${mytaxi.request-log.queue-size:10000}") int queueSize)
+    {
+        Preconditions.checkArgument(queueSize > 0, "queue size must be positive");
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+
+    @PostConstruct
+    public void start()
+    {
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.execute(this::writeUntilInterrupted);
+    }
+
+
+    @PreDestroy
+    public void stop() throws InterruptedException
+    {
+        if (writer != null)
+        {
+            writer.shutdownNow();
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     * @param entry
+     * @return false if the queue is full and the entry was dropped
+     */
+    boolean submit(RequestLogEntry entry)
+    {
+        if (queue.offer(entry))
+        {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+
+    public int getQueued()
+    {
+        return queue.size();
+    }
+
+
+    private void writeUntilInterrupted()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                write(queue.take());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        // whatever is left when the application stops is still written
+        RequestLogEntry entry;
+        while ((entry = queue.poll()) != null)
+        {
+            write(entry);
+        }
+    }
+
+
+    void write(RequestLogEntry entry)
+    {
+        buffer.setLength(0);
+        buffer.append("method=").append(entry.method)
+            .append(" uri=").append(entry.uri)
+            .append(" status=").append(entry.status)
+            .append(" durationMicros=").append(entry.durationMicros)
+            .append(" remoteAddress=").append(entry.remoteAddress);
+
+        try
+        {
+            if (entry.exception != null)
+            {
+                LOG.error(buffer.toString(), entry.exception);
+            }
+            else if (entry.isError())
+            {
+                LOG.warn(buffer.toString());
+            }
+            else
+            {
+                LOG.info(buffer.toString());
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // a failing appender must not stop the writer thread
+            LOG.debug("Could not write request log entry", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.mytaxi.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public method of the services and every repository call.
+ * <p/>
+ * Services are recorded as {@code mytaxi.service}, repositories as {@code mytaxi.repository}, both tagged with the class, the
+ * method and the exception thrown, if any. The in-memory indexes and registries next to the services are left out on purpose,
+ * their calls take less time than recording them.
+ */
+@Aspect
+@Component
+public class TimingAspect
+{
+
+    static final String SERVICE_TIMER = "mytaxi.service";
+
+    static final String REPOSITORY_TIMER = "mytaxi.repository";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<Class<?>, String> classNames = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+
+    public TimingAspect(final MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    @Around("execution(public * com.mytaxi.service.driver.*Service.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        return time(SERVICE_TIMER, joinPoint);
+    }
+
+
+    @Around("execution(public * org.springframework.data.repository.Repository+.*(..))"
+        + " || execution(public * com.mytaxi.dataaccessobject.DriverLocationBatchRepository.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        return time(REPOSITORY_TIMER, joinPoint);
+    }
+
+
+    private Object time(String timerName, ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        long start = System.nanoTime();
+        try
+        {
+            Object result = joinPoint.proceed();
+            timer(timerName, joinPoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        }
+        catch (Throwable e)
+        {
+            Timer.builder(timerName)
+                .tag("class", className(joinPoint.getTarget().getClass()))
+                .tag("method", joinPoint.getSignature().getName())
+                .tag("exception", e.getClass().getSimpleName())
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Looks the timer of a successful call up without building its id, this runs on every service and repository call.
+     */
+    private Timer timer(String timerName, ProceedingJoinPoint joinPoint)
+    {
+        Class<?> targetClass = joinPoint.getTarget().getClass();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return timers.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(method, key -> Timer.builder(timerName)
+                .tag("class", className(targetClass))
+                .tag("method", method.getName())
+                .tag("exception", NO_EXCEPTION)
+                .register(meterRegistry));
+    }
+
+
+    /**
+     * Spring Data repositories are proxies, they are named after the repository interface of this application they implement.
+     */
+    private String className(Class<?> targetClass)
+    {
+        return classNames.computeIfAbsent(targetClass, key -> {
+            for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(key))
+            {
+                if (type.getName().startsWith("com.mytaxi.") && type.getSimpleName().endsWith("Repository"))
+                {
+                    return type.getSimpleName();
+                }
+            }
+            return ClassUtils.getUserClass(key).getSimpleName();
+        });
+    }
+}
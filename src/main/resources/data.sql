@@ -4,62 +4,62 @@
 
 -- Create 3 OFFLINE drivers
 
-insert into driver (id, date_created, deleted, online_status, password, username) values (1, now(), false, 'OFFLINE',
+insert into driver (id, version, date_created, deleted, online_status, password, username) values (1, 0, now(), false, 'OFFLINE',
 'driver01pw', 'driver01');
 
-insert into driver (id, date_created, deleted, online_status, password, username) values (2, now(), false, 'OFFLINE',
+insert into driver (id, version, date_created, deleted, online_status, password, username) values (2, 0, now(), false, 'OFFLINE',
 'driver02pw', 'driver02');
 
-insert into driver (id, date_created, deleted, online_status, password, username) values (3, now(), false, 'OFFLINE',
+insert into driver (id, version, date_created, deleted, online_status, password, username) values (3, 0, now(), false, 'OFFLINE',
 'driver03pw', 'driver03');
 
 
 -- Create 3 ONLINE drivers
 
-insert into driver (id, date_created, deleted, online_status, password, username) values (4, now(), false, 'ONLINE',
+insert into driver (id, version, date_created, deleted, online_status, password, username) values (4, 0, now(), false, 'ONLINE',
 'driver04pw', 'driver04');
 
-insert into driver (id, date_created, deleted, online_status, password, username) values (5, now(), false, 'ONLINE',
+insert into driver (id, version, date_created, deleted, online_status, password, username) values (5, 0, now(), false, 'ONLINE',
 'driver05pw', 'driver05');
 
-insert into driver (id, date_created, deleted, online_status, password, username) values (6, now(), false, 'ONLINE',
+insert into driver (id, version, date_created, deleted, online_status, password, username) values (6, 0, now(), false, 'ONLINE',
 'driver06pw', 'driver06');
 
 -- Create 1 OFFLINE driver with coordinate(longitude=9.5&latitude=55.954)
 
-insert into driver (id, coordinate, date_coordinate_updated, date_created, deleted, online_status, password, username)
+insert into driver (id, version, latitude, longitude, date_coordinate_updated, date_created, deleted, online_status, password, username)
 values
- (7,
- 'aced0005737200226f72672e737072696e676672616d65776f726b2e646174612e67656f2e506f696e7431b9e90ef11a4006020002440001784400017978704023000000000000404bfa1cac083127', now(), now(), false, 'OFFLINE',
+ (7, 0,
+ 55.954, 9.5, now(), now(), false, 'OFFLINE',
 'driver07pw', 'driver07');
 
 -- Create 1 ONLINE driver with coordinate(longitude=9.5&latitude=55.954)
 
-insert into driver (id, coordinate, date_coordinate_updated, date_created, deleted, online_status, password, username)
+insert into driver (id, version, latitude, longitude, date_coordinate_updated, date_created, deleted, online_status, password, username)
 values
- (8,
- 'aced0005737200226f72672e737072696e676672616d65776f726b2e646174612e67656f2e506f696e7431b9e90ef11a4006020002440001784400017978704023000000000000404bfa1cac083127', now(), now(), false, 'ONLINE',
+ (8, 0,
+ 55.954, 9.5, now(), now(), false, 'ONLINE',
 'driver08pw', 'driver08');
 
 -- Create 4 cars
 
-insert into car (id, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (1, now(), 'ABC123', false, 5.0, 'gas', 'Manufacturer1', false);
+insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (1, 0, now(), 'ABC123', false, 5.0, 'gas', 'Manufacturer1', false);
 
-insert into car (id, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (2, now(), 'DEF456', false, 2.0, 'gas', 'Manufacturer2', false);
+insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (2, 0, now(), 'DEF456', false, 2.0, 'gas', 'Manufacturer2', false);
 
-insert into car (id, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (3, now(), 'GHI789', false, 3.5, 'diesel', 'Manufacturer2', false);
+insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (3, 0, now(), 'GHI789', false, 3.5, 'diesel', 'Manufacturer2', false);
 
-insert into car (id, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (4, now(), 'JKL987', false, 4.0, 'electric', 'Manufacturer3', false);
+insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (4, 0, now(), 'JKL987', false, 4.0, 'electric', 'Manufacturer3', false);
 
 -- 2 ONLINE drivers select 1 available car each
 
-insert into driver_car (id, date_created, driver_id, car_id, selected) values (1, now(), 4, 1, true);
+insert into driver_car (id, version, date_created, driver_id, car_id, selected) values (1, 0, now(), 4, 1, true);
 
-insert into driver_car (id, date_created, driver_id, car_id, selected) values (2, now(), 8, 2, true);
+insert into driver_car (id, version, date_created, driver_id, car_id, selected) values (2, 0, now(), 8, 2, true);
 
 -- Create 2 deleted car
 
-insert into car (id, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (5, now(), 'MNO654', false, 4.0, 'electric', 'Manufacturer3',
+insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (5, 0, now(), 'MNO654', false, 4.0, 'electric', 'Manufacturer3',
 true);
 
-insert into car (id, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (6, now(), 'JKL654', false, 5.0, 'diesel', 'Manufacturer3', true);
\ No newline at end of file
+insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted) values (6, 0, now(), 'JKL654', false, 5.0, 'diesel', 'Manufacturer3', true);
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.mytaxi.controller
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.mytaxi.domainobject.CarDO
+import spock.lang.Specification
+
+import java.util.function.Consumer
+
+class CarStreamWriterSpec extends Specification {
+
+    CarStreamWriter writer = new CarStreamWriter(new ObjectMapper())
+
+    def "Should write one car per line"() {
+        def out = new ByteArrayOutputStream()
+        def cars = [new CarDO(id: 1, licensePlate: "ABC123", rating: 5.0f), new CarDO(id: 2, licensePlate: "DEF456", rating: 2.0f)]
+
+        when: "writing the cars"
+        def written = writer.write(out, { Consumer<CarDO> consumer -> cars.each { consumer.accept(it) } })
+
+        then: "every line is a car"
+        written == 2
+        def lines = out.toString("UTF-8").split("\n")
+        lines.size() == 2
+        lines.collect { new ObjectMapper().readTree(it).get("licensePlate").asText() } == ["ABC123", "DEF456"]
+    }
+
+    def "Should write nothing for an empty fleet"() {
+        def out = new ByteArrayOutputStream()
+
+        when:
+        def written = writer.write(out, { Consumer<CarDO> consumer -> })
+
+        then:
+        written == 0
+        out.size() == 0
+    }
+}
@@ -0,0 +1,30 @@
+package com.mytaxi.controller
+
+import com.mytaxi.controller.mapper.CursorMapper
+import spock.lang.Specification
+
+class CursorMapperSpec extends Specification {
+
+    def "Should read back the id of a cursor"() {
+        expect:
+        CursorMapper.makeAfterId(CursorMapper.makeCursor(42L)) == 42L
+    }
+
+    def "Should start at the first page without a cursor"() {
+        expect:
+        CursorMapper.makeAfterId("") == null
+        CursorMapper.makeAfterId(null) == null
+        CursorMapper.makeCursor(null) == null
+    }
+
+    def "Should reject cursors which were not handed out"() {
+        when:
+        CursorMapper.makeAfterId(cursor)
+
+        then:
+        thrown(IllegalArgumentException.class)
+
+        where:
+        cursor << ["42", "not base64!", Base64.urlEncoder.encodeToString("v1:abc".bytes)]
+    }
+}
@@ -0,0 +1,51 @@
+package com.mytaxi.controller
+
+import com.mytaxi.MytaxiServerApplicantTestApplication
+import com.mytaxi.datatransferobject.BulkLocationUpdateDTO
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.http.HttpEntity
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpMethod
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import spock.lang.Specification
+
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DriverControllerSpec extends Specification {
+
+    @Autowired
+    TestRestTemplate restTemplate
+
+    def "Should reject the location of an unknown driver in the default ingestion mode"() {
+        when:
+        def response = restTemplate.exchange("/v1/drivers/{driverId}?longitude=13.4&latitude=52.5", HttpMethod.PUT, null,
+                String, driverId)
+
+        then:
+        response.statusCode == status
+
+        where:
+        driverId || status
+        1L       || HttpStatus.OK
+        999L     || HttpStatus.BAD_REQUEST
+    }
+
+    def "Should report unknown drivers of a bulk location update by position in the default ingestion mode"() {
+        given:
+        def headers = new HttpHeaders()
+        headers.setContentType(MediaType.APPLICATION_JSON)
+        def body = '[{"driverId": 999, "lat": 52.5, "lon": 13.4}, {"driverId": 2, "lat": 52.5, "lon": 13.4}]'
+
+        when:
+        def response = restTemplate.postForEntity("/v1/drivers/locations", new HttpEntity<>(body, headers), BulkLocationUpdateDTO)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body.received == 2
+        response.body.applied == 1
+        response.body.failures*.index == [0]
+        response.body.failures*.message == ["Could not find entity with id: 999"]
+    }
+}
@@ -0,0 +1,75 @@
+package com.mytaxi.controller
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.mytaxi.domainvalue.DriverLocation
+import spock.lang.Specification
+
+class DriverLocationStreamReaderSpec extends Specification {
+
+    DriverLocationStreamReader reader = new DriverLocationStreamReader(new ObjectMapper(), 2)
+
+    List<List<DriverLocation>> chunks = []
+
+    def "Should read a JSON array in chunks"() {
+        def body = '''[{"driverId": 1, "lat": 52.5, "lon": 13.4, "ts": 1531395000000},
+                       {"driverId": 2, "lat": 52.6, "lon": 13.5},
+                       {"driverId": 3, "latitude": 52.7, "longitude": 13.6}]'''
+
+        when: "reading the body"
+        def result = reader.read(stream(body), { chunks << new ArrayList<>(it); [:] })
+
+        then: "all records are applied in chunks of two"
+        chunks*.size() == [2, 1]
+        chunks.flatten()*.driverId == [1L, 2L, 3L]
+        chunks[0][0].dateCoordinateUpdated.toInstant().toEpochMilli() == 1531395000000L
+        result.received == 3
+        result.applied == 3
+        result.failures.isEmpty()
+    }
+
+    def "Should read newline delimited JSON"() {
+        def body = '{"driverId": 1, "lat": 52.5, "lon": 13.4}\n{"driverId": 2, "lat": 52.6, "lon": 13.5}\n'
+
+        when: "reading the body"
+        def result = reader.read(stream(body), { chunks << new ArrayList<>(it); [:] })
+
+        then: "all records are applied"
+        chunks.flatten()*.driverId == [1L, 2L]
+        result.applied == 2
+    }
+
+    def "Should report invalid and rejected records without aborting the batch"() {
+        def body = '''[{"driverId": 1, "lat": 95.0, "lon": 13.4},
+                       {"driverId": 2, "lat": 52.6, "lon": 13.5},
+                       {"lat": 52.6, "lon": 13.5},
+                       {"driverId": 4, "lat": 52.6, "lon": 13.5}]'''
+
+        when: "reading the body while driver 4 is unknown"
+        def result = reader.read(stream(body), { chunk ->
+            chunks << new ArrayList<>(chunk)
+            chunk.findIndexOf { it.driverId == 4L } >= 0 ? [(chunk.findIndexOf { it.driverId == 4L }): "unknown"] : [:]
+        })
+
+        then: "only the valid and known record is applied"
+        result.received == 4
+        result.applied == 1
+        result.failures*.index.sort() == [0, 2, 3]
+        result.failures.find { it.index == 3 }.driverId == 4L
+    }
+
+    def "Should apply everything before a syntax error"() {
+        def body = '[{"driverId": 1, "lat": 52.5, "lon": 13.4}, {"driverId": 2, "lat": '
+
+        when: "reading a truncated body"
+        def result = reader.read(stream(body), { chunks << new ArrayList<>(it); [:] })
+
+        then: "the first record is applied and the error is reported"
+        chunks.flatten()*.driverId == [1L]
+        result.applied == 1
+        result.failures.size() == 1
+    }
+
+    static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes("UTF-8"))
+    }
+}
@@ -0,0 +1,34 @@
+package com.mytaxi.dataaccessobject
+
+import com.mytaxi.domainvalue.GeoCoordinate
+import spock.lang.Specification
+
+class LegacyCoordinateConverterSpec extends Specification {
+
+    def "Should read a serialized point as it was stored in the coordinate column"() {
+        def blob = "aced0005737200226f72672e737072696e676672616d65776f726b2e646174612e67656f2e506f696e7431b9e90ef11a4006020002440001784400017978704023000000000000404bfa1cac083127".decodeHex()
+
+        when: "converting the blob"
+        GeoCoordinate coordinate = LegacyCoordinateConverter.toGeoCoordinate(blob)
+
+        then: "x is the longitude and y the latitude"
+        coordinate.latitude == 55.954d
+        coordinate.longitude == 9.5d
+    }
+
+    def "Should reject anything else than a point"() {
+        def out = new ByteArrayOutputStream()
+        new ObjectOutputStream(out).withCloseable { it.writeObject(new Date()) }
+
+        when: "converting a blob of another class"
+        LegacyCoordinateConverter.toGeoCoordinate(out.toByteArray())
+
+        then: "throw IllegalArgumentException"
+        thrown(IllegalArgumentException.class)
+    }
+
+    def "Should return null for empty columns"() {
+        expect:
+        LegacyCoordinateConverter.toGeoCoordinate(null) == null
+    }
+}
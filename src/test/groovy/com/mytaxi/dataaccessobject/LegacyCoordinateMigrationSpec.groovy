@@ -0,0 +1,70 @@
+package com.mytaxi.dataaccessobject
+
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType
+import spock.lang.Specification
+
+import javax.persistence.Cache
+import javax.persistence.EntityManagerFactory
+
+class LegacyCoordinateMigrationSpec extends Specification {
+
+    static final byte[] POINT = "aced0005737200226f72672e737072696e676672616d65776f726b2e646174612e67656f2e506f696e7431b9e90ef11a4006020002440001784400017978704023000000000000404bfa1cac083127".decodeHex()
+
+    EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build()
+
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(database)
+
+    Cache cache = Mock(Cache)
+
+    LegacyCoordinateMigration migration = new LegacyCoordinateMigration(jdbcTemplate, Stub(EntityManagerFactory) {
+        getCache() >> cache
+    })
+
+    def cleanup() {
+        database.shutdown()
+    }
+
+    def "Should skip the migration when the driver table has no legacy column"() {
+        given:
+        jdbcTemplate.execute("create table driver (id bigint primary key, latitude double, longitude double)")
+
+        when:
+        migration.migrate()
+
+        then:
+        noExceptionThrown()
+        0 * cache._
+    }
+
+    def "Should migrate readable coordinates and skip unreadable ones"() {
+        given:
+        jdbcTemplate.execute("create table driver (id bigint primary key, coordinate blob, latitude double, longitude double)")
+        jdbcTemplate.update("insert into driver (id, coordinate) values (?, ?)", 1L, POINT)
+        jdbcTemplate.update("insert into driver (id, coordinate) values (?, ?)", 2L, "corrupt".bytes)
+
+        when:
+        migration.migrate()
+
+        then: "the readable row is migrated"
+        1 * cache.evict(_)
+        jdbcTemplate.queryForMap("select latitude, longitude from driver where id = 1") == [LATITUDE: 55.954d, LONGITUDE: 9.5d]
+
+        and: "the unreadable row is left for a later look"
+        jdbcTemplate.queryForObject("select latitude from driver where id = 2", Double) == null
+    }
+
+    def "Should not fail startup when the legacy coordinates can not be read"() {
+        given: "a legacy column the select can not handle"
+        jdbcTemplate.execute("create table driver (id bigint primary key, coordinate blob)")
+
+        when:
+        migration.migrate()
+
+        then:
+        noExceptionThrown()
+        0 * cache._
+    }
+}
@@ -0,0 +1,118 @@
+package com.mytaxi.dataaccessobject
+
+import com.mytaxi.MytaxiServerApplicantTestApplication
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+import spock.lang.Unroll
+
+/**
+ * Compares the query plans and latencies of the hot repository queries with and without the indexes declared on the entities,
+ * at one million drivers, one million driver car links and one hundred thousand cars. Plans and latencies are printed, only the
+ * plans are asserted since the foreign key indexes H2 creates on its own keep some queries fast without the declared ones.
+ * Takes a while, so it only runs with {@code -Dbenchmark=true}.
+ */
+@Requires({ System.getProperty("benchmark") })
+@Stepwise
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, properties = ["mytaxi.location-ingestion.mode=sync"])
+class SchemaIndexBenchmarkSpec extends Specification {
+
+    static final int DRIVERS = 1_000_000
+
+    static final int CARS = 100_000
+
+    static final long FIRST_ID = 1_000_000L
+
+    static final int ROUNDS = 20
+
+    @Shared
+    boolean seeded
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    def setup() {
+        if (!seeded) {
+            seed()
+            seeded = true
+        }
+    }
+
+    @Unroll
+    def "Should use #index for #description"() {
+        when: "running the query with the index and after dropping it"
+        def indexedPlan = plan(query)
+        long indexedNanos = time(query)
+        jdbcTemplate.execute("drop index " + index)
+        def scanPlan = plan(query)
+        long scanNanos = time(query)
+        jdbcTemplate.execute("create index " + index + " on " + definition)
+        println String.format("%s: %.2f ms/query with %s, %.2f ms/query without%n  with:    %s%n  without: %s", description,
+                indexedNanos / 1e6 / ROUNDS, index, scanNanos / 1e6 / ROUNDS, indexedPlan, scanPlan)
+
+        then: "the planner picks the index"
+        indexedPlan.toLowerCase().contains(index)
+        !scanPlan.toLowerCase().contains(index)
+
+        where:
+        description                     | index                              | definition                         | query
+        "findByOnlineStatus"            | "ix_driver_online_status_deleted"  | "driver (online_status, deleted)"  | "select id from driver where online_status = 'ONLINE'"
+        "findInBoundingBox"             | "ix_driver_online_status_deleted"  | "driver (online_status, deleted)"  | "select id from driver where online_status = 'ONLINE' and deleted = false and latitude between 52 and 53"
+        "the selected driver of a car"  | "ix_driver_car_car_id_selected"    | "driver_car (car_id, selected)"    | "select id from driver_car where car_id = " + (FIRST_ID + 4711) + " and selected = true"
+        "the selected cars of a driver" | "ix_driver_car_driver_id_selected" | "driver_car (driver_id, selected)" | "select id from driver_car where driver_id = " + (FIRST_ID + 4711) + " and selected = true"
+        "counting the pages of cars"    | "ix_car_deleted_id"                | "car (deleted, id)"                | "select count(*) from car where deleted = false"
+    }
+
+    def "Should remove the seeded rows"() {
+        when:
+        jdbcTemplate.update("delete from driver_car where id >= ?", FIRST_ID)
+        jdbcTemplate.update("delete from driver where id >= ?", FIRST_ID)
+        jdbcTemplate.update("delete from car where id >= ?", FIRST_ID)
+
+        then:
+        jdbcTemplate.queryForObject("select count(*) from driver where id >= ?", Long, FIRST_ID) == 0
+    }
+
+    private void seed() {
+        // one in a hundred drivers is online, one in ten links is selected and one in twenty cars is deleted
+        insert("insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted)"
+                + " values (?, 0, now(), ?, false, 3.0, 'gas', 'Manufacturer1', ?)", CARS,
+                { long id, int i -> [id, "BENCH" + i, i % 20 == 0] as Object[] })
+        insert("insert into driver (id, version, date_created, deleted, online_status, password, username)"
+                + " values (?, 0, now(), ?, ?, 'pw', ?)", DRIVERS,
+                { long id, int i -> [id, i % 50 == 0, i % 100 == 0 ? "ONLINE" : "OFFLINE", "bench" + i] as Object[] })
+        jdbcTemplate.update("update driver set latitude = 52 + mod(id, 100) / 100.0, longitude = 13 where id >= ?", FIRST_ID)
+        insert("insert into driver_car (id, version, driver_id, car_id, selected) values (?, 0, ?, ?, ?)", DRIVERS,
+                { long id, int i -> [id, id, FIRST_ID + i % CARS, i % 10 == 0] as Object[] })
+        jdbcTemplate.execute("analyze")
+    }
+
+    private void insert(String sql, int rows, Closure<Object[]> row) {
+        def batch = []
+        for (int i = 0; i < rows; i++) {
+            batch << row(FIRST_ID + i, i)
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate(sql, batch)
+                batch.clear()
+            }
+        }
+        jdbcTemplate.batchUpdate(sql, batch)
+    }
+
+    private String plan(String query) {
+        return jdbcTemplate.queryForList("explain " + query, String).join(" ").replaceAll("\\s+", " ")
+    }
+
+    private long time(String query) {
+        jdbcTemplate.queryForList(query, Long)
+        long start = System.nanoTime()
+        ROUNDS.times {
+            jdbcTemplate.queryForList(query, Long)
+        }
+        return System.nanoTime() - start
+    }
+}
@@ -0,0 +1,80 @@
+package com.mytaxi.dataaccessobject
+
+import com.mytaxi.MytaxiServerApplicantTestApplication
+import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.domainvalue.DriverLocation
+import com.mytaxi.domainvalue.GeoCoordinate
+import com.mytaxi.domainvalue.OnlineStatus
+import org.hibernate.SessionFactory
+import org.hibernate.stat.Statistics
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+
+import javax.persistence.EntityManagerFactory
+import java.time.ZonedDateTime
+
+/**
+ * Every repository call runs in its own session here, so whatever is not read from the database again comes from the
+ * second level cache.
+ */
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, properties = "mytaxi.location-ingestion.mode=sync")
+class SecondLevelCacheSpec extends Specification {
+
+    @Autowired
+    CarRepository carRepository
+
+    @Autowired
+    DriverRepository driverRepository
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory
+
+    @Autowired
+    SecondLevelCacheMetrics secondLevelCacheMetrics
+
+    Statistics statistics
+
+    def setup() {
+        entityManagerFactory.cache.evictAll()
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).statistics
+        statistics.clear()
+    }
+
+    def "Should read a car from the second level cache"() {
+        when: "finding the same car twice"
+        carRepository.findById(1L)
+        def statements = statistics.prepareStatementCount
+        def car = carRepository.findById(1L)
+
+        then: "the second lookup runs no SQL"
+        car.get().licensePlate == "ABC123"
+        statistics.prepareStatementCount == statements
+        secondLevelCacheMetrics.stats["car"].hits == 1
+        secondLevelCacheMetrics.stats["car"].misses == 1
+    }
+
+    def "Should answer repeated online status lookups from the query cache"() {
+        when: "finding the online drivers twice"
+        def first = driverRepository.findByOnlineStatus(OnlineStatus.ONLINE)
+        def statements = statistics.prepareStatementCount
+        def second = driverRepository.findByOnlineStatus(OnlineStatus.ONLINE)
+
+        then: "the second lookup runs no SQL"
+        second*.id == first*.id
+        statistics.prepareStatementCount == statements
+        secondLevelCacheMetrics.stats[SecondLevelCacheMetrics.QUERY_CACHE].hits == 1
+    }
+
+    def "Should read a driver from the database again after its position was written"() {
+        def driverLocationBatchRepository = new DriverLocationBatchRepository(Mock(JdbcTemplate.class), entityManagerFactory)
+        driverRepository.findById(4L)
+
+        when: "a position of the cached driver is written"
+        driverLocationBatchRepository.updateLocations([new DriverLocation(4L, new GeoCoordinate(52.0, 13.0), ZonedDateTime.now())])
+
+        then: "the driver is not cached anymore"
+        !entityManagerFactory.cache.contains(DriverDO.class, 4L)
+    }
+}
@@ -0,0 +1,47 @@
+package com.mytaxi.domainvalue
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class DriverCarFilterSpec extends Specification {
+
+    def "Should parse request strings into typed attribute values"() {
+        when: "parsing request params as spring hands them over"
+        def filter = DriverCarFilter.parse([username: "driver", onlineStatus: "online", convertible: "TRUE", rating: "4.5", page: "0", sort: "id"])
+
+        then: "known attributes are typed and other params are ignored"
+        filter.attributes == [DriverCarAttribute.USERNAME, DriverCarAttribute.ONLINE_STATUS, DriverCarAttribute.CONVERTIBLE, DriverCarAttribute.RATING] as Set
+        filter.get(DriverCarAttribute.USERNAME) == "driver"
+        filter.get(DriverCarAttribute.ONLINE_STATUS) == OnlineStatus.ONLINE
+        filter.get(DriverCarAttribute.CONVERTIBLE) == Boolean.TRUE
+        filter.get(DriverCarAttribute.RATING) == 4.5f
+    }
+
+    def "Should ignore blank values"() {
+        expect:
+        DriverCarFilter.parse([username: " ", manufacturer: ""]).is(DriverCarFilter.EMPTY)
+    }
+
+    @Unroll
+    def "Should reject #value for #param"() {
+        when:
+        DriverCarFilter.parse([(param): value])
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.contains(param)
+
+        where:
+        param          | value
+        "convertible"  | "yes"
+        "rating"       | "five"
+        "onlineStatus" | "AWAY"
+    }
+
+    def "Should give filters on the same attributes the same shape"() {
+        expect:
+        DriverCarFilter.parse([username: "a", rating: "1"]).shape == DriverCarFilter.parse([rating: "2", username: "b"]).shape
+        DriverCarFilter.parse([username: "a"]).shape != DriverCarFilter.parse([manufacturer: "a"]).shape
+        DriverCarFilter.EMPTY.shape == 0
+    }
+}
@@ -0,0 +1,53 @@
+package com.mytaxi.domainvalue
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class GeoCoordinateSpec extends Specification {
+
+    @Unroll
+    def "Should reject latitude #latitude and longitude #longitude"() {
+        when:
+        new GeoCoordinate(latitude, longitude)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == message
+
+        where:
+        latitude   | longitude  || message
+        90.5       | 0          || "latitude 90.5 is not within [-90, 90]"
+        -91        | 0          || "latitude -91.0 is not within [-90, 90]"
+        Double.NaN | 0          || "latitude NaN is not within [-90, 90]"
+        0          | 180.1      || "longitude 180.1 is not within [-180, 180]"
+        0          | Double.NaN || "longitude NaN is not within [-180, 180]"
+    }
+
+    def "Should restore a coordinate from its geohash within a centimeter"() {
+        def random = new Random(42)
+
+        expect:
+        10000.times {
+            def coordinate = new GeoCoordinate(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180)
+            def restored = GeoCoordinate.fromGeohash(coordinate.toGeohash())
+            assert Math.abs(restored.latitude - coordinate.latitude) < 1e-7
+            assert Math.abs(restored.longitude - coordinate.longitude) < 1e-7
+        }
+    }
+
+    def "Should keep the bounds of the coordinate range in the geohash"() {
+        expect:
+        GeoCoordinate.fromGeohash(new GeoCoordinate(90, 180).toGeohash()).latitude > 89.9999999
+        GeoCoordinate.fromGeohash(new GeoCoordinate(-90, -180).toGeohash()).longitude < -179.9999999
+    }
+
+    def "Should share a geohash prefix for nearby coordinates"() {
+        def berlin = new GeoCoordinate(52.5200, 13.4050).toGeohash()
+        def nearBerlin = new GeoCoordinate(52.5201, 13.4051).toGeohash()
+        def munich = new GeoCoordinate(48.1351, 11.5820).toGeohash()
+
+        expect:
+        Long.numberOfLeadingZeros(berlin ^ nearBerlin) > Long.numberOfLeadingZeros(berlin ^ munich)
+        Long.numberOfLeadingZeros(berlin ^ nearBerlin) >= 20
+    }
+}
@@ -0,0 +1,80 @@
+package com.mytaxi.services
+
+import com.mytaxi.MytaxiServerApplicantTestApplication
+import com.mytaxi.service.driver.TrigramIndex
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Compares a license plate substring search through {@code LIKE '%value%'} with the trigram index lookup followed by a
+ * primary key fetch, at one million cars. Takes a while, so it only runs with {@code -Dbenchmark=true}.
+ */
+@Requires({ System.getProperty("benchmark") })
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, properties = ["mytaxi.location-ingestion.mode=sync"])
+class AttributeSearchIndexBenchmarkSpec extends Specification {
+
+    static final int ROWS = 1_000_000
+
+    static final long FIRST_ID = 1_000_000L
+
+    static final int ROUNDS = 20
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    TrigramIndex index = new TrigramIndex()
+
+    def cleanup() {
+        jdbcTemplate.update("delete from car where id >= ?", FIRST_ID)
+    }
+
+    def "Should look up license plate substrings faster than LIKE"() {
+        given: "a million cars in the database and in the index"
+        def random = new Random(42)
+        def batch = []
+        for (long id = FIRST_ID; id < FIRST_ID + ROWS; id++) {
+            def plate = (0..2).collect { (char) (65 + random.nextInt(26)) }.join() + String.format("%07d", id - FIRST_ID)
+            index.put(id, plate)
+            batch << ([id, plate] as Object[])
+            if (batch.size() == 10_000) {
+                insert(batch)
+                batch.clear()
+            }
+        }
+        insert(batch)
+        def queries = ["XQZ", "KJ00", "ZZ01234", "B0999999", "AAA00"]
+
+        when: "searching the same substrings both ways"
+        long likeNanos = 0
+        long indexNanos = 0
+        def likeIds = [:]
+        def indexIds = [:]
+        ROUNDS.times {
+            queries.each { query ->
+                long start = System.nanoTime()
+                likeIds[query] = jdbcTemplate.queryForList("select id from car where license_plate like ?", Long, "%" + query + "%") as Set
+                likeNanos += System.nanoTime() - start
+
+                start = System.nanoTime()
+                def ids = index.find(query, 1000)
+                indexIds[query] = ids ? jdbcTemplate.queryForList(
+                        "select id from car where id in (" + ids.join(",") + ") and license_plate like ?", Long, "%" + query + "%") as Set : [] as Set
+                indexNanos += System.nanoTime() - start
+            }
+        }
+        println String.format("LIKE: %.2f ms/query, index: %.2f ms/query over %d cars",
+                likeNanos / 1e6 / (ROUNDS * queries.size()), indexNanos / 1e6 / (ROUNDS * queries.size()), ROWS)
+
+        then: "both find the same cars and the index is faster"
+        likeIds == indexIds
+        indexNanos < likeNanos
+    }
+
+    private void insert(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("insert into car (id, version, date_created, license_plate, convertible, rating, engine_type, manufacturer, deleted)"
+                + " values (?, 0, now(), ?, false, 3.0, 'gas', 'Manufacturer1', false)", rows)
+    }
+}
@@ -0,0 +1,53 @@
+package com.mytaxi.services
+
+import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.domainobject.CarDO
+import com.mytaxi.domainvalue.DriverCarFilter
+import com.mytaxi.service.driver.CarAttributeColumns
+import spock.lang.Specification
+
+class CarAttributeColumnsSpec extends Specification {
+
+    CarRepository carRepository = Stub(CarRepository.class)
+
+    CarAttributeColumns columns = new CarAttributeColumns(carRepository)
+
+    def setup() {
+        // more than one bitset word, ids out of order and with gaps
+        carRepository.findAll() >> (1..100).collect {
+            car(it * 2, it % 2 == 0, (it % 5) as float, it % 3 == 0 ? "electric" : "gas", it % 4 == 0 ? "Tesla" : "Volkswagen")
+        }.reverse()
+        columns.load()
+    }
+
+    def "Should match every columnar attribute like the database does"() {
+        when: "filtering on all of them at once"
+        def matches = columns.match(DriverCarFilter.parse([convertible: "true", rating: "2", engineType: "electric", manufacturer: "esl"]))
+
+        then: "only cars matching all of them are found"
+        def expected = (1..100).findAll { it % 2 == 0 && it % 5 == 2 && it % 3 == 0 && it % 4 == 0 }.collect { it * 2L }
+        matches.count() == expected.size()
+        expected.every { matches.contains(it) }
+    }
+
+    def "Should update and insert rows incrementally"() {
+        when: "a car changes its engine and a car is inserted between existing ids"
+        columns.update(car(6, false, 1f, "hybrid", "Toyota"))
+        columns.update(car(7, true, null, "hybrid", null))
+
+        then: "both are found by their new values, the rows after the insert kept theirs"
+        columns.size() == 101
+        columns.match(DriverCarFilter.parse([engineType: "hybrid"])).count() == 2
+        columns.match(DriverCarFilter.parse([engineType: "hybrid", convertible: "false"])).contains(6)
+        !columns.match(DriverCarFilter.parse([engineType: "gas"])).contains(6)
+        columns.match(DriverCarFilter.parse([manufacturer: "Tesla"])).count() == 25
+        columns.match(DriverCarFilter.parse([engineType: "diesel"])).count() == 0
+        columns.match(DriverCarFilter.EMPTY).count() == 101
+    }
+
+    static CarDO car(long id, Boolean convertible, Float rating, String engineType, String manufacturer) {
+        def carDO = new CarDO("PLATE-" + id, convertible, rating, engineType, manufacturer)
+        carDO.id = id
+        return carDO
+    }
+}
@@ -0,0 +1,249 @@
+package com.mytaxi.services
+
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.dataaccessobject.DriverRepository
+import com.mytaxi.domainobject.CarDO
+import com.mytaxi.domainobject.DriverCarDO
+import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.exception.CarAlreadyInUseException
+import com.mytaxi.exception.EntityNotFoundException
+import com.mytaxi.service.driver.AttributeSearchIndex
+import com.mytaxi.service.driver.CarAttributeColumns
+import com.mytaxi.service.driver.CarReservationRegistry
+import com.mytaxi.service.driver.CarService
+import com.mytaxi.service.driver.DefaultCarDriverService
+import com.mytaxi.service.driver.DriverCache
+import com.mytaxi.service.driver.DriverCarSpecifications
+import com.mytaxi.service.driver.FleetSnapshot
+import com.mytaxi.service.driver.OptimisticLockRetryPolicy
+import org.springframework.dao.DataIntegrityViolationException
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CarReservationRegistrySpec extends Specification {
+
+    CarDriverRepository carDriverRepository = Mock(CarDriverRepository.class)
+
+    CarReservationRegistry carReservationRegistry = new CarReservationRegistry(carDriverRepository)
+
+    def "Should load the selected cars and keep the first driver of a car selected twice"() {
+        carDriverRepository.findBySelectedIsTrue() >> [selected(1, 10), selected(2, 20), selected(3, 10)]
+
+        when: "loading the registry"
+        carReservationRegistry.load()
+
+        then: "every car has exactly one owner"
+        carReservationRegistry.ownerOf(10) == 1L
+        carReservationRegistry.ownerOf(20) == 2L
+    }
+
+    def "Should track the cars of every driver"() {
+        when:
+        carReservationRegistry.reserve(10, 1)
+        carReservationRegistry.reserve(11, 1)
+        carReservationRegistry.reserve(10, 2)
+        carReservationRegistry.release(11, 1)
+
+        then: "only cars the driver owns are listed"
+        carReservationRegistry.carIdsOf(1) == [10L] as Set
+        carReservationRegistry.carIdsOf(2).empty
+    }
+
+    def "Should only release a car for its owner"() {
+        carReservationRegistry.reserve(10, 1)
+
+        expect: "another driver can not release the car"
+        !carReservationRegistry.release(10, 2)
+        carReservationRegistry.ownerOf(10) == 1L
+        carReservationRegistry.release(10, 1)
+        carReservationRegistry.ownerOf(10) == null
+    }
+
+    def "Should let exactly one of many concurrent drivers select the same car"() {
+        def drivers = 32
+        def rounds = 50
+        CarService carService = Stub(CarService.class)
+        DriverRepository driverRepository = Stub(DriverRepository.class)
+        carService.find(_) >> { Long id -> new CarDO(id: id) }
+        driverRepository.findById(_) >> { Long id -> Optional.of(new DriverDO(id: id)) }
+        carDriverRepository.save(_) >> { DriverCarDO driverCarDO -> driverCarDO }
+        def service = new DefaultCarDriverService(carDriverRepository, carService, driverRepository, carReservationRegistry, new OptimisticLockRetryPolicy(3, 0, 0),
+                new DriverCarSpecifications(Mock(AttributeSearchIndex.class)), new DriverCache(100, 60),
+                new FleetSnapshot(driverRepository, carDriverRepository, new CarAttributeColumns(Mock(CarRepository.class)), false))
+        def executor = Executors.newFixedThreadPool(drivers)
+
+        when: "all drivers select the same car at once, round after round"
+        def winners = (1..rounds).collect { round ->
+            def carId = (long) round
+            def start = new CountDownLatch(1)
+            def futures = (1..drivers).collect { driverId ->
+                executor.submit({
+                    start.await()
+                    try {
+                        service.selectCarForDriver((long) driverId, carId)
+                        return (long) driverId
+                    } catch (CarAlreadyInUseException ignored) {
+                        return null
+                    }
+                } as Callable<Long>)
+            }
+            start.countDown()
+            def selectedBy = futures.collect { it.get(10, TimeUnit.SECONDS) }.findAll { it != null }
+            [carId: carId, selectedBy: selectedBy]
+        }
+        executor.shutdown()
+
+        then: "every car was selected by exactly one driver, the one owning it"
+        winners.every { it.selectedBy.size() == 1 }
+        winners.every { carReservationRegistry.ownerOf(it.carId) == it.selectedBy[0] }
+    }
+
+    def "Should let concurrent selects of the same car by the same driver all succeed"() {
+        def threads = 16
+        def rounds = 50
+        CarService carService = Stub(CarService.class)
+        DriverRepository driverRepository = Stub(DriverRepository.class)
+        carService.find(_) >> { Long id -> new CarDO(id: id) }
+        driverRepository.findById(_) >> { Long id -> Optional.of(new DriverDO(id: id)) }
+        def rows = new ConcurrentHashMap<List<Long>, DriverCarDO>()
+        carDriverRepository.findByDriverDO_IdAndCarDO_Id(_, _) >> { Long driverId, Long carId -> rows.get([driverId, carId]) }
+        carDriverRepository.save(_) >> { DriverCarDO driverCarDO ->
+            // emulates the car_id_driver_id unique constraint
+            def stored = rows.putIfAbsent([driverCarDO.driverDO.id, driverCarDO.carDO.id], driverCarDO)
+            if (stored != null && !stored.is(driverCarDO)) {
+                throw new DataIntegrityViolationException("car_id_driver_id")
+            }
+            driverCarDO
+        }
+        def service = new DefaultCarDriverService(carDriverRepository, carService, driverRepository, carReservationRegistry, new OptimisticLockRetryPolicy(3, 0, 0),
+                new DriverCarSpecifications(Mock(AttributeSearchIndex.class)), new DriverCache(100, 60),
+                new FleetSnapshot(driverRepository, carDriverRepository, new CarAttributeColumns(Mock(CarRepository.class)), false))
+        def executor = Executors.newFixedThreadPool(threads)
+
+        when: "one driver selects the same car from many requests at once, round after round"
+        def results = (1..rounds).collectMany { round ->
+            def carId = (long) round
+            def start = new CountDownLatch(1)
+            def futures = (1..threads).collect {
+                executor.submit({
+                    start.await()
+                    service.selectCarForDriver(1L, carId)
+                } as Callable<DriverCarDO>)
+            }
+            start.countDown()
+            futures.collect { it.get(10, TimeUnit.SECONDS) }
+        }
+        executor.shutdown()
+
+        then: "every request returns the selected row and every car has one row owned by the driver"
+        notThrown(ExecutionException.class)
+        results.every { it.selected && it.driverDO.id == 1L }
+        rows.size() == rounds
+        (1..rounds).every { carReservationRegistry.ownerOf(it) == 1L }
+    }
+
+    def "Should never hand out a car twice while drivers keep selecting and deselecting it"() {
+        def drivers = 8
+        CarService carService = Stub(CarService.class)
+        DriverRepository driverRepository = Stub(DriverRepository.class)
+        carService.find(_) >> { Long id -> new CarDO(id: id) }
+        driverRepository.findById(_) >> { Long id -> Optional.of(new DriverDO(id: id)) }
+        carDriverRepository.findByDriverDO_IdAndCarDO_Id(_, _) >> { Long driverId, Long carId ->
+            new DriverCarDO(driverDO: new DriverDO(id: driverId), carDO: new CarDO(id: carId), selected: true)
+        }
+        def holders = Collections.synchronizedList([])
+        def overlaps = new java.util.concurrent.atomic.AtomicInteger()
+        carDriverRepository.save(_) >> { DriverCarDO driverCarDO ->
+            if (driverCarDO.selected) {
+                holders << driverCarDO.driverDO.id
+                if (holders.size() > 1) {
+                    overlaps.incrementAndGet()
+                }
+            } else {
+                holders.remove(driverCarDO.driverDO.id)
+            }
+            driverCarDO
+        }
+        def service = new DefaultCarDriverService(carDriverRepository, carService, driverRepository, carReservationRegistry, new OptimisticLockRetryPolicy(3, 0, 0),
+                new DriverCarSpecifications(Mock(AttributeSearchIndex.class)), new DriverCache(100, 60),
+                new FleetSnapshot(driverRepository, carDriverRepository, new CarAttributeColumns(Mock(CarRepository.class)), false))
+        def executor = Executors.newFixedThreadPool(drivers)
+
+        when: "drivers compete for one car for a while"
+        def futures = (1..drivers).collect { driverId ->
+            executor.submit({
+                500.times {
+                    try {
+                        service.selectCarForDriver((long) driverId, 1L)
+                        service.deselectCarForDriver((long) driverId, 1L)
+                    } catch (CarAlreadyInUseException ignored) {
+                    }
+                }
+            } as Runnable)
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then: "the car never had two drivers at the same time"
+        notThrown(ExecutionException.class)
+        overlaps.get() == 0
+        carReservationRegistry.ownerOf(1) == null
+    }
+
+    def "Should keep the reservation in line with the row while a driver selects and deselects a car at once"() {
+        def threads = 8
+        CarService carService = Stub(CarService.class)
+        DriverRepository driverRepository = Stub(DriverRepository.class)
+        carService.find(_) >> { Long id -> new CarDO(id: id) }
+        driverRepository.findById(_) >> { Long id -> Optional.of(new DriverDO(id: id)) }
+        def row = new DriverCarDO(driverDO: new DriverDO(id: 1L), carDO: new CarDO(id: 1L), selected: false)
+        carDriverRepository.findByDriverDO_IdAndCarDO_Id(1L, 1L) >> row
+        carDriverRepository.save(_) >> { DriverCarDO driverCarDO -> driverCarDO }
+        def service = new DefaultCarDriverService(carDriverRepository, carService, driverRepository, carReservationRegistry, new OptimisticLockRetryPolicy(3, 0, 0),
+                new DriverCarSpecifications(Mock(AttributeSearchIndex.class)), new DriverCache(100, 60),
+                new FleetSnapshot(driverRepository, carDriverRepository, new CarAttributeColumns(Mock(CarRepository.class)), false))
+        def executor = Executors.newFixedThreadPool(threads)
+        def mismatches = new java.util.concurrent.atomic.AtomicInteger()
+
+        when: "requests of the driver select and deselect the car concurrently"
+        def futures = (1..threads).collect { thread ->
+            executor.submit({
+                500.times { round ->
+                    try {
+                        if ((round + thread) % 2 == 0) {
+                            service.selectCarForDriver(1L, 1L)
+                        } else {
+                            service.deselectCarForDriver(1L, 1L)
+                        }
+                    } catch (EntityNotFoundException ignored) {
+                    }
+                    carReservationRegistry.lockOf(1L).lock()
+                    try {
+                        if ((carReservationRegistry.ownerOf(1L) == 1L) != row.selected) {
+                            mismatches.incrementAndGet()
+                        }
+                    } finally {
+                        carReservationRegistry.lockOf(1L).unlock()
+                    }
+                }
+            } as Runnable)
+        }
+        futures*.get(30, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        then: "a selected row always has its reservation and a reserved car always has a selected row"
+        notThrown(ExecutionException.class)
+        mismatches.get() == 0
+    }
+
+    static DriverCarDO selected(long driverId, long carId) {
+        return new DriverCarDO(driverDO: new DriverDO(id: driverId), carDO: new CarDO(id: carId), selected: true)
+    }
+}
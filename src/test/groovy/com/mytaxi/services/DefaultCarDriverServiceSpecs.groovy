@@ -1,16 +1,28 @@
 package com.mytaxi.services
 
 import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.dataaccessobject.CarRepository
 import com.mytaxi.dataaccessobject.DriverRepository
 import com.mytaxi.domainobject.CarDO
 import com.mytaxi.domainobject.DriverCarDO
 import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.domainvalue.DriverCarFilter
 import com.mytaxi.domainvalue.OnlineStatus
+import com.mytaxi.domainvalue.SeekPage
+import com.mytaxi.domainvalue.SeekRequest
 import com.mytaxi.exception.CarAlreadyInUseException
 import com.mytaxi.exception.EntityNotFoundException
+import com.mytaxi.service.driver.AttributeSearchIndex
+import com.mytaxi.service.driver.CarAttributeColumns
 import com.mytaxi.service.driver.CarDriverService
+import com.mytaxi.service.driver.CarReservationRegistry
 import com.mytaxi.service.driver.CarService
 import com.mytaxi.service.driver.DefaultCarDriverService
+import com.mytaxi.service.driver.DriverCache
+import com.mytaxi.service.driver.DriverCarSpecifications
+import com.mytaxi.service.driver.FleetSnapshot
+import com.mytaxi.service.driver.OptimisticLockRetryPolicy
+import org.springframework.orm.ObjectOptimisticLockingFailureException
 import spock.lang.Specification
 
 import java.time.ZoneId
@@ -24,7 +36,13 @@ class DefaultCarDriverServiceSpecs extends Specification {
 
     DriverRepository driverRepository = Mock(DriverRepository.class)
 
-    CarDriverService carDriverService = new DefaultCarDriverService(carDriverRepository, carService, driverRepository)
+    CarReservationRegistry carReservationRegistry = new CarReservationRegistry(carDriverRepository)
+
+    OptimisticLockRetryPolicy optimisticLockRetryPolicy = new OptimisticLockRetryPolicy(3, 0, 0)
+
+    CarDriverService carDriverService = new DefaultCarDriverService(carDriverRepository, carService, driverRepository, carReservationRegistry, optimisticLockRetryPolicy,
+            new DriverCarSpecifications(Mock(AttributeSearchIndex.class)), new DriverCache(100, 60),
+            new FleetSnapshot(driverRepository, carDriverRepository, new CarAttributeColumns(Mock(CarRepository.class)), false))
 
     def "Should throw NoEntityFoundException if a driver selecting is non-existent"() {
         def driverId = 1L
@@ -52,20 +70,19 @@ class DefaultCarDriverServiceSpecs extends Specification {
         thrown(EntityNotFoundException.class)
     }
 
-    def "Should throw IllegalStateException if an offline driver has the car selected when a new driver is selecting the car"() {
+    def "Should release the reservation if the selection can not be saved"() {
         def driverId = 1L
         def carId = 1L
-        def driver = createDriver(driverId)
-        driverRepository.findById(driverId) >> Optional.of(driver)
-        def car = createCar(carId)
-        carService.find(carId) >> createCar(car.id)
-        carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> createCarDrivers()
+        driverRepository.findById(driverId) >> createOptionalDriver(driverId)
+        carService.find(carId) >> createCar(carId)
+        carDriverRepository.save(_) >> { throw new IllegalStateException("database is gone") }
 
-        when: "a driver is selecting a car which is selected previously by now an offline driver"
+        when: "saving the selection fails"
         carDriverService.selectCarForDriver(driverId, carId)
 
-        then: "throw an IllegalStateException"
+        then: "the car is free again"
         thrown(IllegalStateException.class)
+        carReservationRegistry.ownerOf(carId) == null
     }
 
     def "Should select a car successfully when a driver selects a car for the first time"() {
@@ -78,7 +95,6 @@ class DefaultCarDriverServiceSpecs extends Specification {
 
         def car = createCar(carId)
         carService.find(carId) >> car
-        carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> null
 
         carDriverRepository.findByDriverDO_IdAndCarDO_Id(driver.id, car.id) >> null
 
@@ -90,18 +106,53 @@ class DefaultCarDriverServiceSpecs extends Specification {
         DriverCarDO driverCarDOSelected = carDriverService.selectCarForDriver(driverId, carId)
 
         then: "a car is selected by a driver successfully"
-        2 * driverRepository.findById(driverId) >> optionalDriver
-        2 * carService.find(carId) >> car
-        1 * carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> null
+        1 * driverRepository.findById(driverId) >> optionalDriver
+        1 * carService.find(carId) >> car
         1 * carDriverRepository.findByDriverDO_IdAndCarDO_Id(driver.id, car.id) >> null
         1 * carDriverRepository.save(driverCarDO) >> driverCarDO
         0 * _._
+        carReservationRegistry.ownerOf(carId) == driverId
 
         driverCarDOSelected.driverDO.id == driverId
         driverCarDOSelected.carDO.id == carId
         driverCarDOSelected.selected
     }
 
+    def "Should retry the selection when the driver car was changed concurrently"() {
+        def driverId = 1L
+        def carId = 1L
+        def driver = createOptionalDriver(driverId).get()
+        def car = createCar(carId)
+        driverRepository.findById(driverId) >> Optional.of(driver)
+        carService.find(carId) >> car
+
+        when: "the first save runs into a version conflict"
+        DriverCarDO driverCarDOSelected = carDriverService.selectCarForDriver(driverId, carId)
+
+        then: "the driver car is read and saved again"
+        2 * carDriverRepository.findByDriverDO_IdAndCarDO_Id(driverId, carId) >> createDeselectedCarDriver(1, car, driver)
+        2 * carDriverRepository.save(_) >> { throw new ObjectOptimisticLockingFailureException(DriverCarDO.class, 1L) } >> { DriverCarDO it -> it }
+        driverCarDOSelected.selected
+        optimisticLockRetryPolicy.stats["selectCarForDriver"].conflicts == 1
+        optimisticLockRetryPolicy.stats["selectCarForDriver"].retries == 1
+    }
+
+    def "Should give up the selection after too many version conflicts and free the car"() {
+        def driverId = 1L
+        def carId = 1L
+        driverRepository.findById(driverId) >> createOptionalDriver(driverId)
+        carService.find(carId) >> createCar(carId)
+        carDriverRepository.save(_) >> { throw new ObjectOptimisticLockingFailureException(DriverCarDO.class, 1L) }
+
+        when: "every save runs into a version conflict"
+        carDriverService.selectCarForDriver(driverId, carId)
+
+        then: "the conflict is thrown after all attempts"
+        thrown(ObjectOptimisticLockingFailureException.class)
+        optimisticLockRetryPolicy.stats["selectCarForDriver"].exhausted == 1
+        carReservationRegistry.ownerOf(carId) == null
+    }
+
     def "Should throw CarAlreadyInUsedException"() {
         def driverId = 1L
         def carId = 1L
@@ -113,17 +164,15 @@ class DefaultCarDriverServiceSpecs extends Specification {
         def car = createCar(carId)
         carService.find(carId) >> car
 
-        def id = 1L
-        def carDriver = createSelectedCarDriver(id, car, driver)
-        carDriver.driverDO.id = 2
-
-        carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> ([carDriver] as List)
+        carReservationRegistry.reserve(carId, 2L)
 
         when: "a driver is selecting a car that is selected by an online driver"
         carDriverService.selectCarForDriver(driverId, carId)
 
         then: "throw CarAlreadyInUsedException"
         thrown(CarAlreadyInUseException.class)
+        0 * carDriverRepository.save(_)
+        carReservationRegistry.ownerOf(carId) == 2L
     }
 
     def "Should select successfully when a driver selects a car he had previously deselected"() {
@@ -136,7 +185,6 @@ class DefaultCarDriverServiceSpecs extends Specification {
 
         def car = createCar(carId)
         carService.find(carId) >> car
-        carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> null
 
         def id = 1L
         def carDriver = createDeselectedCarDriver(id, car, driver)
@@ -152,9 +200,8 @@ class DefaultCarDriverServiceSpecs extends Specification {
         DriverCarDO driverCarDOSelected = carDriverService.selectCarForDriver(driverId, carId)
 
         then: "a car is selected by a driver successfully"
-        2 * driverRepository.findById(driverId) >> optionalDriver
-        2 * carService.find(carId) >> car
-        1 * carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> null
+        1 * driverRepository.findById(driverId) >> optionalDriver
+        1 * carService.find(carId) >> car
         1 * carDriverRepository.findByDriverDO_IdAndCarDO_Id(driver.id, car.id) >> null
         1 * carDriverRepository.save(driverCarDO) >> driverCarDO
         0 * _._
@@ -200,7 +247,6 @@ class DefaultCarDriverServiceSpecs extends Specification {
 
         def car = createCar(carId)
         carService.find(carId) >> car
-        carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> null
 
         carDriverRepository.findByDriverDO_IdAndCarDO_Id(driver.id, car.id) >> null
 
@@ -223,7 +269,8 @@ class DefaultCarDriverServiceSpecs extends Specification {
         carService.find(carId) >> car
 
         def selectedCarDriverDO = createSelectedCarDriver(1, car, driver)
-        carDriverRepository.findByCarDO_IdAndSelectedIsTrue(car.id) >> ([selectedCarDriverDO] as List)
+        carDriverRepository.findByDriverDO_IdAndCarDO_Id(driverId, carId) >> selectedCarDriverDO
+        carReservationRegistry.reserve(carId, driverId)
 
         def id = 1L
         def carDriver = createDeselectedCarDriver(id, car, driver)
@@ -237,6 +284,33 @@ class DefaultCarDriverServiceSpecs extends Specification {
         driverCarDOSelected.driverDO.id == driverId
         driverCarDOSelected.carDO.id == carId
         !driverCarDOSelected.selected
+        carReservationRegistry.ownerOf(carId) == null
+    }
+
+    def "Should seek the next page of driver cars without counting them"() {
+        def car = createCar(1)
+        def rows = (11..13).collect { createSelectedCarDriver(it, car, createDriver(it)) }
+
+        when: "asking for two driver cars after id 10"
+        SeekPage<DriverCarDO> page = carDriverService.findCarDrivers(DriverCarFilter.parse([licensePlate: "ABC"]), new SeekRequest(10L, 2, false))
+
+        then: "one more row is read to know whether there is a next page"
+        1 * carDriverRepository.findAllAfter(_, 10L, 3) >> rows
+        0 * carDriverRepository.count(_)
+        page.content*.id == [11L, 12L]
+        page.lastId == 12L
+        page.total == null
+    }
+
+    def "Should count the drivers of driver cars only when asked to"() {
+        when: "asking for the last page of drivers including the total"
+        SeekPage<DriverDO> page = carDriverService.findDrivers(DriverCarFilter.EMPTY, new SeekRequest(null, 2, true))
+
+        then: "the drivers are counted and there is no next page"
+        1 * carDriverRepository.findDriversAfter(_, null, 3) >> [createDriver(1)]
+        1 * carDriverRepository.countDrivers(_) >> 1L
+        !page.hasNext()
+        page.total == 1L
     }
 
     Optional<DriverDO> createOptionalDriver(Long id) {
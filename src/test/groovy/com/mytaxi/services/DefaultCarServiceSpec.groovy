@@ -1,14 +1,24 @@
 package com.mytaxi.services
 
+import com.mytaxi.dataaccessobject.CarDriverRepository
 import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.dataaccessobject.DriverRepository
 import com.mytaxi.domainobject.CarDO
 import com.mytaxi.exception.ConstraintsViolationException
 import com.mytaxi.exception.EntityNotFoundException
+import com.mytaxi.service.driver.AttributeSearchIndex
+import com.mytaxi.service.driver.CarAttributeColumns
+import com.mytaxi.service.driver.CarCache
 import com.mytaxi.service.driver.CarService
 import com.mytaxi.service.driver.DefaultCarService
+import com.mytaxi.service.driver.FleetSnapshot
 import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.data.domain.Page
+import org.springframework.data.domain.PageImpl
+import org.springframework.data.domain.PageRequest
 import spock.lang.Specification
 
+import javax.persistence.EntityManager
 import java.time.ZoneId
 import java.time.ZonedDateTime
 
@@ -16,7 +26,16 @@ class DefaultCarServiceSpec extends Specification {
 
     CarRepository carRepository = Mock(CarRepository.class)
 
-    CarService carService = new DefaultCarService(carRepository)
+    AttributeSearchIndex attributeSearchIndex = Mock(AttributeSearchIndex.class)
+
+    CarCache carCache = new CarCache(100, 60)
+
+    EntityManager entityManager = Mock(EntityManager.class)
+
+    CarAttributeColumns carAttributeColumns = new CarAttributeColumns(Mock(CarRepository.class))
+
+    CarService carService = new DefaultCarService(carRepository, attributeSearchIndex, carCache, entityManager, carAttributeColumns,
+            new FleetSnapshot(Mock(DriverRepository.class), Mock(CarDriverRepository.class), carAttributeColumns, false))
 
     def "Should return car by id"() {
         def id = 1L
@@ -29,6 +48,36 @@ class DefaultCarServiceSpec extends Specification {
         car.getId() == id
     }
 
+    def "Should serve a car found before from memory"() {
+        def id = 1L
+
+        when: "finding the same car twice"
+        carService.find(id)
+        CarDO car = carService.find(id)
+
+        then: "the database is only asked once"
+        1 * carRepository.findById(id) >> createOptionalCar(id)
+        car.getId() == id
+        carCache.stats.hits == 1
+        carCache.stats.misses == 1
+    }
+
+    def "Should load an updated car again"() {
+        def id = 1L
+        def updatedCarDO = updatedCar()
+        carRepository.findById(id) >> { createOptionalCar(id) }
+        carRepository.save(_) >> { CarDO carDO -> carDO }
+
+        when: "finding the car, updating it and finding it again"
+        CarDO cachedCar = carService.find(id)
+        carService.updateCar(id, updatedCarDO)
+        CarDO car = carService.find(id)
+
+        then: "the car is read from the database again"
+        !car.is(cachedCar)
+        carCache.stats.misses == 2
+    }
+
     def "Should throw EntityNotFoundException when getting a non-existent car"() {
         def id = 1L
         carRepository.findById(id) >> Optional.empty()
@@ -49,6 +98,9 @@ class DefaultCarServiceSpec extends Specification {
 
         then: "return the newly created car"
         newCarDO == carDO
+
+        and: "index its search attributes"
+        1 * attributeSearchIndex.indexCar(carDO)
     }
 
     def "Should throw ConstraintsViolationException when creating a new car"() {
@@ -62,15 +114,29 @@ class DefaultCarServiceSpec extends Specification {
         thrown(ConstraintsViolationException.class)
     }
 
-    def "Should return all cars"() {
-        def carDOList = createCars()
-        carRepository.findAll() >> carDOList
+    def "Should return a page of the cars which are not deleted"() {
+        def pageable = new PageRequest(0, 2)
+        def cars = new PageImpl<CarDO>(createCars().findAll { !it.deleted }, pageable, 1)
+
+        when: "getting a page of cars"
+        Page<CarDO> page = carService.getCars(pageable)
+
+        then: "return the page of the repository"
+        1 * carRepository.findAllByDeletedIsFalse(pageable) >> cars
+        page == cars
+    }
+
+    def "Should stream cars and detach every consumed car"() {
+        def cars = createCars()
+        def consumed = []
 
-        when: "getting all cars"
-        def carDOListFromDB = carService.getCars()
+        when: "streaming all cars"
+        carService.streamCars({ CarDO carDO -> consumed << carDO.id })
 
-        then: "return all cars"
-        carDOList == carDOListFromDB
+        then: "every car is consumed and detached afterwards"
+        1 * carRepository.streamAllByDeletedIsFalse() >> cars.stream()
+        consumed == [1L, 2L, 3L]
+        3 * entityManager.detach(_)
     }
 
     def "Should throw EntityNotFoundException when updating a non-existent car"() {
@@ -141,6 +207,7 @@ class DefaultCarServiceSpec extends Specification {
         then: "car exists and car is saved as deleted"
         1 * carRepository.findById(id) >> optionalCar
         1 * carRepository.save(deletedCar) >> deletedCar
+        1 * attributeSearchIndex.indexCar(deletedCar)
         0 * _._
     }
 
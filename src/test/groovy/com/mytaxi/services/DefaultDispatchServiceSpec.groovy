@@ -0,0 +1,173 @@
+package com.mytaxi.services
+
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.domainobject.CarDO
+import com.mytaxi.domainvalue.DispatchRequest
+import com.mytaxi.domainvalue.GeoCoordinate
+import com.mytaxi.domainvalue.OnlineStatus
+import com.mytaxi.exception.EntityNotFoundException
+import com.mytaxi.exception.NoDriverAvailableException
+import com.mytaxi.service.driver.CarReservationRegistry
+import com.mytaxi.service.driver.CarService
+import com.mytaxi.service.driver.DefaultDispatchService
+import com.mytaxi.service.driver.DispatchBatcher
+import com.mytaxi.service.driver.DispatchMatcher
+import com.mytaxi.service.driver.DriverAssignmentRegistry
+import com.mytaxi.service.driver.DriverLocationIndex
+import com.mytaxi.service.driver.DriverPresenceRegistry
+import com.mytaxi.service.driver.HeartbeatTimerWheel
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+class DefaultDispatchServiceSpec extends Specification {
+
+    static final GeoCoordinate PICKUP = new GeoCoordinate(52.52, 13.40)
+
+    DriverLocationIndex driverLocationIndex = new DriverLocationIndex(0.05)
+
+    CarReservationRegistry carReservationRegistry = new CarReservationRegistry(Mock(CarDriverRepository.class))
+
+    DriverAssignmentRegistry driverAssignmentRegistry = new DriverAssignmentRegistry()
+
+    DriverPresenceRegistry driverPresenceRegistry = new DriverPresenceRegistry(new HeartbeatTimerWheel(60000, 1000, 8, { 0L } as LongSupplier), 1000)
+
+    Map<Long, CarDO> cars = [:]
+
+    CarService carService = Stub(CarService.class) {
+        find(_) >> { Long carId ->
+            if (!cars.containsKey(carId)) {
+                throw new EntityNotFoundException("Could not find entity with id: " + carId)
+            }
+            cars[carId]
+        }
+    }
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    DispatchMatcher dispatchMatcher = new DispatchMatcher(driverLocationIndex, carReservationRegistry, driverAssignmentRegistry, carService)
+
+    DispatchBatcher greedy = new DispatchBatcher(dispatchMatcher, meterRegistry, DispatchBatcher.MODE_GREEDY, 500, 3000, 8, 100, 1)
+
+    DefaultDispatchService dispatchService = new DefaultDispatchService(dispatchMatcher, driverAssignmentRegistry, driverLocationIndex,
+            driverPresenceRegistry, greedy, meterRegistry, 1, 4)
+
+    def "Should dispatch the nearest driver whose car matches"() {
+        given: "a nearer driver with a diesel car and a farther one with an electric convertible"
+        onlineDriver(1, 52.521, 13.401, new CarDO("B-1", false, 4.8f, "diesel", "vw"))
+        onlineDriver(2, 52.53, 13.41, new CarDO("B-2", true, 4.5f, "electric", "tesla"))
+
+        when:
+        def dispatch = dispatchService.dispatch(new DispatchRequest(PICKUP, 5, true, "electric", 4.0f))
+
+        then: "the farther driver is found after widening the candidates"
+        dispatch.driverId == 2
+        dispatch.carId == 102
+        dispatch.distanceKm > 1 && dispatch.distanceKm < 2
+        driverAssignmentRegistry.isAssigned(2)
+    }
+
+    def "Should not dispatch a driver twice until the ride is completed"() {
+        given:
+        onlineDriver(1, 52.521, 13.401, new CarDO("B-1", false, 4.8f, "diesel", "vw"))
+        def request = new DispatchRequest(PICKUP, 5, null, null, null)
+
+        when:
+        dispatchService.dispatch(request)
+        dispatchService.dispatch(request)
+
+        then:
+        thrown(NoDriverAvailableException)
+
+        when:
+        dispatchService.complete(1)
+
+        then: "the driver is available again"
+        dispatchService.dispatch(request).driverId == 1
+    }
+
+    def "Should skip drivers without a selected car, with a deleted car or with a rating too low"() {
+        given:
+        driverLocationIndex.update(1, new GeoCoordinate(52.521, 13.401), true)
+        onlineDriver(2, 52.522, 13.402, new CarDO("B-2", false, 3.0f, "diesel", "vw"))
+        def deletedCar = new CarDO("B-3", false, 5.0f, "diesel", "vw")
+        deletedCar.deleted = true
+        onlineDriver(3, 52.523, 13.403, deletedCar)
+
+        when:
+        dispatchService.dispatch(new DispatchRequest(PICKUP, 5, null, null, 4.0f))
+
+        then:
+        thrown(NoDriverAvailableException)
+        driverAssignmentRegistry.size() == 0
+    }
+
+    def "Should answer submitted requests right away and time them when dispatch is not batched"() {
+        given:
+        onlineDriver(1, 52.521, 13.401, new CarDO("B-1", false, 4.8f, "diesel", "vw"))
+        def request = new DispatchRequest(PICKUP, 5, null, null, null)
+
+        when:
+        def dispatched = dispatchService.submit(request)
+        def unavailable = dispatchService.submit(request)
+
+        then:
+        dispatched.getNow(null).driverId == 1
+        unavailable.completedExceptionally
+        meterRegistry.find("mytaxi.dispatch.latency").tags("mode", "greedy", "window", "0", "outcome", "dispatched").timer().count() == 1
+        meterRegistry.find("mytaxi.dispatch.latency").tags("outcome", "unavailable").timer().count() == 1
+    }
+
+    def "Should refuse to complete a driver who is not dispatched"() {
+        when:
+        dispatchService.complete(1)
+
+        then:
+        thrown(EntityNotFoundException)
+    }
+
+    def "Should never hand the same driver to concurrent requests"() {
+        given: "more requests than drivers"
+        def drivers = 200
+        def service = new DefaultDispatchService(dispatchMatcher, driverAssignmentRegistry, driverLocationIndex, driverPresenceRegistry,
+                greedy, meterRegistry, 16, 512)
+        (1L..drivers).each { long id -> onlineDriver(id, 52.52 + id / 10000, 13.40, new CarDO("B-" + id, false, 4.0f, "diesel", "vw")) }
+        def executor = Executors.newFixedThreadPool(8)
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (1..drivers + 50).collect {
+            executor.submit({
+                start.await()
+                try {
+                    return service.dispatch(new DispatchRequest(PICKUP, 10, null, null, null)).driverId
+                } catch (NoDriverAvailableException ignored) {
+                    return null
+                }
+            } as Callable<Long>)
+        }
+        start.countDown()
+        def driverIds = futures.collect { it.get(10, TimeUnit.SECONDS) }.findAll { it != null }
+
+        then: "every driver is dispatched exactly once"
+        driverIds.size() == drivers
+        driverIds.toSet().size() == drivers
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    private void onlineDriver(long driverId, double latitude, double longitude, CarDO carDO) {
+        long carId = 100 + driverId
+        carDO.id = carId
+        cars[carId] = carDO
+        driverPresenceRegistry.setStatus(driverId, OnlineStatus.ONLINE)
+        driverLocationIndex.update(driverId, new GeoCoordinate(latitude, longitude), true)
+        carReservationRegistry.reserve(carId, driverId)
+    }
+}
@@ -1,30 +1,60 @@
 package com.mytaxi.services
 
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.dataaccessobject.CarRepository
 import com.mytaxi.dataaccessobject.DriverRepository
 import com.mytaxi.domainobject.CarDO
 import com.mytaxi.domainobject.DriverCarDO
 import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.domainvalue.DriverCarFilter
+import com.mytaxi.domainvalue.DriverLocation
 import com.mytaxi.domainvalue.GeoCoordinate
 import com.mytaxi.domainvalue.OnlineStatus
 import com.mytaxi.exception.ConstraintsViolationException
 import com.mytaxi.exception.EntityNotFoundException
+import com.mytaxi.service.driver.AttributeSearchIndex
+import com.mytaxi.service.driver.CarAttributeColumns
 import com.mytaxi.service.driver.CarDriverService
 import com.mytaxi.service.driver.DefaultDriverService
+import com.mytaxi.service.driver.DriverCache
+import com.mytaxi.service.driver.DriverLocationIndex
+import com.mytaxi.service.driver.DriverLocationIngestion
+import com.mytaxi.service.driver.DriverPresenceRegistry
 import com.mytaxi.service.driver.DriverService
+import com.mytaxi.service.driver.FleetSnapshot
+import com.mytaxi.service.driver.HeartbeatTimerWheel
 import org.springframework.dao.DataIntegrityViolationException
 import org.springframework.data.domain.Page
 import org.springframework.data.domain.PageImpl
 import org.springframework.data.domain.PageRequest
 import org.springframework.data.domain.Pageable
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
 import spock.lang.Specification
 
+import java.util.function.LongSupplier
+
 class DefaultDriverServiceSpecs extends Specification {
 
     DriverRepository driverRepository = Mock(DriverRepository.class)
 
     CarDriverService carDriverService = Mock(CarDriverService.class)
 
-    DriverService driverService = new DefaultDriverService(driverRepository, carDriverService)
+    DriverLocationIndex driverLocationIndex = new DriverLocationIndex(0.05)
+
+    DriverLocationIngestion driverLocationIngestion = Mock(DriverLocationIngestion.class)
+
+    AttributeSearchIndex attributeSearchIndex = Mock(AttributeSearchIndex.class)
+
+    DriverCache driverCache = new DriverCache(100, 60)
+
+    long now = 0
+
+    DriverPresenceRegistry driverPresenceRegistry = new DriverPresenceRegistry(new HeartbeatTimerWheel(60000, 1000, 64, { now } as LongSupplier), 1000)
+
+    DriverService driverService = new DefaultDriverService(driverRepository, carDriverService, driverLocationIndex, driverLocationIngestion,
+            attributeSearchIndex, driverCache, driverPresenceRegistry,
+            new FleetSnapshot(driverRepository, Mock(CarDriverRepository.class), new CarAttributeColumns(Mock(CarRepository.class)), false))
 
     def "Should return an existing driver"() {
         def id = 1L
@@ -70,6 +100,7 @@ class DefaultDriverServiceSpecs extends Specification {
 
         then:
         driverDO.equals(newDriver)
+        1 * attributeSearchIndex.indexDriver(newDriver)
     }
 
     def "Should throw EntityNotFoundException when deleting non-existent driver"() {
@@ -99,23 +130,120 @@ class DefaultDriverServiceSpecs extends Specification {
         0 * _._
     }
 
-    def "Should update driver location"() {
+    def "Should load a deleted driver again"() {
         def id = 1L
-        def driver = createNewDriver(1)
-        def driverLocation = new GeoCoordinate(90, 90)
-        def driverWithNewLocation = createNewDriver(id)
-        driverWithNewLocation.coordinate = driverLocation
 
+        when: "finding a driver, deleting it and finding it again"
+        driverService.find(id)
+        driverService.delete(id)
+        DriverDO driverDO = driverService.find(id)
+
+        then: "the deleted driver is read from the database"
+        2 * driverRepository.findById(id) >> createOptionalDriver(id)
+        1 * driverRepository.findById(id) >> Optional.of(new DriverDO(id: id, deleted: true))
+        driverDO.deleted
+        driverCache.stats.misses == 2
+    }
+
+    def "Should drop a deleted driver from the cache only once the transaction committed"() {
+        def id = 1L
+        driverRepository.findById(id) >> createOptionalDriver(id)
+        driverService.find(id)
+        TransactionSynchronizationManager.initSynchronization()
+
+        when: "the driver is deleted within a transaction"
+        driverService.delete(id)
+
+        then: "the cached driver is kept until the commit"
+        driverCache.stats.size == 1
+
+        when: "the transaction commits"
+        TransactionSynchronizationManager.synchronizations*.afterCommit()
+
+        then: "the driver is dropped from the cache"
+        driverCache.stats.size == 0
+
+        cleanup:
+        TransactionSynchronizationManager.clearSynchronization()
+    }
+
+    def "Should keep a deleted driver indexed when the delete rolls back"() {
+        def id = 1L
+        def driver = new DriverDO(id: id, username: "username", password: "pwd", onlineStatus: OnlineStatus.ONLINE)
         driverRepository.findById(id) >> Optional.of(driver)
+        driverLocationIndex.update(id, new GeoCoordinate(52.52, 13.40), true)
+        TransactionSynchronizationManager.initSynchronization()
+
+        when: "the driver is deleted within a transaction which rolls back"
+        driverService.delete(id)
+        TransactionSynchronizationManager.synchronizations*.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK)
+
+        then: "the driver is still found nearby"
+        driverLocationIndex.findNearest(52.52, 13.40, 1, 1) == [id]
+
+        cleanup:
+        TransactionSynchronizationManager.clearSynchronization()
+    }
+
+    def "Should update driver location"() {
+        def id = 1L
 
         when: "updating a driver location"
         driverService.updateLocation(id, 90, 90)
 
-        then: "driver should exist"
-        1 * driverRepository.findById(id) >> Optional.of(driver)
+        then: "the location is handed over to the ingestion"
+        1 * driverLocationIngestion.isWriteBehind() >> false
+        1 * driverLocationIngestion.submit(id, new GeoCoordinate(90, 90))
         0 * _._
     }
 
+    def "Should reject the location of an unknown driver before buffering it"() {
+        given: "the presence registry knows driver 1 only"
+        driverPresenceRegistry.load([new DriverDO(id: 1L, onlineStatus: OnlineStatus.OFFLINE)])
+        driverLocationIngestion.isWriteBehind() >> true
+
+        when:
+        driverService.updateLocation(2L, 90, 90)
+
+        then:
+        thrown(EntityNotFoundException)
+        0 * driverLocationIngestion.submit(_, _)
+
+        when:
+        driverService.updateLocation(1L, 90, 90)
+
+        then:
+        1 * driverLocationIngestion.submit(1L, new GeoCoordinate(90, 90))
+    }
+
+    def "Should report unknown drivers of a bulk location update at their position before buffering"() {
+        given:
+        driverPresenceRegistry.load([new DriverDO(id: 1L, onlineStatus: OnlineStatus.OFFLINE)])
+        driverLocationIngestion.isWriteBehind() >> true
+        def locations = [new DriverLocation(2L, new GeoCoordinate(90, 90), null), new DriverLocation(1L, new GeoCoordinate(90, 90), null)]
+
+        when:
+        def errors = driverService.updateLocations(locations)
+
+        then: "only the known driver is buffered"
+        1 * driverLocationIngestion.submitAll([locations[1]]) >> [:]
+        errors == [0: "Could not find entity with id: 2"]
+    }
+
+    def "Should return nearby online drivers nearest first"() {
+        def near = createNewDriver(1)
+        def far = createNewDriver(2)
+        driverLocationIndex.update(near.id, new GeoCoordinate(52.52, 13.40), true)
+        driverLocationIndex.update(far.id, new GeoCoordinate(52.55, 13.40), true)
+        driverRepository.findAllById([1L, 2L]) >> [far, near]
+
+        when: "looking for drivers around a position"
+        List<DriverDO> drivers = driverService.findNearby(52.52, 13.41, 10, 5)
+
+        then: "drivers are ordered by distance"
+        drivers*.id == [1L, 2L]
+    }
+
     def "Should return driver by onlineStatus = OFFLINE"() {
         driverRepository.findByOnlineStatus(OnlineStatus.OFFLINE) >> createOfflineDrivers()
 
@@ -140,19 +268,144 @@ class DefaultDriverServiceSpecs extends Specification {
         }
     }
 
+    def "Should return drivers by onlineStatus from the presence registry"() {
+        driverRepository.findAll() >> createDrivers()
+        driverService.loadLocationIndex()
+
+        when: "getting drivers with ONLINE status"
+        List<DriverDO> drivers = driverService.find(OnlineStatus.ONLINE)
+
+        then: "only the registered online drivers are loaded by id"
+        1 * driverRepository.findAllById([2L]) >> [createDrivers()[1]]
+        0 * driverRepository.findByOnlineStatus(_)
+        drivers*.id == [2L]
+    }
+
+    def "Should set a driver online and offline"() {
+        def id = 1L
+        def driver = new DriverDO(id: id, username: "username", password: "pwd", onlineStatus: OnlineStatus.OFFLINE)
+        driverRepository.findById(id) >> Optional.of(driver)
+        driverLocationIndex.update(id, new GeoCoordinate(52.52, 13.40), false)
+
+        when: "the driver goes online"
+        driverService.goOnline(id)
+
+        then: "the driver is registered and available"
+        driver.onlineStatus == OnlineStatus.ONLINE
+        driverPresenceRegistry.driverIds(OnlineStatus.ONLINE) == [id] as Set
+        driverLocationIndex.findNearest(52.52, 13.40, 1, 1) == [id]
+
+        when: "the driver goes offline"
+        driverService.goOffline(id)
+
+        then: "the driver is neither registered online nor available"
+        driver.onlineStatus == OnlineStatus.OFFLINE
+        driverPresenceRegistry.driverIds(OnlineStatus.ONLINE).isEmpty()
+        driverLocationIndex.findNearest(52.52, 13.40, 1, 1).isEmpty()
+    }
+
+    def "Should change presence and availability only once going offline committed"() {
+        def id = 1L
+        def driver = new DriverDO(id: id, username: "username", password: "pwd", onlineStatus: OnlineStatus.OFFLINE)
+        driverRepository.findById(id) >> Optional.of(driver)
+        driverLocationIndex.update(id, new GeoCoordinate(52.52, 13.40), false)
+        driverService.goOnline(id)
+        TransactionSynchronizationManager.initSynchronization()
+
+        when: "the driver goes offline within a transaction"
+        driverService.goOffline(id)
+
+        then: "the driver stays registered online and available until the commit"
+        driverPresenceRegistry.statusOf(id) == OnlineStatus.ONLINE
+        driverLocationIndex.findNearest(52.52, 13.40, 1, 1) == [id]
+
+        when: "the transaction commits"
+        TransactionSynchronizationManager.synchronizations*.afterCommit()
+
+        then: "the driver is offline and unavailable"
+        driverPresenceRegistry.statusOf(id) == OnlineStatus.OFFLINE
+        driverLocationIndex.findNearest(52.52, 13.40, 1, 1).isEmpty()
+
+        cleanup:
+        TransactionSynchronizationManager.clearSynchronization()
+    }
+
+    def "Should keep the fleet snapshot unchanged when a status change rolls back"() {
+        def id = 1L
+        def driver = new DriverDO(id: id, username: "username", password: "pwd", onlineStatus: OnlineStatus.OFFLINE)
+        driverRepository.findById(id) >> Optional.of(driver)
+        driverRepository.findAll() >> [driver]
+        def fleetSnapshot = new FleetSnapshot(driverRepository, Stub(CarDriverRepository.class), new CarAttributeColumns(Stub(CarRepository.class)), true)
+        fleetSnapshot.load()
+        def service = new DefaultDriverService(driverRepository, carDriverService, driverLocationIndex, driverLocationIngestion,
+                attributeSearchIndex, driverCache, driverPresenceRegistry, fleetSnapshot)
+        TransactionSynchronizationManager.initSynchronization()
+
+        when: "the driver goes online and is deleted within transactions which roll back"
+        service.goOnline(id)
+        driver.onlineStatus = OnlineStatus.OFFLINE
+        service.delete(id)
+        driver.deleted = false
+        TransactionSynchronizationManager.synchronizations*.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK)
+
+        then: "the snapshot still serves the stored driver"
+        fleetSnapshot.find([id])[0].onlineStatus == OnlineStatus.OFFLINE
+        !fleetSnapshot.find([id])[0].deleted
+
+        cleanup:
+        TransactionSynchronizationManager.clearSynchronization()
+    }
+
+    def "Should not set a deleted driver online"() {
+        def id = 1L
+        driverRepository.findById(id) >> Optional.of(new DriverDO(id: id, deleted: true, onlineStatus: OnlineStatus.OFFLINE))
+
+        when:
+        driverService.goOnline(id)
+
+        then:
+        thrown(EntityNotFoundException.class)
+        driverPresenceRegistry.statusOf(id) == null
+    }
+
+    def "Should set a driver offline once its heartbeat times out"() {
+        def driver = createNewDriver(1)
+        driverRepository.findAll() >> [driver]
+        driverRepository.findById(1L) >> Optional.of(driver)
+        driverService.loadLocationIndex()
+
+        when: "a location ping arrives before the timeout"
+        now = 30000
+        driverService.updateLocation(1L, 13.40, 52.52)
+        now = 61000
+        driverPresenceRegistry.expireStale()
+
+        then: "the driver stays online"
+        0 * driverRepository.save(_)
+        driver.onlineStatus == OnlineStatus.ONLINE
+
+        when: "no heartbeat arrives within the timeout"
+        now = 91000
+        driverPresenceRegistry.expireStale()
+
+        then: "the driver is persisted as offline"
+        1 * driverRepository.save(driver) >> driver
+        driver.onlineStatus == OnlineStatus.OFFLINE
+        driverPresenceRegistry.driverIds(OnlineStatus.OFFLINE) == [1L] as Set
+    }
+
     def "Should return all drivers with query param"() {
         Pageable pageable = new PageRequest(0, 10)
-        def drivers = new PageImpl<DriverCarDO>(createCarDrivers())
-        def queryParam = [username: "username", licensePlate: "licensePlate"]
-        carDriverService.findCarDrivers(queryParam, pageable) >> drivers
+        def drivers = new PageImpl<DriverDO>(createDrivers(), pageable, 3)
+        def filter = DriverCarFilter.parse([username: "username", licensePlate: "licensePlate"])
 
-        when: "getting drivers with no query param"
-        Page<DriverDO> driversPage = driverService.getDrivers(queryParam, pageable)
+        when: "getting drivers with query param"
+        Page<DriverDO> driversPage = driverService.getDrivers(filter, pageable)
 
-        then: "return drivers"
-        for(DriverDO driversDO : driversPage.content) {
-            driversDO.id.equals(drivers.content.driverDO.id)
-        }
+        then: "return the driver page of the car driver service"
+        1 * carDriverService.findDrivers(filter, pageable) >> drivers
+        driversPage.content*.id == [1L, 2L, 3L]
+        driversPage.totalElements == 3
     }
 
     List<DriverCarDO> createCarDrivers() {
@@ -0,0 +1,112 @@
+package com.mytaxi.services
+
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.domainobject.CarDO
+import com.mytaxi.domainvalue.DispatchRequest
+import com.mytaxi.domainvalue.GeoCoordinate
+import com.mytaxi.exception.NoDriverAvailableException
+import com.mytaxi.service.driver.CarReservationRegistry
+import com.mytaxi.service.driver.CarService
+import com.mytaxi.service.driver.DispatchBatcher
+import com.mytaxi.service.driver.DispatchMatcher
+import com.mytaxi.service.driver.DriverAssignmentRegistry
+import com.mytaxi.service.driver.DriverLocationIndex
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutionException
+
+class DispatchBatcherSpec extends Specification {
+
+    DriverLocationIndex driverLocationIndex = new DriverLocationIndex(0.05)
+
+    CarReservationRegistry carReservationRegistry = new CarReservationRegistry(Mock(CarDriverRepository.class))
+
+    DriverAssignmentRegistry driverAssignmentRegistry = new DriverAssignmentRegistry()
+
+    CarService carService = Stub(CarService.class) {
+        find(_) >> { Long carId -> new CarDO("B-" + carId, false, 4.0f, "diesel", "vw") }
+    }
+
+    DispatchMatcher dispatchMatcher = new DispatchMatcher(driverLocationIndex, carReservationRegistry, driverAssignmentRegistry, carService)
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    def "Should assign a window with the least total pickup distance"() {
+        given: "driver 1 is nearest to both requests but the only one close to the second"
+        def batcher = batcher(1, 10000)
+        driver(1, 52.509)
+        driver(2, 52.49)
+
+        when:
+        def first = batcher.submit(request(52.50))
+        def second = batcher.submit(request(52.51))
+        batcher.tick()
+
+        then: "serving the first request with driver 1 would send driver 2 twice as far to the second one"
+        first.get().driverId == 2
+        second.get().driverId == 1
+        meterRegistry.find("mytaxi.dispatch.batch.size").summary().totalAmount() == 2
+    }
+
+    def "Should keep requests without a driver waiting until the maximum wait passed"() {
+        given:
+        def batcher = batcher(1, 50)
+        driver(1, 52.50)
+
+        when: "three requests compete for one driver"
+        def requests = [batcher.submit(request(52.50)), batcher.submit(request(52.51)), batcher.submit(request(52.52))]
+        batcher.tick()
+
+        then: "the nearest one is served, the others wait"
+        requests[0].get().driverId == 1
+        !requests[1].done
+        !requests[2].done
+
+        when: "the maximum wait passed"
+        Thread.sleep(60)
+        batcher.tick()
+        requests[1].get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof NoDriverAvailableException
+        requests[2].completedExceptionally
+    }
+
+    def "Should refuse requests beyond its capacity"() {
+        given:
+        def batcher = new DispatchBatcher(dispatchMatcher, meterRegistry, DispatchBatcher.MODE_BATCHED, 1, 50, 8, 1, 1)
+
+        when:
+        batcher.submit(request(52.50))
+        def refused = batcher.submit(request(52.50))
+
+        then:
+        refused.completedExceptionally
+    }
+
+    def "Should not accept requests unless dispatch is batched"() {
+        given:
+        def batcher = new DispatchBatcher(dispatchMatcher, meterRegistry, DispatchBatcher.MODE_GREEDY, 1, 50, 8, 100, 1)
+
+        when:
+        batcher.submit(request(52.50))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private DispatchBatcher batcher(long windowMs, long maxWaitMs) {
+        new DispatchBatcher(dispatchMatcher, meterRegistry, DispatchBatcher.MODE_BATCHED, windowMs, maxWaitMs, 8, 100, 2)
+    }
+
+    private void driver(long driverId, double latitude) {
+        driverLocationIndex.update(driverId, new GeoCoordinate(latitude, 13.40), true)
+        carReservationRegistry.reserve(100 + driverId, driverId)
+    }
+
+    private static DispatchRequest request(double latitude) {
+        new DispatchRequest(new GeoCoordinate(latitude, 13.40), 5, null, null, null)
+    }
+}
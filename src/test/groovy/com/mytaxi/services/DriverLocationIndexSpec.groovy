@@ -0,0 +1,162 @@
+package com.mytaxi.services
+
+import com.mytaxi.domainvalue.DriverLocation
+import com.mytaxi.domainvalue.GeoCoordinate
+import com.mytaxi.service.driver.DriverLocationIndex
+import spock.lang.Specification
+
+import java.time.ZonedDateTime
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class DriverLocationIndexSpec extends Specification {
+
+    DriverLocationIndex driverLocationIndex = new DriverLocationIndex(0.05)
+
+    def "Should return the nearest available drivers ordered by distance"() {
+        driverLocationIndex.update(1L, new GeoCoordinate(52.5200, 13.4050), true)
+        driverLocationIndex.update(2L, new GeoCoordinate(52.5300, 13.4050), true)
+        driverLocationIndex.update(3L, new GeoCoordinate(52.6000, 13.4050), true)
+        driverLocationIndex.update(4L, new GeoCoordinate(52.5201, 13.4050), false)
+
+        when: "looking for the two nearest drivers"
+        List<Long> driverIds = driverLocationIndex.findNearest(52.5200, 13.4050, 20, 2)
+
+        then: "unavailable drivers are skipped"
+        driverIds == [1L, 2L]
+    }
+
+    def "Should not return drivers outside of the radius"() {
+        driverLocationIndex.update(1L, new GeoCoordinate(52.5200, 13.4050), true)
+        driverLocationIndex.update(2L, new GeoCoordinate(48.1351, 11.5820), true)
+
+        when: "looking for drivers within 50 km of Berlin"
+        List<Long> driverIds = driverLocationIndex.findNearest(52.5200, 13.4050, 50, 10)
+
+        then: "only the driver in Berlin is returned"
+        driverIds == [1L]
+    }
+
+    def "Should move a driver to its new cell when the location changes"() {
+        driverLocationIndex.update(1L, new GeoCoordinate(52.5200, 13.4050), true)
+        driverLocationIndex.update(1L, new GeoCoordinate(48.1351, 11.5820), true)
+
+        expect: "the driver is only found at its new position"
+        driverLocationIndex.findNearest(52.5200, 13.4050, 50, 10).isEmpty()
+        driverLocationIndex.findNearest(48.1351, 11.5820, 50, 10) == [1L]
+        driverLocationIndex.size() == 1
+    }
+
+    def "Should find drivers across the antimeridian"() {
+        driverLocationIndex.update(1L, new GeoCoordinate(0, 179.99), true)
+
+        expect: "the driver on the other side of the date line is found"
+        driverLocationIndex.findNearest(0, -179.99, 10, 1) == [1L]
+    }
+
+    def "Should forget removed drivers"() {
+        driverLocationIndex.update(1L, new GeoCoordinate(52.5200, 13.4050), true)
+
+        when: "the driver is removed"
+        driverLocationIndex.remove(1L)
+
+        then: "it is not found anymore"
+        driverLocationIndex.findNearest(52.5200, 13.4050, 50, 10).isEmpty()
+        driverLocationIndex.size() == 0
+    }
+
+    def "Should keep every driver in one cell when it is moved concurrently"() {
+        def executor = Executors.newFixedThreadPool(4)
+        def first = new GeoCoordinate(52.5200, 13.4050)
+        def second = new GeoCoordinate(52.5200, 13.4600)
+
+        when: "three threads move the same drivers back and forth between two cells while one thread searches"
+        def duplicates = new AtomicInteger()
+        def writers = (0..<3).collect { thread ->
+            executor.submit {
+                2000.times { round ->
+                    100.times { id -> driverLocationIndex.update(id, (round + thread + id) % 2 == 0 ? first : second, true) }
+                }
+            }
+        }
+        def reader = executor.submit {
+            while (!writers.every { it.done }) {
+                def driverIds = driverLocationIndex.findNearest(52.5200, 13.43, 20, 200)
+                if (driverIds.size() != driverIds.toSet().size()) {
+                    duplicates.incrementAndGet()
+                }
+            }
+        }
+        writers*.get()
+        reader.get()
+        executor.shutdown()
+
+        then: "no search saw a driver twice and every driver is found exactly once at the end"
+        duplicates.get() == 0
+        driverLocationIndex.findNearest(52.5200, 13.43, 20, 200).sort() == (0L..<100L).toList()
+        driverLocationIndex.findNearest(52.5200, 13.4050, 0.1, 200).size() + driverLocationIndex.findNearest(52.5200, 13.4600, 0.1, 200).size() == 100
+    }
+
+    def "Should not undo an availability change while the driver moves"() {
+        def executor = Executors.newSingleThreadExecutor()
+        def now = ZonedDateTime.now()
+        driverLocationIndex.update(1L, new GeoCoordinate(52.5200, 13.4050), true)
+
+        when: "the driver is taken out of service while its pings keep moving it"
+        def moving = new CountDownLatch(1)
+        def mover = executor.submit {
+            20000.times { round ->
+                driverLocationIndex.moveIfPresent(new DriverLocation(1L, new GeoCoordinate(52.5200, round % 2 == 0 ? 13.4050 : 13.4600), now.plusNanos(round * 1000000L)))
+                moving.countDown()
+            }
+        }
+        moving.await()
+        driverLocationIndex.updateAvailability(1L, false)
+        mover.get()
+        executor.shutdown()
+
+        then: "the driver stays unavailable"
+        driverLocationIndex.findNearest(52.5200, 13.43, 20, 10).isEmpty()
+        driverLocationIndex.locationOf(1L) != null
+    }
+
+    def "Should ignore a move to a location older than the indexed one"() {
+        def now = ZonedDateTime.now()
+        driverLocationIndex.update(1L, new GeoCoordinate(50.0, 10.0), true)
+
+        when: "a ping arrives after a newer one"
+        def moved = driverLocationIndex.moveIfPresent(new DriverLocation(1L, new GeoCoordinate(52.5200, 13.4050), now))
+        driverLocationIndex.moveIfPresent(new DriverLocation(1L, new GeoCoordinate(48.1351, 11.5820), now.minusSeconds(1)))
+
+        then: "the driver stays at the newer location"
+        moved
+        driverLocationIndex.findNearest(52.5200, 13.4050, 1, 10) == [1L]
+        !driverLocationIndex.moveIfPresent(new DriverLocation(2L, new GeoCoordinate(52.5200, 13.4050), now))
+    }
+
+    def "Should match a brute force search"() {
+        def random = new Random(42)
+        def positions = [:]
+        1000.times { id ->
+            def coordinate = new GeoCoordinate(52 + random.nextDouble(), 13 + random.nextDouble())
+            positions[(long) id] = coordinate
+            driverLocationIndex.update(id, coordinate, true)
+        }
+        def expected = positions.entrySet()
+                .sort { haversine(52.5, 13.5, it.value) }
+                .findAll { haversine(52.5, 13.5, it.value) <= 15 }
+                .take(25)*.key
+
+        expect: "the index returns the same drivers as a full scan"
+        driverLocationIndex.findNearest(52.5, 13.5, 15, 25) == expected
+    }
+
+    static double haversine(double latitude, double longitude, GeoCoordinate coordinate) {
+        def deltaLatitude = Math.toRadians(coordinate.latitude - latitude)
+        def deltaLongitude = Math.toRadians(coordinate.longitude - longitude)
+        def a = Math.pow(Math.sin(deltaLatitude / 2), 2) +
+                Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(coordinate.latitude)) * Math.pow(Math.sin(deltaLongitude / 2), 2)
+        return 2 * 6371.0088 * Math.asin(Math.min(1, Math.sqrt(a)))
+    }
+}
@@ -0,0 +1,223 @@
+package com.mytaxi.services
+
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.dataaccessobject.DriverLocationBatchRepository
+import com.mytaxi.dataaccessobject.DriverRepository
+import com.mytaxi.domainvalue.DriverLocation
+import com.mytaxi.domainvalue.GeoCoordinate
+import com.mytaxi.exception.EntityNotFoundException
+import com.mytaxi.exception.LocationIngestionOverloadedException
+import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.service.driver.CarAttributeColumns
+import com.mytaxi.service.driver.DriverCache
+import com.mytaxi.service.driver.DriverLocationIndex
+import com.mytaxi.service.driver.DriverLocationIngestion
+import com.mytaxi.service.driver.FleetSnapshot
+import org.springframework.dao.QueryTimeoutException
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+
+import java.time.ZonedDateTime
+
+class DriverLocationIngestionSpec extends Specification {
+
+    DriverLocationBatchRepository driverLocationBatchRepository = Mock(DriverLocationBatchRepository.class)
+
+    DriverRepository driverRepository = Mock(DriverRepository.class)
+
+    DriverLocationIndex driverLocationIndex = new DriverLocationIndex(0.05)
+
+    DriverCache driverCache = new DriverCache(100, 60)
+
+    FleetSnapshot fleetSnapshot = new FleetSnapshot(driverRepository, Mock(CarDriverRepository.class),
+            new CarAttributeColumns(Mock(CarRepository.class)), false)
+
+    PlatformTransactionManager transactionManager = Mock(PlatformTransactionManager.class)
+
+    def setup() {
+        // written drivers which are not indexed yet are looked up, none of them exists unless a feature says so
+        driverRepository.findAllById(_) >> []
+    }
+
+    def "Should keep only the last pending location of a driver"() {
+        def ingestion = writeBehind(10, 100)
+
+        when: "a driver sends two pings before the flush"
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+        ingestion.submit(1L, new GeoCoordinate(52.1, 13.1))
+        def flushed = ingestion.flush()
+
+        then: "only the last one is written"
+        1 * driverLocationBatchRepository.updateLocations({ it.size() == 1 && it[0].coordinate.latitude == 52.1d }) >> ([1] as int[])
+        1 * driverRepository.findAllById([1L]) >> []
+        flushed == 1
+        ingestion.stats.coalesced == 1
+        ingestion.stats.pending == 0
+    }
+
+    def "Should keep the index at the newest pending location when pings arrive out of order"() {
+        def ingestion = writeBehind(10, 100)
+        def now = ZonedDateTime.now()
+        driverLocationIndex.update(1L, new GeoCoordinate(50.0, 10.0), true)
+
+        when: "an older ping arrives after a newer one"
+        ingestion.submit(new DriverLocation(1L, new GeoCoordinate(52.0, 13.0), now))
+        ingestion.submit(new DriverLocation(1L, new GeoCoordinate(48.0, 11.0), now.minusSeconds(1)))
+
+        then: "the newer one stays pending and indexed"
+        driverLocationIndex.findNearest(52.0, 13.0, 1, 1) == [1L]
+        ingestion.stats.coalesced == 1
+    }
+
+    def "Should reject new drivers once the capacity is reached"() {
+        def ingestion = writeBehind(2, 100)
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+        ingestion.submit(2L, new GeoCoordinate(52.0, 13.0))
+
+        when: "a third driver sends a ping"
+        ingestion.submit(3L, new GeoCoordinate(52.0, 13.0))
+
+        then: "throw LocationIngestionOverloadedException"
+        thrown(LocationIngestionOverloadedException.class)
+        ingestion.stats.rejected == 1
+    }
+
+    def "Should still accept pings of drivers with a pending location when the capacity is reached"() {
+        def ingestion = writeBehind(1, 100)
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+
+        when: "the same driver sends another ping"
+        ingestion.submit(1L, new GeoCoordinate(52.1, 13.0))
+
+        then: "it replaces the pending one"
+        notThrown(LocationIngestionOverloadedException.class)
+        ingestion.stats.pending == 1
+    }
+
+    def "Should write pending locations in batches"() {
+        def ingestion = writeBehind(10, 2)
+        (1..5).each { ingestion.submit(it, new GeoCoordinate(52.0, 13.0)) }
+
+        when: "flushing"
+        def flushed = ingestion.flush()
+
+        then: "locations are written in batches of two"
+        2 * driverLocationBatchRepository.updateLocations({ it.size() == 2 }) >> ([1, 1] as int[])
+        1 * driverLocationBatchRepository.updateLocations({ it.size() == 1 }) >> ([1] as int[])
+        flushed == 5
+    }
+
+    def "Should keep locations pending when a flush fails"() {
+        def ingestion = writeBehind(10, 100)
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+
+        when: "the database is not reachable"
+        def flushed = ingestion.flush()
+
+        then: "the location is kept for the next flush"
+        1 * driverLocationBatchRepository.updateLocations(_) >> { throw new QueryTimeoutException("timeout") }
+        flushed == 0
+        ingestion.stats.pending == 1
+        ingestion.stats.failedFlushes == 1
+    }
+
+    def "Should not move the driver back when a newer ping arrives during the flush"() {
+        def ingestion = writeBehind(10, 100)
+        def now = ZonedDateTime.now()
+        driverLocationIndex.update(1L, new GeoCoordinate(50.0, 10.0), true)
+        ingestion.submit(new DriverLocation(1L, new GeoCoordinate(52.0, 13.0), now))
+
+        when: "the driver sends a newer ping while the older one is written"
+        ingestion.flush()
+
+        then: "the index keeps the newer location"
+        1 * driverLocationBatchRepository.updateLocations(_) >> {
+            ingestion.submit(new DriverLocation(1L, new GeoCoordinate(48.0, 11.0), now.plusSeconds(1)))
+            [1] as int[]
+        }
+        driverLocationIndex.findNearest(48.0, 11.0, 1, 1) == [1L]
+        ingestion.stats.pending == 1
+    }
+
+    def "Should write right away in sync mode"() {
+        def ingestion = new DriverLocationIngestion(driverLocationBatchRepository, driverRepository, driverLocationIndex, driverCache, fleetSnapshot,
+                transactionManager, DriverLocationIngestion.MODE_SYNC, 10, 100, 100, 100)
+        driverLocationIndex.update(1L, new GeoCoordinate(50.0, 10.0), true)
+
+        when: "a driver sends a ping"
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+
+        then: "the location is written and indexed"
+        1 * driverLocationBatchRepository.updateLocations(_) >> ([1] as int[])
+        driverLocationIndex.findNearest(52.0, 13.0, 1, 1) == [1L]
+    }
+
+    def "Should throw EntityNotFoundException for unknown drivers in sync mode"() {
+        def ingestion = new DriverLocationIngestion(driverLocationBatchRepository, driverRepository, driverLocationIndex, driverCache, fleetSnapshot,
+                transactionManager, DriverLocationIngestion.MODE_SYNC, 10, 100, 100, 100)
+        driverLocationBatchRepository.updateLocations(_) >> ([0] as int[])
+        driverRepository.findExistingIds([1L]) >> []
+
+        when: "an unknown driver sends a ping"
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+
+        then: "throw EntityNotFoundException"
+        thrown(EntityNotFoundException.class)
+    }
+
+    def "Should drop a location older than the stored one without failing"() {
+        def ingestion = new DriverLocationIngestion(driverLocationBatchRepository, driverRepository, driverLocationIndex, driverCache, fleetSnapshot,
+                transactionManager, DriverLocationIngestion.MODE_SYNC, 10, 100, 100, 100)
+        driverLocationIndex.update(1L, new GeoCoordinate(50.0, 10.0), true)
+        driverLocationBatchRepository.updateLocations(_) >> ([0] as int[])
+        driverRepository.findExistingIds([1L]) >> [1L]
+
+        when: "a known driver sends a ping older than its stored position"
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+
+        then: "the ping is counted as stale and the driver is not moved"
+        notThrown(EntityNotFoundException.class)
+        ingestion.stats.stale == 1
+        ingestion.stats.unknownDrivers == 0
+        driverLocationIndex.findNearest(50.0, 10.0, 1, 1) == [1L]
+    }
+
+    def "Should write a bulk update in chunks which fail on their own"() {
+        def ingestion = new DriverLocationIngestion(driverLocationBatchRepository, driverRepository, driverLocationIndex, driverCache, fleetSnapshot,
+                transactionManager, DriverLocationIngestion.MODE_SYNC, 10, 100, 100, 2)
+        def locations = (1..5).collect { new DriverLocation(it, new GeoCoordinate(52.0, 13.0), ZonedDateTime.now()) }
+
+        when: "the second of three chunks can not be written"
+        def failures = ingestion.submitAll(locations)
+
+        then: "every chunk runs in a transaction of its own and only the locations of the failed chunk are reported"
+        3 * transactionManager.getTransaction(_)
+        1 * driverLocationBatchRepository.updateLocations({ it*.driverId == [1L, 2L] }) >> ([1, 1] as int[])
+        1 * driverLocationBatchRepository.updateLocations({ it*.driverId == [3L, 4L] }) >> { throw new QueryTimeoutException("timeout") }
+        1 * driverLocationBatchRepository.updateLocations({ it*.driverId == [5L] }) >> ([1] as int[])
+        2 * transactionManager.commit(_)
+        1 * transactionManager.rollback(_)
+        failures.keySet() == [2, 3] as Set
+        ingestion.stats.written == 3
+        ingestion.stats.failedChunks == 1
+    }
+
+    def "Should drop written drivers from the cache"() {
+        def ingestion = new DriverLocationIngestion(driverLocationBatchRepository, driverRepository, driverLocationIndex, driverCache, fleetSnapshot,
+                transactionManager, DriverLocationIngestion.MODE_SYNC, 10, 100, 100, 100)
+        driverCache.get(1L, { id -> new DriverDO("driver01", "password") })
+        driverLocationBatchRepository.updateLocations(_) >> ([1] as int[])
+
+        when: "the driver sends a ping"
+        ingestion.submit(1L, new GeoCoordinate(52.0, 13.0))
+
+        then: "the next lookup reads the new position from the database"
+        driverCache.stats.size == 0
+    }
+
+    DriverLocationIngestion writeBehind(int capacity, int batchSize) {
+        return new DriverLocationIngestion(driverLocationBatchRepository, driverRepository, driverLocationIndex, driverCache, fleetSnapshot,
+                transactionManager, DriverLocationIngestion.MODE_WRITE_BEHIND, capacity, 100, batchSize, 100)
+    }
+}
@@ -0,0 +1,117 @@
+package com.mytaxi.services
+
+import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.domainvalue.OnlineStatus
+import com.mytaxi.service.driver.DriverPresenceRegistry
+import com.mytaxi.service.driver.HeartbeatTimerWheel
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class DriverPresenceRegistrySpec extends Specification {
+
+    long now = 0
+
+    HeartbeatTimerWheel heartbeats = new HeartbeatTimerWheel(10000, 1000, 8, { now } as LongSupplier)
+
+    DriverPresenceRegistry registry = new DriverPresenceRegistry(heartbeats, 1000)
+
+    def "Should move drivers between the status sets"() {
+        when: "loading drivers and changing the status of one of them"
+        registry.load([new DriverDO(id: 1, onlineStatus: OnlineStatus.ONLINE),
+                       new DriverDO(id: 2, onlineStatus: OnlineStatus.OFFLINE)])
+        registry.setStatus(2, OnlineStatus.ONLINE)
+        registry.setStatus(1, OnlineStatus.OFFLINE)
+
+        then: "every driver is in exactly one set"
+        registry.loaded
+        registry.driverIds(OnlineStatus.ONLINE) == [2L] as Set
+        registry.driverIds(OnlineStatus.OFFLINE) == [1L] as Set
+        registry.statusOf(1) == OnlineStatus.OFFLINE
+        registry.statusOf(3) == null
+        heartbeats.isScheduled(2)
+        !heartbeats.isScheduled(1)
+    }
+
+    def "Should only accept heartbeats of online drivers"() {
+        given:
+        registry.setStatus(1, OnlineStatus.ONLINE)
+        registry.setStatus(2, OnlineStatus.OFFLINE)
+
+        expect:
+        registry.heartbeat(1)
+        !registry.heartbeat(2)
+        !registry.heartbeat(3)
+        heartbeats.size() == 1
+    }
+
+    def "Should expire drivers without a heartbeat within the timeout"() {
+        def expired = []
+        registry.onExpiry({ long driverId -> expired << driverId })
+        registry.setStatus(1, OnlineStatus.ONLINE)
+        registry.setStatus(2, OnlineStatus.ONLINE)
+
+        when: "only one driver sends a heartbeat"
+        now = 5000
+        registry.heartbeat(2)
+        now = 10000
+
+        then: "the other one goes offline after the timeout"
+        registry.expireStale() == 1
+        expired == [1L]
+        registry.driverIds(OnlineStatus.ONLINE) == [2L] as Set
+        registry.driverIds(OnlineStatus.OFFLINE) == [1L] as Set
+
+        when: "the heartbeat of the remaining driver times out as well"
+        now = 15000
+
+        then:
+        registry.expireStale() == 1
+        expired == [1L, 2L]
+        registry.driverIds(OnlineStatus.ONLINE).isEmpty()
+    }
+
+    def "Should not expire drivers which went offline"() {
+        def expired = []
+        registry.onExpiry({ long driverId -> expired << driverId })
+        registry.setStatus(1, OnlineStatus.ONLINE)
+        registry.setStatus(1, OnlineStatus.OFFLINE)
+
+        when:
+        now = 60000
+
+        then:
+        registry.expireStale() == 0
+        expired.isEmpty()
+    }
+
+    def "Should expire drivers whose deadline lies more than one round of the wheel ahead"() {
+        def wheel = new HeartbeatTimerWheel(20000, 1000, 8, { now } as LongSupplier)
+        wheel.touch(1)
+
+        when: "the slot of the deadline is passed in the first round"
+        now = 12000
+        def early = wheel.expire()
+        now = 20000
+        def due = wheel.expire()
+
+        then: "the driver only expires at its deadline"
+        early.isEmpty()
+        due == [1L]
+        wheel.size() == 0
+    }
+
+    def "Should expire every due driver after a long pause"() {
+        (1..20).each { id ->
+            now = id * 500
+            heartbeats.touch(id)
+        }
+
+        when: "the wheel is advanced long after all deadlines"
+        now = 100000
+
+        then:
+        heartbeats.expire().sort() == (1L..20L).toList()
+        heartbeats.size() == 0
+    }
+}
@@ -0,0 +1,83 @@
+package com.mytaxi.services
+
+import com.mytaxi.MytaxiServerApplicantTestApplication
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.dataaccessobject.DriverRepository
+import com.mytaxi.domainobject.DriverCarDO
+import com.mytaxi.domainvalue.DriverCarFilter
+import com.mytaxi.service.driver.DriverService
+import org.hibernate.SessionFactory
+import org.hibernate.stat.Statistics
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.data.domain.PageRequest
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import javax.persistence.EntityManagerFactory
+
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, properties = [
+        "mytaxi.location-ingestion.mode=sync",
+        // counts the queries of the database search, the driver cars below are saved past the fleet snapshot
+        "mytaxi.fleet-snapshot.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"])
+@Transactional
+class DriverSearchQueryCountSpec extends Specification {
+
+    @Autowired
+    DriverService driverService
+
+    @Autowired
+    DriverRepository driverRepository
+
+    @Autowired
+    CarRepository carRepository
+
+    @Autowired
+    CarDriverRepository carDriverRepository
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory
+
+    Statistics statistics
+
+    def setup() {
+        // driver 4 already drives car 1, give it two more cars so that it matches three times
+        [3L, 4L].each { carId ->
+            carDriverRepository.save(new DriverCarDO(driverDO: driverRepository.findById(4L).get(), carDO: carRepository.findById(carId).get(), selected: false))
+        }
+        carDriverRepository.save(new DriverCarDO(driverDO: driverRepository.findById(5L).get(), carDO: carRepository.findById(5L).get(), selected: false))
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).statistics
+        statistics.clear()
+    }
+
+    def "Should return full pages of distinct drivers"() {
+        when: "getting the first page of two drivers having any car"
+        def page = driverService.getDrivers(DriverCarFilter.EMPTY, PageRequest.of(0, 2))
+
+        then: "the page is full although driver 4 has three cars"
+        page.content.size() == 2
+        page.content*.id.unique().size() == 2
+        page.totalElements == 3
+    }
+
+    def "Should read a page of drivers with one query plus the count"() {
+        when: "getting a page of drivers filtered by car attributes"
+        driverService.getDrivers(DriverCarFilter.parse([manufacturer: "Manufacturer"]), PageRequest.of(0, 2))
+
+        then: "no driver car or car is loaded one by one"
+        statistics.prepareStatementCount == 2
+        statistics.entityLoadCount == 2
+    }
+
+    def "Should filter on typed car attributes given as request strings"() {
+        when: "getting drivers of gas cars with rating 5 which are not convertible"
+        def page = driverService.getDrivers(DriverCarFilter.parse([convertible: "false", rating: "5.0", engineType: "gas", username: "driver"]),
+                PageRequest.of(0, 10))
+
+        then: "only the driver of car 1 matches"
+        page.content*.id == [4L]
+    }
+}
@@ -0,0 +1,118 @@
+package com.mytaxi.services
+
+import com.mytaxi.dataaccessobject.CarDriverRepository
+import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.dataaccessobject.DriverRepository
+import com.mytaxi.domainobject.CarDO
+import com.mytaxi.domainobject.DriverCarDO
+import com.mytaxi.domainobject.DriverDO
+import com.mytaxi.domainvalue.DriverCarFilter
+import com.mytaxi.domainvalue.DriverLocation
+import com.mytaxi.domainvalue.GeoCoordinate
+import com.mytaxi.domainvalue.OnlineStatus
+import com.mytaxi.domainvalue.SeekRequest
+import com.mytaxi.service.driver.CarAttributeColumns
+import com.mytaxi.service.driver.FleetSnapshot
+import org.springframework.data.domain.PageRequest
+import spock.lang.Specification
+
+import java.time.ZonedDateTime
+
+class FleetSnapshotSpec extends Specification {
+
+    DriverRepository driverRepository = Stub(DriverRepository.class)
+
+    CarDriverRepository carDriverRepository = Stub(CarDriverRepository.class)
+
+    CarRepository carRepository = Stub(CarRepository.class)
+
+    CarAttributeColumns carAttributeColumns = new CarAttributeColumns(carRepository)
+
+    FleetSnapshot fleetSnapshot = new FleetSnapshot(driverRepository, carDriverRepository, carAttributeColumns, true)
+
+    CarDO gasCar = car(10, "gas", "Volkswagen")
+
+    CarDO electricCar = car(20, "electric", "Tesla")
+
+    def setup() {
+        def first = driver(1, "driver01", OnlineStatus.ONLINE)
+        def second = driver(2, "driver02", OnlineStatus.OFFLINE)
+        def third = driver(3, "other", OnlineStatus.ONLINE)
+        driverRepository.findAll() >> [third, first, second]
+        carDriverRepository.findAllWithDriverAndCar() >> [
+                new DriverCarDO(driverDO: first, carDO: gasCar, selected: true),
+                new DriverCarDO(driverDO: second, carDO: electricCar, selected: false)]
+        carRepository.findAll() >> [electricCar, gasCar]
+        carAttributeColumns.load()
+        fleetSnapshot.load()
+    }
+
+    def "Should find the drivers the database search finds"() {
+        expect: "driver attributes matched on the driver, car attributes on any of its cars and drivers without cars left out"
+        ids(DriverCarFilter.EMPTY) == [1L, 2L]
+        ids(DriverCarFilter.parse([engineType: "electric"])) == [2L]
+        ids(DriverCarFilter.parse([manufacturer: "wag", convertible: "false", rating: "4.5"])) == [1L]
+        ids(DriverCarFilter.parse([username: "driver", onlineStatus: "online"])) == [1L]
+        ids(DriverCarFilter.parse([licensePlate: "PLATE-2", manufacturer: "Tes"])) == [2L]
+        ids(DriverCarFilter.parse([username: "other"])) == []
+        fleetSnapshot.find([3L, 1L, 99L])*.id == [1L, 3L]
+    }
+
+    def "Should page and seek in driver id order"() {
+        when: "reading the second page and seeking past the first driver"
+        def page = fleetSnapshot.findDrivers(DriverCarFilter.EMPTY, PageRequest.of(1, 1))
+        def seekPage = fleetSnapshot.findDrivers(DriverCarFilter.EMPTY, new SeekRequest(1L, 1, true))
+
+        then: "both hold the second driver and count all matches"
+        page.content*.id == [2L]
+        page.totalElements == 2
+        seekPage.content*.id == [2L]
+        !seekPage.hasNext()
+        seekPage.total == 2
+    }
+
+    def "Should publish a new snapshot for every write and keep the records read before"() {
+        given: "a driver read before the writes"
+        def before = fleetSnapshot.find([1L])[0]
+        def swaps = fleetSnapshot.swaps
+
+        when: "the fleet changes"
+        fleetSnapshot.updateDriver(driver(1, "driver01", OnlineStatus.OFFLINE))
+        fleetSnapshot.updateDriver(driver(4, "driver04", OnlineStatus.ONLINE))
+        def newCar = car(30, "electric", "Tesla")
+        carAttributeColumns.update(newCar)
+        fleetSnapshot.updateDriverCar(4, newCar, true)
+        fleetSnapshot.updateDriverCar(1, gasCar, false)
+        fleetSnapshot.move([new DriverLocation(4, new GeoCoordinate(52.5, 13.4), ZonedDateTime.now())])
+        electricCar.engineType = "hybrid"
+        carAttributeColumns.update(electricCar)
+        fleetSnapshot.updateCar(electricCar)
+
+        then: "reads see every change, the record read before stays as it was"
+        before.onlineStatus == OnlineStatus.ONLINE
+        fleetSnapshot.find([1L])[0].onlineStatus == OnlineStatus.OFFLINE
+        ids(DriverCarFilter.parse([engineType: "electric"])) == [4L]
+        ids(DriverCarFilter.parse([engineType: "hybrid"])) == [2L]
+        ids(DriverCarFilter.parse([engineType: "gas"])) == [1L]
+        fleetSnapshot.find([4L])[0].coordinate == new GeoCoordinate(52.5, 13.4)
+        fleetSnapshot.size() == 4
+        fleetSnapshot.swaps == swaps + 6
+    }
+
+    List<Long> ids(DriverCarFilter filter) {
+        return fleetSnapshot.findDrivers(filter, PageRequest.of(0, 10)).content*.id
+    }
+
+    static DriverDO driver(long id, String username, OnlineStatus onlineStatus) {
+        def driverDO = new DriverDO(username, "password")
+        driverDO.id = id
+        driverDO.onlineStatus = onlineStatus
+        return driverDO
+    }
+
+    static CarDO car(long id, String engineType, String manufacturer) {
+        def carDO = new CarDO("PLATE-" + id, false, 4.5f, engineType, manufacturer)
+        carDO.id = id
+        return carDO
+    }
+}
@@ -0,0 +1,61 @@
+package com.mytaxi.services
+
+import com.mytaxi.service.driver.OptimisticLockRetryPolicy
+import org.springframework.dao.OptimisticLockingFailureException
+import spock.lang.Specification
+
+import java.util.function.Supplier
+
+class OptimisticLockRetryPolicySpec extends Specification {
+
+    OptimisticLockRetryPolicy optimisticLockRetryPolicy = new OptimisticLockRetryPolicy(3, 1, 2)
+
+    def "Should return the result of the first attempt without a conflict"() {
+        def attempts = 0
+
+        when: "the first attempt conflicts"
+        def result = optimisticLockRetryPolicy.execute("operation", {
+            if (++attempts == 1) {
+                throw new OptimisticLockingFailureException("conflict")
+            }
+            return "done"
+        } as Supplier)
+
+        then: "the second attempt succeeds"
+        result == "done"
+        attempts == 2
+        optimisticLockRetryPolicy.stats["operation"].operations == 1
+        optimisticLockRetryPolicy.stats["operation"].conflicts == 1
+        optimisticLockRetryPolicy.stats["operation"].conflictRate == 1.0d
+    }
+
+    def "Should give up after the maximum number of attempts"() {
+        def attempts = 0
+
+        when: "every attempt conflicts"
+        optimisticLockRetryPolicy.execute("operation", {
+            attempts++
+            throw new OptimisticLockingFailureException("conflict")
+        } as Supplier)
+
+        then: "the conflict is thrown"
+        thrown(OptimisticLockingFailureException.class)
+        attempts == 3
+        optimisticLockRetryPolicy.stats["operation"].retries == 2
+        optimisticLockRetryPolicy.stats["operation"].exhausted == 1
+    }
+
+    def "Should not retry other failures"() {
+        def attempts = 0
+
+        when: "an attempt fails for another reason"
+        optimisticLockRetryPolicy.execute("operation", {
+            attempts++
+            throw new IllegalStateException("broken")
+        } as Supplier)
+
+        then: "it is thrown right away"
+        thrown(IllegalStateException.class)
+        attempts == 1
+    }
+}
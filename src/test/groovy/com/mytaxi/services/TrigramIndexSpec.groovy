@@ -0,0 +1,46 @@
+package com.mytaxi.services
+
+import com.mytaxi.service.driver.TrigramIndex
+import spock.lang.Specification
+
+class TrigramIndexSpec extends Specification {
+
+    TrigramIndex index = new TrigramIndex()
+
+    def setup() {
+        index.put(1L, "ABC123")
+        index.put(2L, "DEF456")
+        index.put(3L, "XABC99")
+    }
+
+    def "Should find the ids of values containing the query"() {
+        expect:
+        index.find(query, 10) == ids as Set
+
+        where:
+        query    | ids
+        "ABC"    | [1L, 3L]
+        "ABC1"   | [1L]
+        "C12"    | [1L]
+        "6"      | [2L]
+        "abc"    | []
+        "ABC999" | []
+    }
+
+    def "Should follow changed and removed values"() {
+        when: "changing and removing values"
+        index.put(1L, "GHI789")
+        index.remove(3L)
+
+        then: "old values are not found anymore"
+        index.find("ABC", 10).isEmpty()
+        index.find("HI7", 10) == [1L] as Set
+        index.size() == 2
+    }
+
+    def "Should give up when more ids match than the limit"() {
+        expect:
+        index.find("ABC", 1) == null
+        index.find("A", 2) == [1L, 3L] as Set
+    }
+}
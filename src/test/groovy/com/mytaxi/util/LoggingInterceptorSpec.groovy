@@ -0,0 +1,80 @@
+package com.mytaxi.util
+
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+
+class LoggingInterceptorSpec extends Specification {
+
+    RequestLogWriter writer = new RequestLogWriter(2)
+
+    def "Should always log failed requests and sample successful ones"() {
+        given: "an interceptor which logs no successful requests"
+        def interceptor = new LoggingInterceptor(writer, 0, [] as String[])
+
+        when:
+        handle(interceptor, 200, null)
+        handle(interceptor, 404, null)
+        handle(interceptor, 200, new IllegalStateException())
+
+        then: "only the failed requests are queued"
+        writer.queued == 2
+    }
+
+    def "Should log every successful request at a sample rate of one"() {
+        given:
+        def interceptor = new LoggingInterceptor(writer, 1, [] as String[])
+
+        when:
+        handle(interceptor, 200, null)
+
+        then:
+        writer.queued == 1
+    }
+
+    def "Should drop entries instead of blocking when the queue is full"() {
+        given:
+        def interceptor = new LoggingInterceptor(writer, 1, [] as String[])
+
+        when:
+        3.times { handle(interceptor, 500, null) }
+
+        then:
+        writer.queued == 2
+        writer.dropped == 1
+    }
+
+    def "Should reject sample rates outside of [0, 1]"() {
+        when:
+        new LoggingInterceptor(writer, 1.5, [] as String[])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Should write the queued entries on the writer thread"() {
+        given:
+        def interceptor = new LoggingInterceptor(writer, 1, [] as String[])
+        handle(interceptor, 200, null)
+
+        when:
+        writer.start()
+        def deadline = System.currentTimeMillis() + 5000
+        while (writer.queued > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+
+        then:
+        writer.queued == 0
+
+        cleanup:
+        writer.stop()
+    }
+
+    private static void handle(LoggingInterceptor interceptor, int status, Exception exception) {
+        def request = new MockHttpServletRequest("GET", "/v1/drivers/1")
+        def response = new MockHttpServletResponse(status: status)
+        interceptor.preHandle(request, response, null)
+        interceptor.afterCompletion(request, response, null, exception)
+    }
+}
@@ -0,0 +1,61 @@
+package com.mytaxi.util
+
+import com.mytaxi.MytaxiServerApplicantTestApplication
+import com.mytaxi.dataaccessobject.CarRepository
+import com.mytaxi.service.driver.DriverService
+import io.micrometer.core.instrument.MeterRegistry
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.web.client.TestRestTemplate
+import spock.lang.Specification
+
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = ["mytaxi.location-ingestion.mode=sync"])
+class MetricsSpec extends Specification {
+
+    @Autowired
+    TestRestTemplate restTemplate
+
+    @Autowired
+    MeterRegistry meterRegistry
+
+    @Autowired
+    DriverService driverService
+
+    @Autowired
+    CarRepository carRepository
+
+    def "Should time service methods and repository calls"() {
+        when:
+        driverService.find(1L)
+        carRepository.findAllByDeletedIsFalse()
+
+        then: "services are tagged with their class, repositories with their interface"
+        meterRegistry.find(TimingAspect.SERVICE_TIMER).tags("class", "DefaultDriverService", "method", "find", "exception", "none")
+                .timer().count() >= 1
+        meterRegistry.find(TimingAspect.REPOSITORY_TIMER).tags("class", "CarRepository", "method", "findAllByDeletedIsFalse")
+                .timer().count() >= 1
+    }
+
+    def "Should tag failed calls with their exception"() {
+        when:
+        driverService.find(-1L)
+
+        then:
+        thrown(Exception)
+        meterRegistry.find(TimingAspect.SERVICE_TIMER).tags("method", "find", "exception", "EntityNotFoundException").timer().count() >= 1
+    }
+
+    def "Should expose request latencies, exception counts and queued location updates in prometheus format"() {
+        when: "a request fails and the metrics are scraped"
+        restTemplate.getForEntity("/v1/drivers/-1", String)
+        def metrics = restTemplate.getForObject("/actuator/prometheus", String)
+
+        then:
+        metrics.contains('http_server_requests_seconds_bucket{')
+        metrics.contains('mytaxi_service_seconds_bucket{')
+        metrics.readLines().any { it.startsWith('mytaxi_exceptions_total{') && it.contains('exception="EntityNotFoundException"') }
+        metrics.contains('mytaxi_location_ingestion_pending{')
+        metrics.readLines().any { it.startsWith('mytaxi_drivers{') && it.contains('status="ONLINE"') }
+    }
+}
@@ -0,0 +1,55 @@
+package com.mytaxi.util
+
+import org.springframework.core.io.ClassPathResource
+import org.springframework.core.io.support.PropertiesLoaderUtils
+import org.springframework.mock.env.MockEnvironment
+import spock.lang.Specification
+
+class ProductionSettingsCheckSpec extends Specification {
+
+    def "Should accept the production profile on top of the default properties"() {
+        given:
+        def environment = new MockEnvironment()
+        load(environment, "application.properties")
+        load(environment, "application-production.properties")
+
+        expect:
+        ProductionSettingsCheck.violations(environment).empty
+    }
+
+    def "Should refuse debug settings and disabled batching"() {
+        given:
+        def environment = new MockEnvironment()
+                .withProperty("spring.jpa.show-sql", "true")
+                .withProperty("logging.level.org.hibernate.SQL", "debug")
+                .withProperty("spring.jpa.hibernate.ddl-auto", "create-drop")
+                .withProperty("spring.datasource.url", "jdbc:postgresql://db/mytaxi")
+
+        when:
+        new ProductionSettingsCheck(environment).check()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message.contains("spring.jpa.show-sql=true")
+        e.message.contains("logging.level.org.hibernate.SQL=debug")
+        e.message.contains("spring.jpa.hibernate.ddl-auto=create-drop on jdbc:postgresql://db/mytaxi")
+        e.message.contains("spring.jpa.properties.hibernate.jdbc.batch_size=0")
+    }
+
+    def "Should allow recreating an in-memory database"() {
+        given:
+        def environment = new MockEnvironment()
+                .withProperty("spring.jpa.hibernate.ddl-auto", "create-drop")
+                .withProperty("spring.datasource.url", "jdbc:h2:mem:testdb")
+                .withProperty("spring.jpa.properties.hibernate.jdbc.batch_size", "50")
+
+        expect:
+        ProductionSettingsCheck.violations(environment).empty
+    }
+
+    private static void load(MockEnvironment environment, String resource) {
+        PropertiesLoaderUtils.loadProperties(new ClassPathResource(resource)).each { key, value ->
+            environment.setProperty(key as String, value as String)
+        }
+    }
+}
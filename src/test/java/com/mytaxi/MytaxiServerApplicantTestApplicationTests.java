@@ -6,7 +6,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 @RunWith(SpringJUnit4ClassRunner.class)
-@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class)
+@SpringBootTest(classes = MytaxiServerApplicantTestApplication.class, properties = "mytaxi.location-ingestion.mode=sync")
 public class MytaxiServerApplicantTestApplicationTests
 {
 